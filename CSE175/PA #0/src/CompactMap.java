@@ -0,0 +1,303 @@
+//
+// CompactMap
+//
+// This class implements a frozen, read-only view of a Map, laid out in the
+// "compressed sparse row" style.  Every location is identified by a small
+// integer node id (its position in the Map's collection of locations), and
+// every road segment is identified by an integer road id.  The roads leading
+// out of node "n" occupy road ids "offsets[n]" up to (but not including)
+// "offsets[n+1]", with the destination node and the incremental path cost
+// of road "e" stored in "targets[e]" and "costs[e]".  Location coordinates
+// are kept in parallel float arrays.  Searching this structure touches only
+// a handful of primitive arrays, rather than chasing Location and Road
+// objects around the heap.  The arrays are held in java.nio buffers, so
+// that they may either wrap ordinary Java arrays or refer directly to the
+// pages of a memory-mapped MapFile.
+//
+// A CompactMap built from a Map retains references to the original Location
+// and Road objects, so that a solution found on the compact map can be
+// reported in exactly the same way as one found on the Map itself.  A
+// CompactMap read from a MapFile instead holds tables of location and road
+// names, and it creates Location and Road objects only when they are
+// requested.  The roads list of such a Location is a view of its range of
+// road ids, which creates each Road object, and the Location at its far
+// end, the first time that it is read, so that a search may follow roads
+// from any Location that it reaches without the whole map being built.
+// Note that later changes to a Map are not reflected in a CompactMap that
+// has already been built from it.
+//
+
+
+import java.nio.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+
+public class CompactMap {
+    int nodeCount;
+    int roadCount;
+    IntBuffer offsets;
+    IntBuffer targets;
+    DoubleBuffer costs;
+    FloatBuffer longitudes;
+    FloatBuffer latitudes;
+    Location[] locations;
+    Road[] roads;
+    HashMap<String, Integer> nodeIndex;
+    // Name tables, present only when read from a MapFile ...
+    IntBuffer locationNameOffsets;
+    ByteBuffer locationNames;
+    IntBuffer sortedNodes;
+    IntBuffer roadNameIds;
+    IntBuffer roadNameOffsets;
+    ByteBuffer roadNames;
+
+    // Default constructor, for use by MapFile ...
+    CompactMap() {
+    }
+
+    // Constructor with source Map specified ...
+    public CompactMap(Map graph) {
+	this.nodeCount = graph.locations.size();
+	this.locations = graph.locations.toArray(new Location[nodeCount]);
+	float[] lon = new float[nodeCount];
+	float[] lat = new float[nodeCount];
+	int[] off = new int[nodeCount + 1];
+	this.nodeIndex = new HashMap<String, Integer>(nodeCount * 2);
+	for (int n = 0; n < nodeCount; n++) {
+	    Location loc = locations[n];
+	    lon[n] = (float) loc.longitude;
+	    lat[n] = (float) loc.latitude;
+	    nodeIndex.putIfAbsent(loc.name, n);
+	    off[n + 1] = off[n] + loc.roads.size();
+	}
+	this.roadCount = off[nodeCount];
+	int[] tgt = new int[roadCount];
+	double[] cst = new double[roadCount];
+	this.roads = new Road[roadCount];
+	int e = 0;
+	for (int n = 0; n < nodeCount; n++) {
+	    for (Road r : locations[n].roads) {
+		tgt[e] = r.toLocation.id;
+		cst[e] = r.cost;
+		roads[e] = r;
+		e++;
+	    }
+	}
+	this.offsets = IntBuffer.wrap(off);
+	this.targets = IntBuffer.wrap(tgt);
+	this.costs = DoubleBuffer.wrap(cst);
+	this.longitudes = FloatBuffer.wrap(lon);
+	this.latitudes = FloatBuffer.wrap(lat);
+    }
+
+    // nodeCount -- Return the number of locations (nodes) on this map.
+    public int nodeCount() {
+	return (nodeCount);
+    }
+
+    // roadCount -- Return the number of road segments on this map.
+    public int roadCount() {
+	return (roadCount);
+    }
+
+    // isMapped -- Return true if and only if this compact map was read from
+    // a MapFile, rather than being built from a Map.
+    public boolean isMapped() {
+	return (nodeIndex == null);
+    }
+
+    // nodeOf -- Return the node id of the location with the given textual
+    // name, or -1 if no such location is on this map.  If several locations
+    // share the name, the first of them is returned.  For a compact map read
+    // from a MapFile, this is a binary search of the sorted name table.
+    public int nodeOf(String name) {
+	if (name == null)
+	    return (-1);
+	if (nodeIndex != null) {
+	    Integer n = nodeIndex.get(name);
+	    return ((n == null) ? -1 : n.intValue());
+	}
+	// Locations with the same name are sorted in id order, so keep going
+	// left to find the first of them ...
+	byte[] key = name.getBytes(StandardCharsets.UTF_8);
+	int found = -1;
+	int low = 0;
+	int high = nodeCount - 1;
+	while (low <= high) {
+	    int mid = (low + high) >>> 1;
+	    int n = sortedNodes.get(mid);
+	    int c = compareName(n, key);
+	    if (c < 0) {
+		low = mid + 1;
+	    } else {
+		if (c == 0)
+		    found = n;
+		high = mid - 1;
+	    }
+	}
+	return (found);
+    }
+
+    // compareName -- Compare the UTF-8 bytes of the name of the given node
+    // to the given key, as unsigned bytes.
+    int compareName(int node, byte[] key) {
+	int start = locationNameOffsets.get(node);
+	int length = locationNameOffsets.get(node + 1) - start;
+	int common = Math.min(length, key.length);
+	for (int i = 0; i < common; i++) {
+	    int c = (locationNames.get(start + i) & 0xFF) - (key[i] & 0xFF);
+	    if (c != 0)
+		return (c);
+	}
+	return (length - key.length);
+    }
+
+    // firstRoad -- Return the id of the first road leading out of the given
+    // node.
+    public int firstRoad(int node) {
+	return (offsets.get(node));
+    }
+
+    // endRoad -- Return one more than the id of the last road leading out of
+    // the given node.  If this equals "firstRoad", the node has no roads.
+    public int endRoad(int node) {
+	return (offsets.get(node + 1));
+    }
+
+    // target -- Return the node at which the given road ends.
+    public int target(int road) {
+	return (targets.get(road));
+    }
+
+    // cost -- Return the incremental path cost of the given road.
+    public double cost(int road) {
+	return (costs.get(road));
+    }
+
+    // longitude -- Return the first coordinate of the given node.
+    public float longitude(int node) {
+	return (longitudes.get(node));
+    }
+
+    // latitude -- Return the second coordinate of the given node.
+    public float latitude(int node) {
+	return (latitudes.get(node));
+    }
+
+    // locationName -- Return the textual name of the given node.
+    public String locationName(int node) {
+	if (nodeIndex != null)
+	    return (locations[node].name);
+	return (decode(locationNames, locationNameOffsets, node));
+    }
+
+    // roadName -- Return the textual name of the given road.
+    public String roadName(int road) {
+	if (nodeIndex != null)
+	    return (roads[road].name);
+	return (decode(roadNames, roadNameOffsets, roadNameIds.get(road)));
+    }
+
+    // decode -- Return entry "i" of a table of UTF-8 strings.
+    static String decode(ByteBuffer bytes, IntBuffer table, int i) {
+	int start = table.get(i);
+	byte[] buffer = new byte[table.get(i + 1) - start];
+	for (int k = 0; k < buffer.length; k++)
+	    buffer[k] = bytes.get(start + k);
+	return (new String(buffer, StandardCharsets.UTF_8));
+    }
+
+    // location -- Return the Location object corresponding to the given
+    // node.  For a compact map read from a MapFile, the Location is created
+    // the first time that it is requested, and its Road objects the first
+    // time that they are read from its roads list.
+    public Location location(int node) {
+	if (nodeIndex != null)
+	    return (locations[node]);
+	synchronized (this) {
+	    return (stub(node));
+	}
+    }
+
+    // road -- Return the Road object corresponding to the given road id.
+    public Road road(int road) {
+	if (nodeIndex != null)
+	    return (roads[road]);
+	synchronized (this) {
+	    return (stubRoad(findSource(road), road));
+	}
+    }
+
+    // findSource -- Return the node from which the given road leads, by
+    // binary search of the road offsets.
+    int findSource(int road) {
+	int low = 0;
+	int high = nodeCount - 1;
+	while (low < high) {
+	    int mid = (low + high + 1) >>> 1;
+	    if (offsets.get(mid) <= road)
+		low = mid;
+	    else
+		high = mid - 1;
+	}
+	return (low);
+    }
+
+    // stub -- Return the Location object for the given node, creating it,
+    // with a RoadList of the roads leading out of it, if it does not exist
+    // yet.
+    Location stub(int node) {
+	if (locations == null) {
+	    locations = new Location[nodeCount];
+	    roads = new Road[roadCount];
+	}
+	if (locations[node] == null) {
+	    Location loc = new Location(locationName(node), longitude(node), latitude(node));
+	    loc.id = node;
+	    loc.roads = new RoadList(node);
+	    locations[node] = loc;
+	}
+	return (locations[node]);
+    }
+
+    // stubRoad -- Return the Road object for the given road, leading out of
+    // the given node, creating it if it does not exist yet.
+    Road stubRoad(int from, int road) {
+	if (roads[road] == null) {
+	    Road r = new Road();
+	    r.name = roadName(road);
+	    r.fromLocation = stub(from);
+	    r.toLocation = stub(target(road));
+	    r.fromLocationName = r.fromLocation.name;
+	    r.toLocationName = r.toLocation.name;
+	    r.cost = cost(road);
+	    roads[road] = r;
+	}
+	return (roads[road]);
+    }
+
+    // RoadList -- The read-only list of roads leading out of a Location
+    // read from a MapFile.  Each Road object is created the first time that
+    // it is read.
+    class RoadList extends AbstractList<Road> {
+	final int node;
+
+	RoadList(int node) {
+	    this.node = node;
+	}
+
+	public int size() {
+	    return (endRoad(node) - firstRoad(node));
+	}
+
+	public Road get(int i) {
+	    if (i < 0 || i >= size())
+		throw new IndexOutOfBoundsException();
+	    synchronized (CompactMap.this) {
+		return (stubRoad(node, firstRoad(node) + i));
+	    }
+	}
+    }
+
+}
@@ -3,6 +3,8 @@ import java.util.HashSet;
 public class DFSearch {
 
     public int expansionCount;
+    public SearchStats stats = new SearchStats();   // what the last search did
+    public SearchMetrics metrics = null;    // if set, the stats of every search are added to it
     public Map graph;
     public String initialLoc;
     public String destinationLoc;
@@ -21,6 +23,16 @@ public class DFSearch {
     // This search function uses Depth-first algorithm to find the path from start point to final destination
     // The argument true_or_false is used to check whether the function should use repeated state check or not
     public Waypoint search(boolean true_or_false) {
+        stats.start();
+        try {
+            return searchWaypoints(true_or_false);
+        } finally {
+            stats.finish(expansionCount, metrics);
+        }
+    }
+
+    // the search itself, which the function above measures
+    Waypoint searchWaypoints(boolean true_or_false) {
 
         Waypoint node = new Waypoint(graph.findLocation(initialLoc));   // set start point as parent node
         expansionCount = 0; // no expansion happen so far
@@ -31,6 +43,8 @@ public class DFSearch {
             Frontier frontier = new Frontier(); // create a frontier to store current node's child nodes
             frontier.addToBottom(node); // add parent node to the frontier
 
+            stats.setupDone();  // the search proper begins here
+
             // BFS with repeated state check
             if (true_or_false == true) {
                 HashSet<String> explored = new HashSet<>();    // create a HashSet to store nodes for repeat state check
@@ -41,14 +55,18 @@ public class DFSearch {
                         return node;    // return node when it is the final destination
                     } else {
                         explored.add(node.loc.name);    // add current node to explored for state check
-                        node.expand();  // find all children nodes of current node
                         expansionCount++;   // expansion happens so add 1 to expansionCount
 
-                        for (Waypoint i : node.options) {
-                            if (!explored.contains(i.loc.name) && !frontier.contains(i)) {  // state check
-                                frontier.addToTop(i);   // add new node into frontier
+                        for (int i = 0; i < node.successorCount(); i++) {   // for each road out of current location
+                            Road road = node.successor(i);
+                            if (!explored.contains(road.toLocation.name) && !frontier.contains(road.toLocation)) {  // state check
+                                frontier.addToTop(node.child(road));    // create new node and add it into frontier
+                                stats.generated++;
+                            } else {
+                                stats.pruned++; // repeated state
                             }
                         }
+                        stats.frontier(frontier.size());
                     }
                 }
                 return null;    // failure when frontier is empty or reach to the limit
@@ -59,13 +77,121 @@ public class DFSearch {
                     if (node.loc.name == destinationLoc) {
                         return node;    // return node when it is the final destination
                     } else {
-                        node.expand();  // find all children nodes of current node
                         expansionCount++;   // expansion happens so add 1 to expansionCount
-                        frontier.addToTop(node.options);    // add all children node of current node to frontier
+                        for (int i = 0; i < node.successorCount(); i++) {
+                            frontier.addToTop(node.child(node.successor(i)));   // add all children node of current node to frontier
+                        }
+                        stats.generated += node.successorCount();
+                        stats.frontier(frontier.size());
                     }
                 }
                 return null;    // failure when frontier is empty or reach to the limit
             }
         }
     }
+
+    // Depth-first search (Stack, FILO) over a CompactMap
+    // This search function performs the same search as the one above, but Waypoint objects are only
+    // created for the nodes on the returned solution path
+    // with repeated state check, it uses searchNode below; otherwise the search tree is kept in a
+    // SearchTree of primitive arrays
+    public Waypoint search(CompactMap compact, boolean true_or_false) {
+        stats.start();
+        try {
+            return searchCompact(compact, true_or_false);
+        } finally {
+            stats.finish(expansionCount, metrics);
+        }
+    }
+
+    // the search itself, which the function above measures
+    Waypoint searchCompact(CompactMap compact, boolean true_or_false) {
+        if (true_or_false == true) {
+            int node = searchNode(compact);
+            return (node < 0) ? null : SearchContext.current().toWaypoint(compact, node);
+        }
+        int start = compact.nodeOf(initialLoc); // node id of the start point
+        int goal = compact.nodeOf(destinationLoc);  // node id of the final destination
+        expansionCount = 0; // no expansion happen so far
+
+        SearchTree tree = new SearchTree();
+        int current = tree.addRoot(start);  // set start point as parent node
+        if (start == goal) {
+            return tree.toWaypoint(compact, current);   // return parent node if initialLoc and destinationLoc are the same
+        }
+        IntFrontier frontier = new IntFrontier();   // frontier of search tree slots
+        frontier.addToBottom(current);  // add parent node to the frontier
+        stats.setupDone();  // the search proper begins here
+
+        while (!frontier.isEmpty() && tree.depth[current] < limit - 1) {
+            current = frontier.removeTop();   // return and remove the very top node in the frontier (FILO)
+            int node = tree.state[current];
+            if (node == goal) {
+                return tree.toWaypoint(compact, current);   // return node when it is the final destination
+            }
+            expansionCount++;   // expansion happens so add 1 to expansionCount
+
+            // generate a child node for every road leading out of the current node
+            for (int e = compact.firstRoad(node); e < compact.endRoad(node); e++) {
+                frontier.addToTop(tree.addChild(current, e, compact.target(e), compact.cost(e)));  // add new node into frontier
+            }
+            stats.generated += compact.endRoad(node) - compact.firstRoad(node);
+            stats.frontier(frontier.size());
+        }
+        return null;    // failure when frontier is empty or reach to the limit
+    }
+
+    // Depth-first search (Stack, FILO) over a CompactMap with repeated state check
+    // The search tree is recorded in the calling thread's SearchContext, which SearchContext.current
+    // returns until the thread starts another search.  The node id of the final destination is returned,
+    // or -1 on failure.  Once the context has grown to the size of the map, nothing is allocated.
+    public int searchNode(CompactMap compact) {
+        stats.start();
+        try {
+            return searchContext(compact);
+        } finally {
+            stats.finish(expansionCount, metrics);
+        }
+    }
+
+    // the search itself, which the function above measures
+    int searchContext(CompactMap compact) {
+        int start = compact.nodeOf(initialLoc); // node id of the start point
+        int goal = compact.nodeOf(destinationLoc);  // node id of the final destination
+        expansionCount = 0; // no expansion happen so far
+
+        SearchContext context = SearchContext.local(compact);
+        context.reachRoot(start);   // set start point as parent node
+        if (start == goal) {
+            return start;   // return parent node if initialLoc and destinationLoc are the same
+        }
+        IntFrontier frontier = context.queue;   // frontier of map nodes
+        frontier.addToBottom(start);    // add parent node to the frontier
+        int node = start;
+        stats.setupDone();  // the search proper begins here
+
+        // a node that has been reached is either explored or in the frontier, so it is skipped
+        while (!frontier.isEmpty() && context.depth[node] < limit - 1) {
+            node = frontier.removeTop();  // return and remove the very top node in the frontier (FILO)
+            if (node == goal) {
+                return node;    // return node when it is the final destination
+            }
+            context.markExplored(node); // add current node to explored for state check
+            expansionCount++;   // expansion happens so add 1 to expansionCount
+
+            // generate a child node for every road leading out of the current node
+            for (int e = compact.firstRoad(node); e < compact.endRoad(node); e++) {
+                int child = compact.target(e);
+                if (context.isReached(child)) {
+                    stats.pruned++;
+                    continue;   // state check
+                }
+                context.reachChild(node, e, child, compact.cost(e));
+                stats.generated++;
+                frontier.addToTop(child);  // add new node into frontier
+            }
+            stats.frontier(frontier.size());
+        }
+        return -1;  // failure when frontier is empty or reach to the limit
+    }
 }
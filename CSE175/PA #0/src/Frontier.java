@@ -11,7 +11,13 @@
 // insertion methods are overloaded to accept either individual Waypoint
 // objects or lists of multiple Waypoint objects.  This class is intended to
 // to be used to implement the frontier (i.e., the "fringe" or "open list") of
-// of nodes in a search tree.
+// of nodes in a search tree.  The list itself is stored in a circular
+// array, which grows as needed, so adding and removing nodes at either end
+// takes constant time and allocates nothing.  The first time that the
+// "contains" test is used, a count of the nodes in the list for each
+// location name is made, and from then on it is maintained alongside the
+// list, so that the test does not need to search the list.  Searches that
+// never ask whether a location is in the frontier never pay for the counts.
 //
 // David Noelle -- Created Sun Feb 11 18:39:40 PST 2007
 //                 Modified Wed Sep 15 00:09:35 PDT 2010
@@ -23,36 +29,55 @@ import java.util.*;
 
 
 public class Frontier {
-    List<Waypoint> fringe;
+    Waypoint[] fringe;
+    int head;
+    int size;
+    HashMap<String, Integer> memberCounts;  // null until "contains" is used
 
     // Default constructor ...
     public Frontier() {
-	fringe = new LinkedList<Waypoint>();
+	fringe = new Waypoint[16];
+	head = 0;
+	size = 0;
+	memberCounts = null;
+    }
+
+    // size -- Return the number of nodes currently in the frontier.
+    public int size() {
+	return (size);
     }
 
     // isEmpty -- Return true if and only if there are currently no nodes in 
     // the frontier.
     public boolean isEmpty() {
-	return (fringe.isEmpty());
+	return (size == 0);
     }
 
     // removeTop -- Return the Waypoint object at the top of the frontier
     // list.  Also, remove this node from the frontier.  Return null if the
     // frontier is empty.
     public Waypoint removeTop() {
-	    if (fringe.isEmpty()) {
-	        return (null);
-	    } else {
-	        Waypoint top = fringe.get(0);
-	        fringe.remove(0);
-	        return (top);
-	    }
+	if (size == 0) {
+	    return (null);
+	} else {
+	    Waypoint top = fringe[head];
+	    fringe[head] = null;
+	    head = (head + 1) & (fringe.length - 1);
+	    size--;
+	    forget(top);
+	    return (top);
+	}
     }
 
     // addToTop -- Add the given Waypoint object to the top of the frontier
     // list.
     public void addToTop(Waypoint wp) {
-        fringe.add(0, wp);
+	if (size == fringe.length)
+	    grow();
+	head = (head - 1) & (fringe.length - 1);
+	fringe[head] = wp;
+	size++;
+	remember(wp);
     }
 
     // addToTop -- Add the given list of Waypoint objects to the top of the 
@@ -66,7 +91,11 @@ public class Frontier {
     // addToBottom -- Add the given Waypoint object to the bottom of the 
     // frontier list.
     public void addToBottom(Waypoint wp) {
-        fringe.add(wp);
+	if (size == fringe.length)
+	    grow();
+	fringe[(head + size) & (fringe.length - 1)] = wp;
+	size++;
+	remember(wp);
     }
 
     // addToBottom -- Add the given list of Waypoint objects to the bottom of
@@ -80,14 +109,9 @@ public class Frontier {
     // contains -- Return true if and only if the frontier contains a
     // Waypoint with the given Location name.
     public boolean contains(String name) {
-	    // This linear search is very inefficient, but it cannot be avoided
-	    // without maintaining a parallel data structure containing the
-	    // fringe members (e.g., a HashSet).
-	    for (Waypoint element : fringe)
-	        if (name.equals(element.loc.name))
-		    return (true);
-	    // The location was not found in the fringe ...
-        return (false);
+	    if (memberCounts == null)
+	        countMembers();
+	    return (memberCounts.containsKey(name));
     }
 
     // contains -- Return true if and only if the frontier contains a
@@ -103,5 +127,50 @@ public class Frontier {
         return (contains(wp.loc));
     }
 
+    // get -- Return the Waypoint object at the given position in the
+    // frontier list, counting from zero at the top.
+    public Waypoint get(int i) {
+	return (fringe[(head + i) & (fringe.length - 1)]);
+    }
+
+    // grow -- Double the capacity of the circular array, moving the
+    // contents of the list to the start of the new array.
+    void grow() {
+	Waypoint[] larger = new Waypoint[fringe.length * 2];
+	for (int i = 0; i < size; i++)
+	    larger[i] = get(i);
+	fringe = larger;
+	head = 0;
+    }
+
+    // countMembers -- Count the nodes in the frontier list for each
+    // Location name, and keep the counts from now on.
+    void countMembers() {
+	memberCounts = new HashMap<String, Integer>();
+	for (int i = 0; i < size; i++)
+	    memberCounts.merge(get(i).loc.name, 1, Integer::sum);
+    }
+
+    // remember -- Count the given Waypoint, which has just been added to the
+    // frontier list, as a member for its Location name, if the counts are
+    // being kept.
+    void remember(Waypoint wp) {
+	    if (memberCounts != null)
+	        memberCounts.merge(wp.loc.name, 1, Integer::sum);
+    }
+
+    // forget -- Stop counting the given Waypoint, which has just been
+    // removed from the frontier list, as a member for its Location name, if
+    // the counts are being kept.
+    void forget(Waypoint wp) {
+	    if (memberCounts == null)
+	        return;
+	    Integer count = memberCounts.get(wp.loc.name);
+	    if (count == 1)
+	        memberCounts.remove(wp.loc.name);
+	    else
+	        memberCounts.put(wp.loc.name, count - 1);
+    }
+
 }
 
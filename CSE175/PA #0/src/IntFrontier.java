@@ -0,0 +1,91 @@
+//
+// IntFrontier
+//
+// This class implements the same FIFO or LIFO list discipline as the
+// Frontier class, but for integers, such as the node ids of a CompactMap or
+// the slots of a SearchTree, rather than for Waypoint objects.  As with a
+// Frontier, the "removeTop" method extracts the next integer to be ejected
+// from the list, while "addToBottom" makes the list act as a queue and
+// "addToTop" makes it act as a stack.  The integers are kept in a circular
+// array that grows as needed, so no objects are allocated as integers are
+// added and removed.
+//
+
+
+public class IntFrontier {
+    int[] fringe;
+    int head;
+    int size;
+
+    // Default constructor ...
+    public IntFrontier() {
+	this(16);
+    }
+
+    // Constructor with initial capacity specified ...
+    public IntFrontier(int capacity) {
+	// The capacity is always a power of two ...
+	int length = 16;
+	while (length < capacity)
+	    length *= 2;
+	this.fringe = new int[length];
+	this.head = 0;
+	this.size = 0;
+    }
+
+    // isEmpty -- Return true if and only if there are currently no integers
+    // in the frontier.
+    public boolean isEmpty() {
+	return (size == 0);
+    }
+
+    // size -- Return the number of integers currently in the frontier.
+    public int size() {
+	return (size);
+    }
+
+    // clear -- Remove all integers from the frontier, keeping the allocated
+    // storage for reuse.
+    public void clear() {
+	head = 0;
+	size = 0;
+    }
+
+    // removeTop -- Return the integer at the top of the frontier list, and
+    // remove it from the frontier.  The frontier must not be empty.
+    public int removeTop() {
+	int top = fringe[head];
+	head = (head + 1) & (fringe.length - 1);
+	size--;
+	return (top);
+    }
+
+    // addToTop -- Add the given integer to the top of the frontier list.
+    public void addToTop(int i) {
+	if (size == fringe.length)
+	    grow();
+	head = (head - 1) & (fringe.length - 1);
+	fringe[head] = i;
+	size++;
+    }
+
+    // addToBottom -- Add the given integer to the bottom of the frontier
+    // list.
+    public void addToBottom(int i) {
+	if (size == fringe.length)
+	    grow();
+	fringe[(head + size) & (fringe.length - 1)] = i;
+	size++;
+    }
+
+    // grow -- Double the capacity of the circular array, moving the
+    // contents of the list to the start of the new array.
+    void grow() {
+	int[] larger = new int[fringe.length * 2];
+	for (int i = 0; i < size; i++)
+	    larger[i] = fringe[(head + i) & (fringe.length - 1)];
+	fringe = larger;
+	head = 0;
+    }
+
+}
@@ -0,0 +1,127 @@
+import java.util.Arrays;
+
+public class IterativeDeepeningSearch {
+
+    public int expansionCount;
+    public Map graph;
+    public String initialLoc;
+    public String destinationLoc;
+    public int limit;
+
+    // the path being explored, kept as a stack of node ids along with the next road to try out of each one
+    // these are the only things kept from one expansion to the next, so the memory used grows with the depth
+    // of the search rather than with the size of the search tree
+    int[] nodes = new int[16];
+    int[] nextRoad = new int[16];
+
+    //constructor
+    public IterativeDeepeningSearch(Map graph, String initialLoc, String destinationLoc, int limit){
+        // initializing...
+        this.graph = graph;
+        this.initialLoc = initialLoc;
+        this.destinationLoc = destinationLoc;
+        this.limit = limit;
+    }
+
+    // Iterative deepening search
+    // This search function runs a depth-limited depth-first search with a depth bound of 1, then 2, and so on,
+    // until the final destination is found, or until a search finishes without being cut off by its bound, or
+    // until the bound reaches the depth limit; the path found is the shallowest one, as for BFS
+    // Only the current path is stored, so a location is skipped when it is already on the path, but it may be
+    // reached again by another path, and nodes near the root are expanded again in every iteration
+    // expansionCount counts every expansion in every iteration
+    public Waypoint search() {
+        CompactMap compact = graph.compact();
+        int start = compact.nodeOf(initialLoc); // node id of the start point
+        int goal = compact.nodeOf(destinationLoc);  // node id of the final destination
+        expansionCount = 0; // no expansion happen so far
+
+        if (start == goal) {
+            return toWaypoint(compact, 0, start);   // return parent node if initialLoc and destinationLoc are the same
+        }
+        for (int bound = 1; bound < limit; bound++) {
+            int result = searchBounded(compact, start, goal, bound);
+            if (result >= 0) {
+                return toWaypoint(compact, result, goal);  // the path to the final destination is on the stack
+            }
+            if (result == -1) {
+                return null;    // failure when the whole tree fits within the bound
+            }
+        }
+        return null;    // failure when reach to the limit
+    }
+
+    // Depth-limited depth-first search
+    // This function searches every path from start of no more than bound roads, without visiting a location
+    // twice on one path, and returns the depth of the final destination, with the path to it left on the
+    // stack; otherwise it returns -1 if no path was cut off by the bound, or -2 if some path was
+    public int searchBounded(CompactMap compact, int start, int goal, int bound) {
+        boolean cutoff = false;
+        int depth = 0;
+        nodes[0] = start;   // set start point as parent node
+        nextRoad[0] = compact.firstRoad(start);
+        expansionCount++;   // expansion happens so add 1 to expansionCount
+
+        while (depth >= 0) {
+            int node = nodes[depth];
+            if (nextRoad[depth] == compact.endRoad(node)) {
+                depth--;    // every child has been tried, so go back up the path
+                continue;
+            }
+            int child = compact.target(nextRoad[depth]++);
+            if (onPath(child, depth)) {
+                continue;   // state check along the current path
+            }
+            if (child == goal) {
+                push(depth + 1, child, compact);
+                return depth + 1;   // the final destination has been found
+            }
+            if (depth + 1 == bound) {
+                // the child would be expanded if not for the bound
+                cutoff = cutoff || compact.firstRoad(child) < compact.endRoad(child);
+                continue;
+            }
+            depth++;
+            push(depth, child, compact);
+            expansionCount++;   // expansion happens so add 1 to expansionCount
+        }
+        return cutoff ? -2 : -1;
+    }
+
+    // this function places the given node on the stack at the given depth, growing the stack as needed
+    void push(int depth, int node, CompactMap compact) {
+        if (depth == nodes.length) {
+            nodes = Arrays.copyOf(nodes, 2 * depth);
+            nextRoad = Arrays.copyOf(nextRoad, 2 * depth);
+        }
+        nodes[depth] = node;
+        nextRoad[depth] = compact.firstRoad(node);
+    }
+
+    // this function returns true if the given node is on the stack at or above the given depth
+    boolean onPath(int node, int depth) {
+        for (int i = 0; i <= depth; i++) {
+            if (nodes[i] == node) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // this function builds the chain of Waypoint objects for the path on the stack, down to the given depth,
+    // and returns the Waypoint for the given node at the end of it
+    Waypoint toWaypoint(CompactMap compact, int depth, int node) {
+        nodes[depth] = node;
+        Waypoint wp = null;
+        for (int i = 0; i <= depth; i++) {
+            Waypoint next = new Waypoint(compact.location(nodes[i]), wp);
+            if (wp != null) {
+                next.road = compact.road(nextRoad[i - 1] - 1);  // the road taken to the next node on the path
+                next.depth = wp.depth + 1;
+                next.partialPathCost = wp.partialPathCost + compact.cost(nextRoad[i - 1] - 1);
+            }
+            wp = next;
+        }
+        return wp;
+    }
+}
@@ -5,9 +5,10 @@
 // "state space" to be searched for a short route from one location to
 // another.  Each location includes a textual name, a pair of Cartesian
 // coordinates, and a collection of Road objects which encode the immediate
-// routes leading away from this location.  Note that textual names are
-// assumed to be unique; two locations are considered the same if they have
-// the same name.
+// routes leading away from this location.  A location recorded in a Map is
+// also given an integer id, which is its position in the Map's collection
+// of locations.  Note that textual names are assumed to be unique; two
+// locations are considered the same if they have the same name.
 //
 // David Noelle -- Sun Feb 11 17:37:21 PST 2007
 //
@@ -22,6 +23,7 @@ public class Location {
     public double longitude = 0.0;
     public double latitude = 0.0;
     public List<Road> roads;
+    public int id = -1;
 
     // Default constructor ...
     public Location() {
@@ -87,6 +89,13 @@ public class Location {
     // coordinates of this location, separated by blanks, on the same line.
     public void write(OutputStream str, boolean showCoords) {
 		PrintWriter out = new PrintWriter(str, true);
+		write(out, showCoords);
+		out.flush();
+    }
+
+    // write -- As above, but write to the given PrintWriter, which is not
+    // flushed, so that many calls may share one buffered writer.
+    public void write(PrintWriter out, boolean showCoords) {
 		out.printf("%s", name);
 		if (showCoords) {
 			out.printf(" %f %f", longitude, latitude);
@@ -13,7 +13,12 @@
 // their being read and parsed.  The map is stored as a collection of 
 // Location objects, with each Location being given the responsibility of
 // maintaining all of the Road objects corresponding to road segments leading
-// out of it.
+// out of it.  A hash index from location names to Location objects is kept
+// alongside the collection of locations, so that locations can be found by
+// name in constant time while roads are being read.  Alternatively, a map
+// may be read from a binary map file (see MapFile), in which case the map
+// is held only as a memory-mapped CompactMap, and Location objects are
+// created from it as they are looked up by name.
 //
 // David Noelle -- Sun Feb 11 18:05:18 PST 2007
 //
@@ -27,10 +32,13 @@ public class Map {
     String locationFilename = "locations.dat";
     String roadFilename = "roads.dat";
     List<Location> locations;
+    HashMap<String, Location> locationIndex;
+    CompactMap compactMap;
 
     // Default constructor ...
     public Map() {
 		this.locations = new ArrayList<Location>();
+		this.locationIndex = new HashMap<String, Location>();
     }
 
     // Constructor with filenames specified ...
@@ -75,21 +83,34 @@ public class Map {
 		return (true);
     }
 
-    // findLocation -- Search through the collection of locations on this map
-    // for one with the given textual name.  Return a reference to the
+    // findLocation -- Look up the location on this map with the given
+    // textual name, using the name index.  Return a reference to the
     // corresponding Location object, or null if no such location is found.
+    // For a map read from a binary map file, the location is looked up in
+    // the compact map instead.
     public Location findLocation(String name) {
-		for (Location loc : locations) {
-	    	if (loc.name.equals(name))
-				return (loc);
+		if (name == null)
+	    	return (null);
+		Location loc = locationIndex.get(name);
+		if (loc == null && compactMap != null && compactMap.isMapped()) {
+	    	int node = compactMap.nodeOf(name);
+	    	if (node >= 0)
+				loc = compactMap.location(node);
 		}
-		return (null);
+		return (loc);
     }
 
     // recordLocation -- Add the given Location object to the collection of
-    // locations for this map.
+    // locations for this map, and enter it into the name index.  Since
+    // location names are assumed to be unique, but should they repeat, the
+    // index keeps the first location with a given name, which is the one
+    // that a search of the collection in order would find.  The location
+    // is given an integer id equal to its position in the collection.
     public void recordLocation(Location loc) {
+		loc.id = locations.size();
 		locations.add(loc);
+		locationIndex.putIfAbsent(loc.name, loc);
+		compactMap = null;
     }
 
     // readLocations -- Attempt to open the location file specified by the
@@ -155,6 +176,7 @@ public class Map {
 		    	}
 		    	// Record the road in the appropriate location ...
 		    	r.fromLocation.recordRoad(r);
+		    	compactMap = null;
 		    	// Allocate storage for the next road segment ...
 		    	r = new Road();
 			}
@@ -169,6 +191,46 @@ public class Map {
 		}
     }
 
+    // readLocations -- As above, but split the location file into chunks
+    // that are parsed by the given number of threads (see MapLoader).  The
+    // result is the same as that of the single-threaded method.
+    public boolean readLocations(int threads) {
+		return (new MapLoader(this, threads).readLocations(locationFilename));
+    }
+
+    // readRoads -- As above, but split the road file into chunks that are
+    // parsed by the given number of threads (see MapLoader).  The result is
+    // the same as that of the single-threaded method.
+    public boolean readRoads(int threads) {
+		return (new MapLoader(this, threads).readRoads(roadFilename));
+    }
+
+    // readBinaryMap -- Memory-map the given binary map file, written by the
+    // MapFile class, and use it as the contents of this map.  Any locations
+    // and roads previously read into this map are forgotten.  Return false
+    // on error.
+    public boolean readBinaryMap(String filename) {
+		CompactMap mapped = MapFile.read(filename);
+		if (mapped == null)
+	    	return (false);
+		locations.clear();
+		locationIndex.clear();
+		synchronized (this) {
+	    	compactMap = mapped;
+		}
+		return (true);
+    }
+
+    // compact -- Return a frozen CompactMap view of this map, building it
+    // the first time that it is requested.  The view is discarded, and
+    // rebuilt on the next request, whenever locations or roads are read
+    // into this map.
+    public synchronized CompactMap compact() {
+		if (compactMap == null)
+	    	compactMap = new CompactMap(this);
+		return (compactMap);
+    }
+
     // readMap -- Prompt the user for the pathnames of a location file and
     // a road file, and then read those files into this Map object.  Return
     // false on error.
@@ -0,0 +1,350 @@
+//
+// MapLoader
+//
+// This class reads location files and road files into a Map, like the
+// "readLocations" and "readRoads" methods of the Map class, but using many
+// threads.  A file is split into chunks of a few megabytes, each of which
+// is read and parsed on a pool of threads.  A chunk holds the lines that
+// begin within it, so a line that crosses the end of a chunk is parsed
+// with the chunk in which it begins, and skipped by the next one.  The
+// lines are parsed by a hand-written tokenizer that works directly on the
+// bytes of the file, rather than by a Scanner, with a fast path for
+// numbers written with no more than fifteen significant digits (which is
+// exact, since such numbers and the powers of ten that scale them are
+// exactly representable as doubles).
+//
+// The parsed chunks are merged into the map in file order, so the map ends
+// up exactly as the single-threaded methods would leave it:  locations get
+// the same ids, roads are recorded in the same order, and reading stops
+// at the first line that cannot be parsed, just as it does there.  When
+// reading roads, the names of the "from" and "to" locations are looked up
+// in the name index on the threads that parse them, which is safe since
+// the index is not changed while roads are read.  Only recording each road
+// in its "from" location is left to the merge, which is done on the
+// calling thread.
+//
+
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+
+public class MapLoader {
+    static final int CHUNK_BYTES = 8 << 20;
+    static final int MAX_LINE = 1 << 16;
+    static final double[] POWERS = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+				     1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    Map map;
+    int threads;
+    ThreadLocal<byte[]> buffers;
+
+    // Constructor with map and number of threads specified ...
+    public MapLoader(Map map, int threads) {
+	this.map = map;
+	this.threads = Math.max(1, threads);
+	this.buffers = new ThreadLocal<byte[]>();
+    }
+
+    // readLocations -- Read the locations in the given location file into
+    // the map.  Return false on error.
+    public boolean readLocations(String filename) {
+	List<Chunk> chunks = readChunks(filename, false);
+	if (chunks == null)
+	    return (false);
+	for (Chunk chunk : chunks) {
+	    for (Location loc : chunk.locations)
+		map.recordLocation(loc);
+	    if (chunk.stopped)
+		break;
+	}
+	return (true);
+    }
+
+    // readRoads -- Read the roads in the given road file into the map, and
+    // record each one in its "from" location.  The locations must already
+    // be known to the map.  Return false on error.
+    public boolean readRoads(String filename) {
+	List<Chunk> chunks = readChunks(filename, true);
+	if (chunks == null)
+	    return (false);
+	for (Chunk chunk : chunks) {
+	    for (Road r : chunk.roads)
+		r.fromLocation.recordRoad(r);
+	    if (!chunk.roads.isEmpty())
+		map.compactMap = null;
+	    if (chunk.unknown != null) {
+		System.err.printf("The location, %s, is not known.\n", chunk.unknown);
+		return (false);
+	    }
+	    if (chunk.stopped)
+		break;
+	}
+	return (true);
+    }
+
+    // readChunks -- Split the given file into chunks and parse them, as
+    // roads or as locations, on a pool of threads.  Return the parsed
+    // chunks, in file order, or null on error.
+    List<Chunk> readChunks(String filename, final boolean roads) {
+	File file = new File(filename);
+	if (!(file.exists() && file.canRead()))
+	    // The file cannot be read ...
+	    return (null);
+	ExecutorService pool = Executors.newFixedThreadPool(threads);
+	try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+	    final long size = channel.size();
+	    List<Future<Chunk>> results = new ArrayList<Future<Chunk>>();
+	    for (long start = 0; start < size; start += CHUNK_BYTES) {
+		final long begin = start;
+		final long end = Math.min(size, start + CHUNK_BYTES);
+		results.add(pool.submit(() -> parse(channel, begin, end, size, roads)));
+	    }
+	    List<Chunk> chunks = new ArrayList<Chunk>(results.size());
+	    for (Future<Chunk> result : results)
+		chunks.add(result.get());
+	    return (chunks);
+	} catch (IOException e) {
+	    // Something went wrong ...
+	    return (null);
+	} catch (ExecutionException e) {
+	    if (e.getCause() instanceof IOException)
+		return (null);
+	    throw new IllegalStateException("Map loading failed.", e.getCause());
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    return (null);
+	} finally {
+	    pool.shutdown();
+	}
+    }
+
+    // parse -- Read the bytes of the given file from "begin" to "end" (and
+    // far enough past "end" to finish the last line), and parse the lines
+    // that begin there.
+    Chunk parse(FileChannel channel, long begin, long end, long size, boolean roads) throws IOException {
+	// Read from one byte early, to see if a line begins right at "begin" ...
+	long from = Math.max(0, begin - 1);
+	long to = Math.min(size, end + MAX_LINE);
+	int length = (int) (to - from);
+	byte[] buf = buffers.get();
+	if (buf == null || buf.length < length) {
+	    buf = new byte[length];
+	    buffers.set(buf);
+	}
+	ByteBuffer bb = ByteBuffer.wrap(buf, 0, length);
+	while (bb.hasRemaining())
+	    if (channel.read(bb, from + bb.position()) < 0)
+		throw new EOFException(channel.toString());
+	Chunk chunk = new Chunk();
+	Tokenizer line = new Tokenizer(buf);
+	int pos = 0;
+	if (begin > 0) {
+	    // Skip the end of a line that began in the previous chunk ...
+	    while (pos < length && buf[pos] != '\n')
+		pos++;
+	    pos++;
+	}
+	int limit = (int) (end - from);
+	while (pos < limit) {
+	    int lineEnd = pos;
+	    while (lineEnd < length && buf[lineEnd] != '\n')
+		lineEnd++;
+	    if (lineEnd == length && to < size)
+		throw new IOException("A line is longer than " + MAX_LINE + " bytes.");
+	    line.reset(pos, lineEnd);
+	    boolean parsed = roads ? parseRoad(line, chunk) : parseLocation(line, chunk);
+	    if (!parsed || chunk.unknown != null) {
+		chunk.stopped = true;
+		break;
+	    }
+	    pos = lineEnd + 1;
+	}
+	return (chunk);
+    }
+
+    // parseLocation -- Parse a line of a location file, as Location.read
+    // does, and add the location to the given chunk.  Return false if not
+    // even a name could be read.
+    boolean parseLocation(Tokenizer line, Chunk chunk) {
+	if (!line.next())
+	    return (false);
+	Location loc = new Location();
+	loc.name = line.string();
+	if (line.next() && line.number()) {
+	    // There is a longitude to read ...
+	    loc.longitude = line.value;
+	    if (line.next() && line.number())
+		// There is a latitude to read ...
+		loc.latitude = line.value;
+	}
+	chunk.locations.add(loc);
+	return (true);
+    }
+
+    // parseRoad -- Parse a line of a road file, as Road.read does, look up
+    // its locations, and add the road to the given chunk.  Return false if
+    // not every field could be read.  If a location is not known, record
+    // its name in the chunk instead.
+    boolean parseRoad(Tokenizer line, Chunk chunk) {
+	Road r = new Road();
+	if (!line.next())
+	    return (false);
+	r.name = line.string();
+	if (!line.next())
+	    return (false);
+	r.fromLocationName = line.string();
+	if (!line.next())
+	    return (false);
+	r.toLocationName = line.string();
+	if (!(line.next() && line.number()))
+	    return (false);
+	r.cost = line.value;
+	// Fill in connections to location objects ...
+	r.fromLocation = map.findLocation(r.fromLocationName);
+	if (r.fromLocation == null) {
+	    chunk.unknown = r.fromLocationName;
+	    return (true);
+	}
+	r.toLocation = map.findLocation(r.toLocationName);
+	if (r.toLocation == null) {
+	    chunk.unknown = r.toLocationName;
+	    return (true);
+	}
+	// Share the location's copy of each name ...
+	r.fromLocationName = r.fromLocation.name;
+	r.toLocationName = r.toLocation.name;
+	chunk.roads.add(r);
+	return (true);
+    }
+
+    // Chunk -- The locations or roads parsed from one chunk of a file.  A
+    // chunk is "stopped" if it holds a line that could not be parsed, after
+    // which nothing more is read, and "unknown" is the name of a location
+    // that was not on the map, if one was found.
+    static class Chunk {
+	List<Location> locations = new ArrayList<Location>();
+	List<Road> roads = new ArrayList<Road>();
+	boolean stopped = false;
+	String unknown = null;
+    }
+
+    // Tokenizer -- Splits one line of a file into whitespace-separated
+    // tokens, and converts a token to a string or a number.
+    static class Tokenizer {
+	static final Charset CHARSET = Charset.defaultCharset();
+	byte[] buf;
+	int pos;
+	int end;
+	int start;
+	int stop;
+	double value;
+
+	// Constructor with the bytes of a file specified ...
+	Tokenizer(byte[] buf) {
+	    this.buf = buf;
+	}
+
+	// reset -- Begin tokenizing the line from "pos" to "end".
+	void reset(int pos, int end) {
+	    this.pos = pos;
+	    this.end = end;
+	}
+
+	// space -- Return true if the given byte is whitespace.
+	static boolean space(byte b) {
+	    return (b == ' ' || b == '\t' || b == '\r' || b == '\f' || b == 0x0B);
+	}
+
+	// next -- Find the next token on the line.  Return false if there is
+	// none.
+	boolean next() {
+	    while (pos < end && space(buf[pos]))
+		pos++;
+	    if (pos == end)
+		return (false);
+	    start = pos;
+	    while (pos < end && !space(buf[pos]))
+		pos++;
+	    stop = pos;
+	    return (true);
+	}
+
+	// string -- Return the current token as a string.
+	String string() {
+	    return (new String(buf, start, stop - start, CHARSET));
+	}
+
+	// number -- Convert the current token to a number, in "value".
+	// Return false if it is not a decimal number.
+	boolean number() {
+	    int i = start;
+	    boolean negative = false;
+	    if (i < stop && (buf[i] == '-' || buf[i] == '+'))
+		negative = (buf[i++] == '-');
+	    long mantissa = 0;
+	    int digits = 0;
+	    int scale = 0;
+	    boolean any = false;
+	    boolean point = false;
+	    for (; i < stop; i++) {
+		byte b = buf[i];
+		if (b >= '0' && b <= '9') {
+		    any = true;
+		    if (mantissa == 0 && b == '0') {
+			// Leading zeros are not significant ...
+			if (point)
+			    scale--;
+			continue;
+		    }
+		    if (digits < 18)
+			mantissa = 10 * mantissa + (b - '0');
+		    else if (!point)
+			scale++;
+		    digits++;
+		    if (point && digits <= 18)
+			scale--;
+		} else if (b == '.' && !point) {
+		    point = true;
+		} else {
+		    break;
+		}
+	    }
+	    if (!any)
+		return (false);
+	    if (i < stop && (buf[i] == 'e' || buf[i] == 'E')) {
+		i++;
+		boolean negativeExponent = false;
+		if (i < stop && (buf[i] == '-' || buf[i] == '+'))
+		    negativeExponent = (buf[i++] == '-');
+		if (i == stop)
+		    return (false);
+		int exponent = 0;
+		for (; i < stop; i++) {
+		    byte b = buf[i];
+		    if (b < '0' || b > '9')
+			return (false);
+		    exponent = Math.min(10 * exponent + (b - '0'), 100000);
+		}
+		scale += negativeExponent ? -exponent : exponent;
+	    }
+	    if (i != stop)
+		return (false);
+	    if (digits <= 15 && scale >= -22 && scale <= 22) {
+		// Both the mantissa and the power of ten are exact, so a
+		// single multiplication or division rounds correctly ...
+		double v = (scale >= 0) ? mantissa * POWERS[scale] : mantissa / POWERS[-scale];
+		value = negative ? -v : v;
+	    } else {
+		value = Double.parseDouble(new String(buf, start, stop - start, StandardCharsets.US_ASCII));
+	    }
+	    return (true);
+	}
+    }
+
+}
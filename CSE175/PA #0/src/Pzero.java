@@ -95,6 +95,19 @@ public class Pzero {
 	    	}
 	    	System.out.printf("Number of Node Expansions = %d.\n", dfs.expansionCount);
 	    
+	    	// Testing iterative deepening search ...
+	    	System.out.println("TESTING ITERATIVE DEEPENING SEARCH WITH PATH CHECKING");
+	    	IterativeDeepeningSearch ids = new IterativeDeepeningSearch(graph, initialLoc, destinationLoc, limit);
+	    	solution = ids.search();
+	    	System.out.println("Solution:");
+	    	if (solution == null) {
+				System.out.println("None found.");
+	    	} else {
+				solution.reportSolution(System.out);
+				System.out.printf("Path Cost = %f.\n", solution.partialPathCost);
+	    	}
+	    	System.out.printf("Number of Node Expansions = %d.\n", ids.expansionCount);
+	    
 	    	// Done ...
 	    	System.out.println("ALGORITHM COMPARISON COMPLETE");
 		} catch (IOException e) {
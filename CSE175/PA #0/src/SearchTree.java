@@ -0,0 +1,113 @@
+//
+// SearchTree
+//
+// This class records the nodes of a search tree grown over a CompactMap,
+// using parallel primitive arrays rather than one Waypoint object per node.
+// Each search tree node is identified by an integer "slot".  For every slot,
+// the tree records the map node (i.e., the location "state"), the slot of
+// the parent node, the id of the road taken from the parent, the depth of
+// the node, and its partial path cost.  The arrays grow as needed.  Once a
+// solution has been found, the "toWaypoint" method builds a chain of
+// Waypoint objects for just the nodes on the solution path, so that the
+// usual "reportSolution" method can be used to describe it.
+//
+
+
+import java.util.*;
+
+
+public class SearchTree {
+    int size = 0;
+    int[] state;
+    int[] parent;
+    int[] road;
+    int[] depth;
+    double[] partialPathCost;
+
+    // Default constructor ...
+    public SearchTree() {
+	this(64);
+    }
+
+    // Constructor with initial capacity specified ...
+    public SearchTree(int capacity) {
+	capacity = Math.max(capacity, 1);
+	this.state = new int[capacity];
+	this.parent = new int[capacity];
+	this.road = new int[capacity];
+	this.depth = new int[capacity];
+	this.partialPathCost = new double[capacity];
+    }
+
+    // size -- Return the number of nodes in the tree.
+    public int size() {
+	return (size);
+    }
+
+    // clear -- Remove all nodes from the tree, keeping the allocated storage
+    // for reuse.
+    public void clear() {
+	size = 0;
+    }
+
+    // addRoot -- Add a root node for the given map node, and return its
+    // slot.
+    public int addRoot(int node) {
+	return (add(node, -1, -1, 0, 0.0));
+    }
+
+    // addChild -- Add a child of the node in the given parent slot, reached
+    // by taking the given road to the given map node at the given
+    // incremental cost.  Return the slot of the new node.
+    public int addChild(int parentSlot, int road, int node, double cost) {
+	return (add(node, parentSlot, road, depth[parentSlot] + 1, partialPathCost[parentSlot] + cost));
+    }
+
+    // add -- Append a node with the given statistics, growing the arrays if
+    // they are full.  Return the slot of the new node.
+    int add(int node, int parentSlot, int viaRoad, int d, double g) {
+	if (size == state.length)
+	    grow();
+	state[size] = node;
+	parent[size] = parentSlot;
+	road[size] = viaRoad;
+	depth[size] = d;
+	partialPathCost[size] = g;
+	return (size++);
+    }
+
+    // grow -- Double the capacity of all of the arrays.
+    void grow() {
+	int capacity = state.length * 2;
+	state = Arrays.copyOf(state, capacity);
+	parent = Arrays.copyOf(parent, capacity);
+	road = Arrays.copyOf(road, capacity);
+	depth = Arrays.copyOf(depth, capacity);
+	partialPathCost = Arrays.copyOf(partialPathCost, capacity);
+    }
+
+    // toWaypoint -- Build the chain of Waypoint objects running from the
+    // root of the tree to the node in the given slot, and return the
+    // Waypoint for that node.  Only nodes on this path are allocated.
+    public Waypoint toWaypoint(CompactMap graph, int slot) {
+	if (slot < 0)
+	    return (null);
+	// Collect the path, from this node back to the root ...
+	int[] path = new int[depth[slot] + 1];
+	int length = 0;
+	for (int s = slot; s >= 0; s = parent[s])
+	    path[length++] = s;
+	// Link up Waypoint objects, starting at the root ...
+	Waypoint wp = null;
+	for (int i = length - 1; i >= 0; i--) {
+	    int s = path[i];
+	    wp = new Waypoint(graph.location(state[s]), wp);
+	    if (wp.previous != null)
+		wp.road = graph.road(road[s]);
+	    wp.depth = depth[s];
+	    wp.partialPathCost = partialPathCost[s];
+	}
+	return (wp);
+    }
+
+}
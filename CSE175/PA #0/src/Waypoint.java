@@ -11,9 +11,16 @@
 // search tree to this one.  This class provides two noteworthy methods. 
 // First, the "expand" method fills in the "options" list of children of this 
 // node, using information embedded in this node's Location object.  Second, 
-// the "reportSolution" recursive method uses the "previous" references of 
-// nodes in the search tree in order to output the path from the initial node
-// of the search tree to this node.
+// the "reportSolution" method uses the "previous" references of nodes in the
+// search tree in order to output the path from the initial node of the
+// search tree to this node.  Searches that check for repeated states
+// need not expand a node at all:  the "successorCount" and "successor"
+// methods visit the roads leading out of its location, and the "child"
+// method creates a child node only for a road that the search decides to
+// follow.  The "options" list of a node is only allocated once the node is
+// expanded.  Each node other than the initial node also records the road
+// taken from its parent, so that the "roads" method can return the path
+// without searching the roads out of each location on it.
 //
 // David Noelle -- Sun Feb 11 18:26:42 PST 2007
 //
@@ -24,15 +31,18 @@ import java.util.*;
 
 
 public class Waypoint {
+    static final List<Waypoint> NO_OPTIONS = Collections.emptyList();
+
     public Location loc;
     public Waypoint previous;
+    public Road road;
     public List<Waypoint> options;
     public int depth = 0;
     public double partialPathCost = 0.0;
 
     // Default constructor ...
     public Waypoint() {
-	this.options = new ArrayList<Waypoint>();
+	this.options = NO_OPTIONS;
     }
 
     // Constructor with Location object specified ...
@@ -52,13 +62,33 @@ public class Waypoint {
     // linked into the search tree, and make sure that it's partial path cost
     // is correctly calculated.
     public void expand() {
-		options.removeAll(options);
-		for (Road r : loc.roads) {
-	    	Waypoint option = new Waypoint(r.toLocation, this);
-	    	option.depth = this.depth + 1;
-	    	option.partialPathCost = this.partialPathCost + r.cost;
-	    	options.add(option);
-		}
+		options = new ArrayList<Waypoint>(loc.roads.size());
+		for (Road r : loc.roads)
+	    	options.add(child(r));
+    }
+
+    // successorCount -- Return the number of roads leading out of the
+    // location of this node, each of which leads to a possible child node.
+    public int successorCount() {
+		return (loc.roads.size());
+    }
+
+    // successor -- Return the road, leading out of the location of this
+    // node, with the given index, which runs from zero to one less than the
+    // number of successors.
+    public Road successor(int i) {
+		return (loc.roads.get(i));
+    }
+
+    // child -- Return a new child node of this node, reached by following
+    // the given road out of its location.  The child is linked to this node
+    // as its parent, but it is not added to the "options" list.
+    public Waypoint child(Road r) {
+		Waypoint option = new Waypoint(r.toLocation, this);
+		option.road = r;
+		option.depth = this.depth + 1;
+		option.partialPathCost = this.partialPathCost + r.cost;
+		return (option);
     }
 
     // isFinalDestination -- Return true if and only if the name of the
@@ -67,24 +97,60 @@ public class Waypoint {
 		return (loc.name.equals(destinationName));
     }
 
+    // roadFromPrevious -- Return the road taken from the parent of this node
+    // to reach it, or null if this is the initial node.  Nodes built without
+    // recording the road fall back on searching the roads out of the
+    // parent's location.
+    public Road roadFromPrevious() {
+		if (previous == null)
+	    	return (null);
+		if (road == null)
+	    	road = previous.loc.findRoad(loc);
+		return (road);
+    }
+
+    // roads -- Return the roads on the path from the root of the search
+    // tree (i.e., the initial node) to this node, in order.  The array is
+    // empty if this is the initial node.
+    public Road[] roads() {
+		int length = 0;
+		for (Waypoint wp = this; wp.previous != null; wp = wp.previous)
+	    	length++;
+		Road[] path = new Road[length];
+		for (Waypoint wp = this; wp.previous != null; wp = wp.previous)
+	    	path[--length] = wp.roadFromPrevious();
+		return (path);
+    }
+
+    // root -- Return the root of the search tree (i.e., the initial node).
+    public Waypoint root() {
+		Waypoint wp = this;
+		while (wp.previous != null)
+	    	wp = wp.previous;
+		return (wp);
+    }
+
     // reportSolution -- Output a textual description of the path from the 
     // root of the search tree (i.e., the initial node) to this node, sending
-    // the description to the given stream.  Note that this method is
-    // recursive; a recursive call outputs the path up to the parent of this
-    // node before the final road segment in the path is described.
+    // the description to the given stream.  The description is buffered,
+    // and the stream is flushed once, at the end.
     public void reportSolution(OutputStream str) {
-		PrintWriter out = new PrintWriter(str, true);
-		if (previous == null) {
-	    	// This is the starting point ...
-	    	out.printf("START AT ");
-	    	loc.write(str, false);
-	    	out.printf(".\n");
-		} else {
-	    	// First provide the solution up until this point ...
-	    	previous.reportSolution(str);
-	    	// Now report the road segment to this point ...
+		PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(str)));
+		reportSolution(out);
+		out.flush();
+    }
+
+    // reportSolution -- As above, but write the description to the given
+    // PrintWriter, which is not flushed.
+    public void reportSolution(PrintWriter out) {
+		// This is the starting point ...
+		out.printf("START AT ");
+		root().loc.write(out, false);
+		out.printf(".\n");
+		// Now report each road segment along the path ...
+		for (Road r : roads()) {
 	    	out.printf("TAKE ");
-	    	(previous.loc.findRoad(loc)).write(str, true);
+	    	r.write(out, true);
 	    	out.printf(".\n");
 		}
     }
@@ -7,6 +7,9 @@ public class AStarSearch {
     public String destinationLoc = " ";
     public int limit = 0;
     public int expansionCount = 0;
+    public SearchStats stats = new SearchStats();   // what the last search did
+    public SearchMetrics metrics = null;    // if set, the stats of every search are added to it
+    public Heuristic heuristic = null;  // if set, used in place of a GoodHeuristic
 
     // constructor
     AStarSearch(Map graph, String initialLoc, String destinationLoc, int limit){
@@ -16,11 +19,27 @@ public class AStarSearch {
         this.limit = limit; // set search limit
     }
 
+    // constructor with a heuristic function to use in place of a GoodHeuristic, such as a LandmarkHeuristic
+    AStarSearch(Map graph, String initialLoc, String destinationLoc, int limit, Heuristic heuristic){
+        this(graph, initialLoc, destinationLoc, limit);
+        this.heuristic = heuristic;
+    }
+
     // the following function uses A* Search to find path from the initialLoc and destinationLoc
     // A* Search will visit each node by evaluating the value of heuristic value and particalPathCost
     // if repeatedChecking is true, the function will use repeated state checking; whereas, the function will not use
     // repeated if repeatedChecking is false
     public Waypoint search(boolean repeatedChecking) {
+        stats.start();
+        try {
+            return searchWaypoints(repeatedChecking);
+        } finally {
+            stats.finish(expansionCount, metrics);
+        }
+    }
+
+    // the search itself, which the function above measures
+    Waypoint searchWaypoints(boolean repeatedChecking) {
         Waypoint node = new Waypoint(graph.findLocation(initialLoc), null); //create the initial node
         expansionCount = 0; // initialize the expansionCount
 
@@ -34,9 +53,18 @@ public class AStarSearch {
             sortedFrontier.addSorted(node); // add current node into sortedFrontier
 
             // create a GoodHeuristic object, called h, for calculating heuristic value and particalPathCost
-            GoodHeuristic hc = new GoodHeuristic();
+            // unless another heuristic function has been given
+            Heuristic hc = heuristic;
             Location endpoint = graph.findLocation(destinationLoc); // create a Location of endpoint for generate Heuristic
-            hc.startHeuristic(graph, endpoint);  // operate Heuristic evaluation
+            if (hc == null) {
+                GoodHeuristic good = new GoodHeuristic();
+                good.startHeuristic(graph, endpoint);  // operate Heuristic evaluation
+                hc = good;
+            } else {
+                hc.setDestination(endpoint);
+            }
+
+            stats.setupDone();  // the search proper begins here
 
             if (repeatedChecking) { // if repeatedChecking is true, repeated state checking involves
                 // create a HashSet, called explored, for repeated checking
@@ -52,30 +80,42 @@ public class AStarSearch {
                     } else {    // do following if current node is not destination
                         Waypoint checkNode; // create a new node for storing node
                         explored.add(node.loc.name);    // add current node into checklist
-                        node.expand(hc); // find all child nodes of current node
                         expansionCount++;   // expand operates once so add 1 to expansionCount
 
-                        // for each child node in the list of child node of current node, do following
-                        for (Waypoint option : node.options) {
+                        // for each road out of the current node's location, do following; a child node is only created
+                        // when it is added to sortedFrontier
+                        for (int i = 0; i < node.successorCount(); i++) {
+                            Road road = node.successor(i);
+                            Location next = road.toLocation;
                             // if the child node is not in explored, do following
-                            if (!explored.contains(option.loc.name)) {
+                            if (!explored.contains(next.name)) {
+                                double cost = node.partialPathCost + road.cost;   // partialPathCost of the child node
                                 // if the child node has already added in sortedFrontier before, do following
-                                if (sortedFrontier.contains(option) == true) {
+                                if (sortedFrontier.contains(next) == true) {
                                     // store the old version child node into checkNode for comparing partialPathCost with
                                     // the new version node
-                                    checkNode = sortedFrontier.find(option);
+                                    checkNode = sortedFrontier.find(next);
                                     // if the child node's partialPathCost is less than its old version's
-                                    if (option.partialPathCost < checkNode.partialPathCost) {
-                                        // delete old version child node from sortedFrontier
-                                        sortedFrontier.remove(checkNode);
-                                        // add the child node, which has less partialPathCost, into sortedFrontier
-                                        sortedFrontier.addSorted(option);
+                                    if (cost < checkNode.partialPathCost) {
+                                        // replace old version child node in sortedFrontier with the child node,
+                                        // which has less partialPathCost
+                                        sortedFrontier.decreaseKey(checkNode, node.child(road, hc));
+                                        stats.generated++;
+                                        stats.heuristicEvaluations++;
+                                        stats.decreaseKeys++;
+                                    } else {
+                                        stats.pruned++; // the frontier already holds a path that is no worse
                                     }
                                 } else {    // if the child node never add to sortedFrontier before
-                                    sortedFrontier.addSorted(option);   // add the child node to sortedFrontier directly
+                                    stats.generated++;
+                                    stats.heuristicEvaluations++;
+                                    sortedFrontier.addSorted(node.child(road, hc));   // add the child node to sortedFrontier directly
                                 }
+                            } else {
+                                stats.pruned++; // explored already
                             }
                         }
+                        stats.frontier(sortedFrontier.size());
                     }
                 }
                 return null;    // fail if sortedFrontier is empty or reach to the limit
@@ -87,18 +127,172 @@ public class AStarSearch {
                     if (node.isFinalDestination(destinationLoc)) {  // check the current node is destination or not
                         return node;    // return current node if it is the destination
                     } else {    // do following if current node is not destination
-                        // expand(hc) will find all child nodes of current node
-                        // expand(hc) also calculates the heuristic value and particalPathCost for every child node
-                        node.expand(hc);
-
                         expansionCount++;   // expand operates once so add 1 to expansionCount
 
-                        // add the whole list of child nodes into sortedFrontier without repeated state check
-                        sortedFrontier.addSorted(node.options);
+                        // add a child node for each road out of the current node's location into sortedFrontier without repeated
+                        // state check; child(road, hc) also calculates the heuristic value and partialPathCost of the child node
+                        for (int i = 0; i < node.successorCount(); i++) {
+                            sortedFrontier.addSorted(node.child(node.successor(i), hc));
+                        }
+                        stats.generated += node.successorCount();
+                        stats.heuristicEvaluations += node.successorCount();
+                        stats.frontier(sortedFrontier.size());
                     }
                 }
                 return null;    // fail because sortedFrontier is empty or reach the limit
             }
         }
     }
+
+    // the following function performs the same search as the one above, but over a CompactMap
+    // with repeated state checking, it uses searchNode below, and Waypoint objects are only created for the
+    // nodes on the returned solution path
+    // without repeated state checking, the search tree is kept in a SearchTree of primitive arrays, and the
+    // frontier is keyed by search tree slot
+    public Waypoint search(CompactMap compact, boolean repeatedChecking) {
+        stats.start();
+        try {
+            return searchCompact(compact, repeatedChecking);
+        } finally {
+            stats.finish(expansionCount, metrics);
+        }
+    }
+
+    // the search itself, which the function above measures
+    Waypoint searchCompact(CompactMap compact, boolean repeatedChecking) {
+        if (repeatedChecking) {
+            int node = searchNode(compact);
+            return (node < 0) ? null : SearchContext.current().toWaypoint(compact, node);
+        }
+        int start = compact.nodeOf(initialLoc);     // node id of the start point
+        int goal = compact.nodeOf(destinationLoc);  // node id of the end point
+        expansionCount = 0; // initialize the expansionCount
+
+        Heuristic h = compactHeuristic(compact, goal);   // heuristic function for the end point
+
+        SearchTree tree = new SearchTree();
+        int current = tree.addRoot(start, h.heuristicFunction(compact, start));    // create the initial node
+
+        if (start == goal) {    // check if the start point is the destination
+            return tree.toWaypoint(compact, current);
+        }
+        // the frontier is sorted by the same statistic as a SortedFrontier(SortBy.f)
+        HeapFrontier frontier = new HeapFrontier();
+        frontier.add(current, tree.priority(current, SortBy.f));
+
+        stats.setupDone();  // the search proper begins here
+
+        // check frontier is empty or not and check the search limit
+        while (!frontier.isEmpty() && tree.depth[current] < limit) {
+            current = frontier.removeTop();     // the first slot of the frontier
+            int node = tree.state[current];
+
+            if (node == goal) {     // check the current node is destination or not
+                return tree.toWaypoint(compact, current);
+            }
+            expansionCount++;   // expand operates once so add 1 to expansionCount
+
+            // no repeated state checking involved, add a child node for every road leading out of the current node
+            for (int e = compact.firstRoad(node); e < compact.endRoad(node); e++) {
+                int child = compact.target(e);
+                int childSlot = tree.addChild(current, e, child, compact.cost(e), h.heuristicFunction(compact, child));
+                frontier.add(childSlot, tree.priority(childSlot, SortBy.f));
+            }
+            stats.generated += compact.endRoad(node) - compact.firstRoad(node);
+            stats.heuristicEvaluations += compact.endRoad(node) - compact.firstRoad(node);
+            stats.frontier(frontier.size());
+        }
+        return null;    // fail if frontier is empty or reach to the limit
+    }
+
+    // the following function performs the same search as the one above with repeated state checking, but over
+    // a CompactMap, recording the search tree in the calling thread's SearchContext
+    // it returns the node id of the destination, or -1 on failure; the path found can then be read from the
+    // context, which is returned by SearchContext.current until the thread starts another search
+    // once the context has grown to the size of the map, this function allocates nothing
+    public int searchNode(CompactMap compact) {
+        stats.start();
+        try {
+            return searchContext(compact);
+        } finally {
+            stats.finish(expansionCount, metrics);
+        }
+    }
+
+    // the search itself, which the function above measures
+    int searchContext(CompactMap compact) {
+        int start = compact.nodeOf(initialLoc);     // node id of the start point
+        int goal = compact.nodeOf(destinationLoc);  // node id of the end point
+        expansionCount = 0; // initialize the expansionCount
+        Heuristic h = compactHeuristic(compact, goal);   // heuristic function for the end point
+
+        SearchContext context = SearchContext.local(compact);
+        context.reachRoot(start, h.heuristicFunction(compact, start));    // create the initial node
+        if (start == goal) {    // check if the start point is the destination
+            return start;
+        }
+        HeapFrontier frontier = context.heap;   // the frontier is sorted like a SortedFrontier(SortBy.f)
+        frontier.add(start, context.priority(start, SortBy.f));
+        int node = start;
+        stats.setupDone();  // the search proper begins here
+
+        // check frontier is empty or not and check the search limit
+        while (!frontier.isEmpty() && context.depth[node] < limit) {
+            node = frontier.removeTop();    // the first node of the frontier
+
+            if (node == goal) {     // check the current node is destination or not
+                return node;
+            }
+            context.markExplored(node);     // add current node into checklist
+            expansionCount++;   // expand operates once so add 1 to expansionCount
+
+            // visit every road leading out of the current node
+            for (int e = compact.firstRoad(node); e < compact.endRoad(node); e++) {
+                int child = compact.target(e);
+                // skip the child node if it has been explored
+                if (context.isExplored(child)) {
+                    stats.pruned++;
+                    continue;
+                }
+                boolean inFrontier = frontier.contains(child);
+                // skip the child node if the frontier already holds a path to it that is no worse
+                if (inFrontier && context.pathCost(node) + compact.cost(e) >= context.pathCost(child)) {
+                    stats.pruned++;
+                    continue;
+                }
+                context.reachChild(node, e, child, compact.cost(e), h.heuristicFunction(compact, child));
+                stats.generated++;
+                stats.heuristicEvaluations++;
+                if (inFrontier) {
+                    frontier.decreaseKey(child, context.priority(child, SortBy.f));    // the child node has improved
+                    stats.decreaseKeys++;
+                } else {
+                    frontier.add(child, context.priority(child, SortBy.f));
+                }
+            }
+            stats.frontier(frontier.size());
+        }
+        return -1;  // fail if frontier is empty or reach to the limit
+    }
+
+    // the heuristic function used for searches over a compact map, kept from one search to the next
+    GoodHeuristic compactHeuristic = null;
+    CompactMap compactHeuristicGraph = null;
+
+    // this function returns the heuristic function for a search over the given compact map, set for the given
+    // end point; the maximum road speed is only found again when the search moves to a different map
+    // a heuristic function given to the constructor is used instead, if there is one
+    Heuristic compactHeuristic(CompactMap compact, int goal) {
+        if (heuristic != null) {
+            heuristic.setDestination(compact, goal);
+            return heuristic;
+        }
+        if (compactHeuristic == null || compactHeuristicGraph != compact) {
+            compactHeuristic = new GoodHeuristic();
+            compactHeuristic.maxRoadSpeed(compact);
+            compactHeuristicGraph = compact;
+        }
+        compactHeuristic.setDestination(compact.location(goal));
+        return compactHeuristic;
+    }
 }
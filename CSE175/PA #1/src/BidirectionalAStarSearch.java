@@ -0,0 +1,37 @@
+// this search finds the path from the initialLoc to the destinationLoc with two A* searches, one forward from the
+// initialLoc and one backward from the destinationLoc, which meet and stop as described for the bidirectional
+// uniform cost search
+// the forward search is guided toward the destinationLoc and the backward search toward the initialLoc, but each
+// by only half of the difference between the two GoodHeuristic estimates (see potential below), because the two
+// searches can only be joined safely if they see the same reduced road costs
+public class BidirectionalAStarSearch extends BidirectionalUniformCostSearch {
+    // the heuristic function of the forward search, which also supplies the distances for the backward search
+    GoodHeuristic hc;
+    Location origin;    // the location of the start point
+
+    // constructor
+    public BidirectionalAStarSearch(Map graph, String initialLoc, String destinationLoc, int limit) {
+        super(graph, initialLoc, destinationLoc, limit);
+    }
+
+    // this function finds the highest speed and sets the end point before each search
+    void prepare(Location start, Location end) {
+        if (hc == null) {
+            hc = new GoodHeuristic();
+            hc.maxRoadSpeed(graph); // find maximum speed
+        }
+        hc.setDestination(end); // set end point
+        origin = start;
+    }
+
+    // this function returns the average of the heuristic toward the destinationLoc and the negative of the
+    // heuristic toward the initialLoc, for the forward search, and its negative for the backward search
+    // both heuristics are consistent, so the reduced cost of every road stays non-negative
+    double potential(Location loc, boolean isForward) {
+        if (!(hc.maxSpeed > 0.0)) {
+            return 0.0;     // no road gives a speed, so there is nothing to go on
+        }
+        double p = (hc.distance(loc, hc.getDestination()) - hc.distance(loc, origin)) / (2.0 * hc.maxSpeed);
+        return isForward ? p : -p;
+    }
+}
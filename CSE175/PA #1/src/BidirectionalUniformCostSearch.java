@@ -0,0 +1,160 @@
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+public class BidirectionalUniformCostSearch {
+    // initializing...
+    public Map graph;
+    public String initialLoc = " ";
+    public String destinationLoc = " ";
+    public int limit = 0;
+    public int expansionCount = 0;
+
+    // the cheapest path found so far from the initialLoc to the destinationLoc, which runs through the forward
+    // node meetForward and then back along the backward node meetBackward
+    double bestCost;
+    Waypoint meetForward;
+    Waypoint meetBackward;
+
+    // constructor
+    public BidirectionalUniformCostSearch(Map graph, String initialLoc, String destinationLoc, int limit) {
+        this.graph = graph; // encode map as object graph
+        this.initialLoc = initialLoc;   // set start point
+        this.destinationLoc = destinationLoc;   // set end point
+        this.limit = limit; // set search limit
+    }
+
+    // the following function finds the path from the initialLoc to the destinationLoc by running two uniform cost
+    // searches at once: a forward search from the initialLoc along the roads leading out of each location, and a
+    // backward search from the destinationLoc along the roads leading into each location (see Map.incomingRoads)
+    // a backward node's previous node is the next step toward the destinationLoc, and its partialPathCost is the
+    // cost of getting from its location to the destinationLoc
+    // each step expands the top node of the smaller frontier, and every time a search reaches a location that the
+    // other search has reached, the two paths are joined if together they are cheaper than any path found so far
+    // the searches stop once the tops of the two frontiers together cost at least as much as the best joined path,
+    // since no path through a node that is still in either frontier can then be cheaper
+    // repeated state checking is always used, because the stopping rule relies on it
+    // the path is returned as a chain of forward nodes, exactly as the unidirectional searches return it
+    public Waypoint search() {
+        Location start = graph.findLocation(initialLoc);    // the location of the start point
+        Location end = graph.findLocation(destinationLoc);  // the location of the end point
+        expansionCount = 0; // initialize the expansionCount
+        if (start == null || end == null) {
+            return null;    // fail if either end is not on the map
+        }
+        Waypoint node = new Waypoint(start, null);  // create the initial node of the forward search
+        if (node.isFinalDestination(destinationLoc)) {  // check if the start point is the destination
+            return node;
+        }
+        Waypoint goal = new Waypoint(end, null);    // create the initial node of the backward search
+        prepare(start, end);
+        node.heuristicValue = potential(start, true);
+        goal.heuristicValue = potential(end, false);
+
+        // each search sorts its frontier by partialPathCost plus potential (see potential below), keeps the best
+        // node for every location it has reached, and keeps a checklist of the locations it has expanded
+        SortedFrontier forward = new SortedFrontier(SortBy.f);
+        SortedFrontier backward = new SortedFrontier(SortBy.f);
+        HashMap<String, Waypoint> reachedForward = new HashMap<>();
+        HashMap<String, Waypoint> reachedBackward = new HashMap<>();
+        HashSet<String> exploredForward = new HashSet<>();
+        HashSet<String> exploredBackward = new HashSet<>();
+        forward.addSorted(node);
+        backward.addSorted(goal);
+        reachedForward.put(start.name, node);
+        reachedBackward.put(end.name, goal);
+        bestCost = Double.POSITIVE_INFINITY;
+        meetForward = null;
+        meetBackward = null;
+
+        // check whether either frontier is empty, and whether the frontiers can still hold a cheaper path
+        while (!forward.isEmpty() && !backward.isEmpty()
+               && forward.priority(forward.get(0)) + backward.priority(backward.get(0)) < bestCost) {
+            if (forward.size() <= backward.size()) {
+                step(forward, reachedForward, exploredForward, reachedBackward, true);
+            } else {
+                step(backward, reachedBackward, exploredBackward, reachedForward, false);
+            }
+        }
+        if (meetForward == null) {
+            return null;    // fail if the searches never met within the limit
+        }
+        return join(meetForward, meetBackward);
+    }
+
+    // this function removes the top node of the given frontier and expands it, in the direction of the search
+    // that the frontier belongs to; reached and explored belong to the same search, and other holds the nodes
+    // reached by the search in the opposite direction
+    void step(SortedFrontier frontier, HashMap<String, Waypoint> reached, HashSet<String> explored,
+              HashMap<String, Waypoint> other, boolean isForward) {
+        Waypoint node = frontier.removeTop();   // the first node of the frontier
+        explored.add(node.loc.name);    // add current node into checklist
+        if (node.depth >= limit) {
+            return;     // do not expand the node if it has reached the search limit
+        }
+        expansionCount++;   // expand operates once so add 1 to expansionCount
+
+        // the forward search follows the roads leading out of the node, the backward search the roads leading in
+        List<Road> roads = isForward ? node.loc.roads : graph.incomingRoads(node.loc);
+        for (Road r : roads) {
+            Location next = isForward ? r.toLocation : r.fromLocation;
+            // skip the child node if it has been explored
+            if (explored.contains(next.name)) {
+                continue;
+            }
+            // skip the child node if this search has already reached it for no more
+            double cost = node.partialPathCost + r.cost;
+            Waypoint old = reached.get(next.name);
+            if (old != null && cost >= old.partialPathCost) {
+                continue;
+            }
+            Waypoint option = new Waypoint(next, node);
+            option.road = r;    // the road between the two locations, in the direction of travel
+            option.depth = node.depth + 1;
+            option.partialPathCost = cost;
+            option.heuristicValue = potential(next, isForward);
+            reached.put(next.name, option);
+            if (old != null) {
+                frontier.decreaseKey(old, option);  // replace the old version of the child node, which is in the frontier
+            } else {
+                frontier.addSorted(option);
+            }
+
+            // join the two searches at the child node, if the other search has reached it and the path is cheaper
+            Waypoint match = other.get(next.name);
+            if (match != null && cost + match.partialPathCost < bestCost && option.depth + match.depth <= limit) {
+                bestCost = cost + match.partialPathCost;
+                meetForward = isForward ? option : match;
+                meetBackward = isForward ? match : option;
+            }
+        }
+    }
+
+    // this function returns a chain of forward nodes that continues from the given forward node along the path
+    // of the given backward node, which is for the same location, to the destinationLoc
+    Waypoint join(Waypoint forwardNode, Waypoint backwardNode) {
+        Waypoint node = forwardNode;
+        for (Waypoint step = backwardNode; step.previous != null; step = step.previous) {
+            Waypoint next = new Waypoint(step.previous.loc, node);
+            next.road = step.road;  // the backward search reached step over this road, in the direction of travel
+            next.depth = node.depth + 1;
+            // the cost of the road between the two locations is the difference of their backward costs
+            next.partialPathCost = node.partialPathCost + (step.partialPathCost - step.previous.partialPathCost);
+            node = next;
+        }
+        return node;
+    }
+
+    // this function is called once before each search, with the locations of the start point and the end point
+    void prepare(Location start, Location end) {
+    }
+
+    // this function returns the potential of the given location, which is added to the partialPathCost of its
+    // nodes to order the frontier of the forward search (if isForward is true) or the backward search
+    // the forward potential must be the negative of the backward potential at every location, so that both
+    // searches see the same reduced road costs and the stopping rule stays correct
+    // uniform cost search uses no potential at all
+    double potential(Location loc, boolean isForward) {
+        return 0.0;
+    }
+}
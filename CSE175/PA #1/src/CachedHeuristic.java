@@ -0,0 +1,79 @@
+//
+// CachedHeuristic
+//
+// This class extends the Heuristic class with a heuristic function that
+// looks its values up in a HeuristicCache, rather than computing them for
+// every search tree node.  Setting the destination fetches the array of
+// values for that destination from the cache, filling it in if need be, so
+// that each heuristic value thereafter is a single array access.  The
+// values are those of a GoodHeuristic over the version of the compact map
+// being searched, which is recorded along with them; a node of any other
+// version fetches the values for that version first.  (Searches of a Map
+// use the cache's current compact map.)  The cache may be shared between
+// threads, but each thread should have its own CachedHeuristic object,
+// since the destination is kept here.
+//
+
+
+public class CachedHeuristic extends Heuristic {
+    HeuristicCache cache;
+    CompactMap graph;   // the version of the compact map that the values are for
+    int target;
+    double[] values;
+
+    // Constructor with cache specified ...
+    public CachedHeuristic(HeuristicCache cache) {
+	this.cache = cache;
+	this.graph = null;
+	this.target = -1;
+	this.values = null;
+    }
+
+    // setDestination -- Set the destination location to be used by this
+    // heuristic function to the given location, which must be on the map,
+    // and fetch the heuristic values for it from the cache's current
+    // compact map.
+    public void setDestination(Location destination) {
+	super.setDestination(destination);
+	graph = cache.graph();
+	target = (destination == null) ? -1 : nodeOf(destination);
+	values = (target < 0) ? null : cache.values(graph, target);
+    }
+
+    // setDestination -- Set the destination to the given node of the given
+    // version of the compact map, and fetch the heuristic values for that
+    // version.
+    public void setDestination(CompactMap graph, int node) {
+	super.setDestination(graph.location(node));
+	this.graph = graph;
+	target = node;
+	values = (node < 0) ? null : cache.values(graph, node);
+    }
+
+    // nodeOf -- Return the node id of the given location, which is its
+    // location id if it has one.
+    int nodeOf(Location loc) {
+	if (loc.id >= 0 && loc.id < graph.nodeCount())
+	    return (loc.id);
+	return (graph.nodeOf(loc.name));
+    }
+
+    // heuristicFunction -- Return the cached heuristic value of the
+    // location of the given search tree node.
+    public double heuristicFunction(Waypoint wp) {
+	int node = nodeOf(wp.loc);
+	return ((values == null || node < 0) ? 0.0 : values[node]);
+    }
+
+    // heuristicFunction -- Return the cached heuristic value of the given
+    // node, first fetching the values for the given version of the compact
+    // map if they are for another one.
+    public double heuristicFunction(CompactMap graph, int node) {
+	if (graph != this.graph && target >= 0) {
+	    this.graph = graph;
+	    values = cache.values(graph, target);
+	}
+	return ((values == null) ? 0.0 : values[node]);
+    }
+
+}
@@ -0,0 +1,502 @@
+//
+// CompactMap
+//
+// This class implements a frozen, read-only view of a Map, laid out in the
+// "compressed sparse row" style.  Every location is identified by a small
+// integer node id (its position in the Map's collection of locations), and
+// every road segment is identified by an integer road id.  The roads leading
+// out of node "n" occupy road ids "offsets[n]" up to (but not including)
+// "offsets[n+1]", with the destination node and the incremental path cost
+// of road "e" stored in "targets[e]" and "costs[e]".  Location coordinates
+// are kept in parallel float arrays.  Searching this structure touches only
+// a handful of primitive arrays, rather than chasing Location and Road
+// objects around the heap.  The arrays are held in java.nio buffers, so
+// that they may either wrap ordinary Java arrays or refer directly to the
+// pages of a memory-mapped MapFile.
+//
+// A CompactMap built from a Map retains references to the original Location
+// and Road objects, so that a solution found on the compact map can be
+// reported in exactly the same way as one found on the Map itself.  A
+// CompactMap read from a MapFile instead holds tables of location and road
+// names, and it creates Location and Road objects only when they are
+// requested.  The roads list of such a Location is a view of its range of
+// road ids, which creates each Road object, and the Location at its far
+// end, the first time that it is read, so that a search may follow roads
+// from any Location that it reaches without the whole map being built.
+// The speed of the fastest road, which heuristic functions use to turn
+// distances into costs, is found the first time that it is requested and
+// kept.  Note that later changes to a Map are not reflected in a CompactMap
+// that has already been built from it.
+//
+// A CompactMap is never changed once built.  Instead, changing the costs of
+// some roads produces a new "version" of the compact map, which shares all
+// of the arrays of the old one except for the costs.  The costs are divided
+// into pages of a few thousand roads, and only the pages holding changed
+// costs are copied, so a small batch of changes costs little even on a
+// very large map.  Searches already running on the old version are not
+// disturbed.  The speed of the fastest road is carried over to the new
+// version, raised if a road has become faster, and only found again from
+// scratch if the fastest road has become slower.  Each version records
+// whether any cost has fallen since an earlier version, so that bounds
+// computed in advance from an earlier version (such as landmark distances)
+// can tell whether they are still lower bounds.
+//
+
+
+import java.nio.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+
+public class CompactMap {
+    int nodeCount;
+    int roadCount;
+    IntBuffer offsets;
+    IntBuffer targets;
+    DoubleBuffer costs;
+    FloatBuffer longitudes;
+    FloatBuffer latitudes;
+    Location[] locations;
+    Road[] roads;
+    HashMap<String, Integer> nodeIndex;
+    // Name tables, present only when read from a MapFile ...
+    IntBuffer locationNameOffsets;
+    ByteBuffer locationNames;
+    IntBuffer sortedNodes;
+    IntBuffer roadNameIds;
+    IntBuffer roadNameOffsets;
+    ByteBuffer roadNames;
+    volatile double maxSpeed = -1.0;
+    volatile long fingerprint;
+    volatile boolean fingerprinted;
+    // Changed costs, by page, in versions made by "withCosts" ...  A null
+    // page, or a null table of pages, means that the costs are unchanged.
+    static final int PAGE_SHIFT = 12;
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    double[][] costPages;
+    CompactMap original;
+    long version;
+    long lastDecrease;
+
+    // Default constructor, for use by MapFile ...
+    CompactMap() {
+    }
+
+    // Constructor with source Map specified ...
+    public CompactMap(Map graph) {
+	this.nodeCount = graph.locations.size();
+	this.locations = graph.locations.toArray(new Location[nodeCount]);
+	float[] lon = new float[nodeCount];
+	float[] lat = new float[nodeCount];
+	int[] off = new int[nodeCount + 1];
+	this.nodeIndex = new HashMap<String, Integer>(nodeCount * 2);
+	for (int n = 0; n < nodeCount; n++) {
+	    Location loc = locations[n];
+	    lon[n] = (float) loc.longitude;
+	    lat[n] = (float) loc.latitude;
+	    nodeIndex.putIfAbsent(loc.name, n);
+	    off[n + 1] = off[n] + loc.roads.size();
+	}
+	this.roadCount = off[nodeCount];
+	int[] tgt = new int[roadCount];
+	double[] cst = new double[roadCount];
+	this.roads = new Road[roadCount];
+	int e = 0;
+	for (int n = 0; n < nodeCount; n++) {
+	    for (Road r : locations[n].roads) {
+		tgt[e] = r.toLocation.id;
+		cst[e] = r.cost;
+		roads[e] = r;
+		e++;
+	    }
+	}
+	this.offsets = IntBuffer.wrap(off);
+	this.targets = IntBuffer.wrap(tgt);
+	this.costs = DoubleBuffer.wrap(cst);
+	this.longitudes = FloatBuffer.wrap(lon);
+	this.latitudes = FloatBuffer.wrap(lat);
+    }
+
+    // nodeCount -- Return the number of locations (nodes) on this map.
+    public int nodeCount() {
+	return (nodeCount);
+    }
+
+    // roadCount -- Return the number of road segments on this map.
+    public int roadCount() {
+	return (roadCount);
+    }
+
+    // isMapped -- Return true if and only if this compact map was read from
+    // a MapFile, rather than being built from a Map.
+    public boolean isMapped() {
+	return (nodeIndex == null);
+    }
+
+    // nodeOf -- Return the node id of the location with the given textual
+    // name, or -1 if no such location is on this map.  If several locations
+    // share the name, the first of them is returned.  For a compact map read
+    // from a MapFile, this is a binary search of the sorted name table.
+    public int nodeOf(String name) {
+	if (name == null)
+	    return (-1);
+	if (nodeIndex != null) {
+	    Integer n = nodeIndex.get(name);
+	    return ((n == null) ? -1 : n.intValue());
+	}
+	// Locations with the same name are sorted in id order, so keep going
+	// left to find the first of them ...
+	byte[] key = name.getBytes(StandardCharsets.UTF_8);
+	int found = -1;
+	int low = 0;
+	int high = nodeCount - 1;
+	while (low <= high) {
+	    int mid = (low + high) >>> 1;
+	    int n = sortedNodes.get(mid);
+	    int c = compareName(n, key);
+	    if (c < 0) {
+		low = mid + 1;
+	    } else {
+		if (c == 0)
+		    found = n;
+		high = mid - 1;
+	    }
+	}
+	return (found);
+    }
+
+    // compareName -- Compare the UTF-8 bytes of the name of the given node
+    // to the given key, as unsigned bytes.
+    int compareName(int node, byte[] key) {
+	int start = locationNameOffsets.get(node);
+	int length = locationNameOffsets.get(node + 1) - start;
+	int common = Math.min(length, key.length);
+	for (int i = 0; i < common; i++) {
+	    int c = (locationNames.get(start + i) & 0xFF) - (key[i] & 0xFF);
+	    if (c != 0)
+		return (c);
+	}
+	return (length - key.length);
+    }
+
+    // firstRoad -- Return the id of the first road leading out of the given
+    // node.
+    public int firstRoad(int node) {
+	return (offsets.get(node));
+    }
+
+    // endRoad -- Return one more than the id of the last road leading out of
+    // the given node.  If this equals "firstRoad", the node has no roads.
+    public int endRoad(int node) {
+	return (offsets.get(node + 1));
+    }
+
+    // target -- Return the node at which the given road ends.
+    public int target(int road) {
+	return (targets.get(road));
+    }
+
+    // cost -- Return the incremental path cost of the given road.
+    public double cost(int road) {
+	if (costPages != null) {
+	    double[] page = costPages[road >>> PAGE_SHIFT];
+	    if (page != null)
+		return (page[road & (PAGE_SIZE - 1)]);
+	}
+	return (costs.get(road));
+    }
+
+    // longitude -- Return the first coordinate of the given node.
+    public float longitude(int node) {
+	return (longitudes.get(node));
+    }
+
+    // latitude -- Return the second coordinate of the given node.
+    public float latitude(int node) {
+	return (latitudes.get(node));
+    }
+
+    // maxRoadSpeed -- Return the greatest ratio of straight-line distance,
+    // between the coordinates of its two ends, to cost over all of the roads
+    // on this map.  It is found the first time that it is requested.
+    public double maxRoadSpeed() {
+	double best = maxSpeed;
+	if (best < 0.0) {
+	    best = 0.0;
+	    for (int node = 0; node < nodeCount; node++) {
+		for (int e = firstRoad(node); e < endRoad(node); e++) {
+		    double speed = speed(node, e, cost(e));
+		    if (speed > best)
+			best = speed;
+		}
+	    }
+	    maxSpeed = best;
+	}
+	return (best);
+    }
+
+    // speed -- Return the ratio of the straight-line distance between the
+    // ends of the given road, leading out of the given node, to the given
+    // cost.
+    double speed(int node, int road, double cost) {
+	int to = target(road);
+	double lon = longitude(node) - longitude(to);
+	double lat = latitude(node) - latitude(to);
+	return (Math.sqrt(lon * lon + lat * lat) / cost);
+    }
+
+    // withCosts -- Return a new version of this compact map, in which each
+    // of the given roads has the corresponding one of the given costs.  If
+    // a road is given more than once, its last cost is used.  This compact
+    // map is not changed.
+    public CompactMap withCosts(int[] roadIds, double[] newCosts) {
+	CompactMap next = new CompactMap();
+	next.nodeCount = nodeCount;
+	next.roadCount = roadCount;
+	next.offsets = offsets;
+	next.targets = targets;
+	next.costs = costs;
+	next.longitudes = longitudes;
+	next.latitudes = latitudes;
+	next.nodeIndex = nodeIndex;
+	next.locationNameOffsets = locationNameOffsets;
+	next.locationNames = locationNames;
+	next.sortedNodes = sortedNodes;
+	next.roadNameIds = roadNameIds;
+	next.roadNameOffsets = roadNameOffsets;
+	next.roadNames = roadNames;
+	if (nodeIndex != null) {
+	    // The Location and Road objects belong to the Map, which keeps
+	    // their costs up to date ...
+	    next.locations = locations;
+	    next.roads = roads;
+	}
+	next.original = (original == null) ? this : original;
+	next.version = version + 1;
+	next.lastDecrease = lastDecrease;
+	next.costPages = (costPages == null) ? new double[(roadCount + PAGE_SIZE - 1) >>> PAGE_SHIFT][]
+	    : costPages.clone();
+	double best = maxSpeed;
+	boolean slower = false;
+	for (int i = 0; i < roadIds.length; i++) {
+	    int e = roadIds[i];
+	    double before = next.cost(e);
+	    double after = newCosts[i];
+	    if (after == before)
+		continue;
+	    int p = e >>> PAGE_SHIFT;
+	    double[] page = next.costPages[p];
+	    if (page == null || (costPages != null && page == costPages[p])) {
+		// Copy the page before changing it ...
+		page = new double[PAGE_SIZE];
+		int base = p << PAGE_SHIFT;
+		for (int k = 0; k < PAGE_SIZE && base + k < roadCount; k++)
+		    page[k] = cost(base + k);
+		next.costPages[p] = page;
+	    }
+	    page[e & (PAGE_SIZE - 1)] = after;
+	    if (after < before)
+		next.lastDecrease = next.version;
+	    if (best >= 0.0) {
+		int node = findSource(e);
+		double speed = speed(node, e, after);
+		if (speed > best)
+		    best = speed;
+		else if (speed(node, e, before) >= best && speed < best)
+		    slower = true;
+	    }
+	}
+	next.maxSpeed = slower ? -1.0 : best;
+	return (next);
+    }
+
+    // changedRoads -- Return the ids of the roads whose costs differ between
+    // this compact map and the given earlier version of it, in increasing
+    // order.  Only the pages of costs that have been copied since the given
+    // version are compared.
+    public int[] changedRoads(CompactMap earlier) {
+	int[] changed = new int[16];
+	int count = 0;
+	int pages = (roadCount + PAGE_SIZE - 1) >>> PAGE_SHIFT;
+	for (int p = 0; p < pages; p++) {
+	    double[] mine = (costPages == null) ? null : costPages[p];
+	    double[] theirs = (earlier.costPages == null) ? null : earlier.costPages[p];
+	    if (mine == theirs)
+		continue;
+	    int base = p << PAGE_SHIFT;
+	    for (int e = base; e < Math.min(roadCount, base + PAGE_SIZE); e++) {
+		if (cost(e) != earlier.cost(e)) {
+		    if (count == changed.length)
+			changed = Arrays.copyOf(changed, 2 * count);
+		    changed[count++] = e;
+		}
+	    }
+	}
+	return (Arrays.copyOf(changed, count));
+    }
+
+    // version -- Return the number of times that costs have been changed
+    // to produce this version of the compact map.
+    public long version() {
+	return (version);
+    }
+
+    // isVersionOf -- Return true if and only if this compact map is the
+    // given compact map, or a later version of it.
+    public boolean isVersionOf(CompactMap earlier) {
+	CompactMap root = (original == null) ? this : original;
+	CompactMap other = (earlier.original == null) ? earlier : earlier.original;
+	return (root == other && version >= earlier.version);
+    }
+
+    // costsAtLeast -- Return true if and only if this compact map is the
+    // given compact map, or a later version of it in which no road costs
+    // less than it did in the given one.
+    public boolean costsAtLeast(CompactMap earlier) {
+	return (isVersionOf(earlier) && lastDecrease <= earlier.version);
+    }
+
+    // costFingerprint -- Return a 64-bit hash of the roads of this map and
+    // their costs, which tables computed in advance from a map (such as
+    // landmark distances) record, so that a table computed for a different
+    // map of the same size, or for other costs, can be recognized.  It is
+    // found the first time that it is requested.
+    public long costFingerprint() {
+	if (!fingerprinted) {
+	    long h = 0xcbf29ce484222325L;
+	    h = mix(h, nodeCount);
+	    h = mix(h, roadCount);
+	    for (int node = 0; node <= nodeCount; node++)
+		h = mix(h, offsets.get(node));
+	    for (int e = 0; e < roadCount; e++) {
+		h = mix(h, targets.get(e));
+		h = mix(h, Double.doubleToLongBits(cost(e)));
+	    }
+	    fingerprint = h;
+	    fingerprinted = true;
+	}
+	return (fingerprint);
+    }
+
+    // mix -- Return the given hash with the given value mixed into it.
+    static long mix(long h, long value) {
+	h = (h ^ value) * 0x100000001b3L;
+	return (h ^ (h >>> 29));
+    }
+
+    // locationName -- Return the textual name of the given node.
+    public String locationName(int node) {
+	if (nodeIndex != null)
+	    return (locations[node].name);
+	return (decode(locationNames, locationNameOffsets, node));
+    }
+
+    // roadName -- Return the textual name of the given road.
+    public String roadName(int road) {
+	if (nodeIndex != null)
+	    return (roads[road].name);
+	return (decode(roadNames, roadNameOffsets, roadNameIds.get(road)));
+    }
+
+    // decode -- Return entry "i" of a table of UTF-8 strings.
+    static String decode(ByteBuffer bytes, IntBuffer table, int i) {
+	int start = table.get(i);
+	byte[] buffer = new byte[table.get(i + 1) - start];
+	for (int k = 0; k < buffer.length; k++)
+	    buffer[k] = bytes.get(start + k);
+	return (new String(buffer, StandardCharsets.UTF_8));
+    }
+
+    // location -- Return the Location object corresponding to the given
+    // node.  For a compact map read from a MapFile, the Location is created
+    // the first time that it is requested, and its Road objects the first
+    // time that they are read from its roads list.
+    public Location location(int node) {
+	if (nodeIndex != null)
+	    return (locations[node]);
+	synchronized (this) {
+	    return (stub(node));
+	}
+    }
+
+    // road -- Return the Road object corresponding to the given road id.
+    public Road road(int road) {
+	if (nodeIndex != null)
+	    return (roads[road]);
+	synchronized (this) {
+	    return (stubRoad(findSource(road), road));
+	}
+    }
+
+    // findSource -- Return the node from which the given road leads, by
+    // binary search of the road offsets.
+    int findSource(int road) {
+	int low = 0;
+	int high = nodeCount - 1;
+	while (low < high) {
+	    int mid = (low + high + 1) >>> 1;
+	    if (offsets.get(mid) <= road)
+		low = mid;
+	    else
+		high = mid - 1;
+	}
+	return (low);
+    }
+
+    // stub -- Return the Location object for the given node, creating it,
+    // with a RoadList of the roads leading out of it, if it does not exist
+    // yet.
+    Location stub(int node) {
+	if (locations == null) {
+	    locations = new Location[nodeCount];
+	    roads = new Road[roadCount];
+	}
+	if (locations[node] == null) {
+	    Location loc = new Location(locationName(node), longitude(node), latitude(node));
+	    loc.id = node;
+	    loc.roads = new RoadList(node);
+	    locations[node] = loc;
+	}
+	return (locations[node]);
+    }
+
+    // stubRoad -- Return the Road object for the given road, leading out of
+    // the given node, creating it if it does not exist yet.
+    Road stubRoad(int from, int road) {
+	if (roads[road] == null) {
+	    Road r = new Road();
+	    r.name = roadName(road);
+	    r.fromLocation = stub(from);
+	    r.toLocation = stub(target(road));
+	    r.fromLocationName = r.fromLocation.name;
+	    r.toLocationName = r.toLocation.name;
+	    r.cost = cost(road);
+	    roads[road] = r;
+	}
+	return (roads[road]);
+    }
+
+    // RoadList -- The read-only list of roads leading out of a Location
+    // read from a MapFile.  Each Road object is created the first time that
+    // it is read.
+    class RoadList extends AbstractList<Road> {
+	final int node;
+
+	RoadList(int node) {
+	    this.node = node;
+	}
+
+	public int size() {
+	    return (endRoad(node) - firstRoad(node));
+	}
+
+	public Road get(int i) {
+	    if (i < 0 || i >= size())
+		throw new IndexOutOfBoundsException();
+	    synchronized (CompactMap.this) {
+		return (stubRoad(node, firstRoad(node) + i));
+	    }
+	}
+    }
+
+}
@@ -0,0 +1,260 @@
+//
+// Contraction
+//
+// This class performs the preprocessing for a ContractionHierarchy:  it
+// chooses the order in which the nodes of the map are contracted, records
+// the resulting rank of each node, and adds the necessary shortcuts to the
+// hierarchy.  While preprocessing, the edges leaving and entering each node
+// that has not yet been contracted are kept in growable lists, from which
+// edges to contracted nodes are removed as those nodes are contracted.
+//
+// Nodes wait to be contracted in a HeapFrontier, keyed by their "priority":
+// twice the number of shortcuts that contracting the node would add, less
+// the number of edges that it would remove, plus the number of its neighbors
+// that have already been contracted and its "level", which is one more than
+// the highest level of any contracted neighbor.  The last two terms spread
+// contraction evenly over the map.  Contracting a node changes the
+// priorities of its neighbors, so these are recomputed right away.  Other
+// priorities may change too, so they are also updated lazily:  the node at
+// the top of the queue has its priority recomputed, and it is put back into
+// the queue if it is no longer the lowest.
+//
+// A shortcut from "u" to "w" around node "v" is only needed if there is no
+// "witness" path from "u" to "w" that avoids "v" and costs no more than the
+// path through "v".  Witness paths are found by a uniform-cost search from
+// "u" over the nodes not yet contracted, which gives up after settling a
+// fixed number of nodes.  When shortcuts are only being counted, to compute a
+// priority, a smaller search is used; an estimate is good enough there.
+// Witness searches reuse their arrays, with a generation number marking the
+// nodes reached by the current search.
+//
+
+
+import java.util.*;
+
+
+class Contraction {
+    ContractionHierarchy ch;
+    int nodeCount;
+    int[][] outEdges;
+    int[] outCount;
+    int[][] inEdges;
+    int[] inCount;
+    boolean[] contracted;
+    int[] contractedNeighbors;
+    int[] level;
+    int[] neighbors;
+    int neighborCount;
+    // Witness search state ...
+    HeapFrontier heap;
+    double[] dist;
+    int[] reached;
+    int[] target;
+    int generation;
+
+    // Constructor with hierarchy specified ...  The hierarchy must hold
+    // every road of its map as an edge.
+    Contraction(ContractionHierarchy ch) {
+	this.ch = ch;
+	this.nodeCount = ch.nodeCount;
+	this.outEdges = new int[nodeCount][];
+	this.outCount = new int[nodeCount];
+	this.inEdges = new int[nodeCount][];
+	this.inCount = new int[nodeCount];
+	for (int e = 0; e < ch.edgeCount; e++) {
+	    if (ch.from[e] != ch.to[e]) {
+		outCount[ch.from[e]]++;
+		inCount[ch.to[e]]++;
+	    }
+	}
+	for (int n = 0; n < nodeCount; n++) {
+	    outEdges[n] = new int[Math.max(outCount[n], 2)];
+	    inEdges[n] = new int[Math.max(inCount[n], 2)];
+	    outCount[n] = 0;
+	    inCount[n] = 0;
+	}
+	for (int e = 0; e < ch.edgeCount; e++)
+	    if (ch.from[e] != ch.to[e])
+		link(e);
+	this.contracted = new boolean[nodeCount];
+	this.contractedNeighbors = new int[nodeCount];
+	this.level = new int[nodeCount];
+	this.neighbors = new int[16];
+	this.heap = new HeapFrontier(nodeCount);
+	this.dist = new double[nodeCount];
+	this.reached = new int[nodeCount];
+	this.target = new int[nodeCount];
+	this.generation = 0;
+    }
+
+    // run -- Contract every node, recording its rank in the hierarchy.
+    void run() {
+	HeapFrontier queue = new HeapFrontier(nodeCount);
+	for (int v = 0; v < nodeCount; v++)
+	    queue.add(v, priority(v));
+	int next = 0;
+	while (!queue.isEmpty()) {
+	    int v = queue.removeTop();
+	    double p = priority(v);
+	    if (!queue.isEmpty() && p > queue.topPriority()) {
+		// The priority has grown since it was computed ...
+		queue.add(v, p);
+		continue;
+	    }
+	    contract(v);
+	    ch.rank[v] = next++;
+	    // Bring the priorities of the neighbors up to date ...
+	    for (int i = 0; i < neighborCount; i++)
+		if (queue.contains(neighbors[i]))
+		    queue.update(neighbors[i], priority(neighbors[i]));
+	}
+    }
+
+    // priority -- Return the current contraction priority of the given node.
+    double priority(int v) {
+	return (2 * shortcuts(v, false) - outCount[v] - inCount[v] + contractedNeighbors[v] + level[v]);
+    }
+
+    // contract -- Add the shortcuts needed to contract the given node, and
+    // remove it from the remaining map.  The neighbors of the node are left
+    // in the "neighbors" array.
+    void contract(int v) {
+	shortcuts(v, true);
+	contracted[v] = true;
+	neighborCount = 0;
+	for (int i = 0; i < inCount[v]; i++) {
+	    int u = ch.from[inEdges[v][i]];
+	    unlinkOut(u, v);
+	    neighbor(u, v);
+	}
+	for (int i = 0; i < outCount[v]; i++) {
+	    int w = ch.to[outEdges[v][i]];
+	    unlinkIn(w, v);
+	    neighbor(w, v);
+	}
+    }
+
+    // neighbor -- Record that the given node has lost the given neighbor to
+    // contraction, unless this has already been recorded.
+    void neighbor(int u, int v) {
+	for (int i = 0; i < neighborCount; i++)
+	    if (neighbors[i] == u)
+		return;
+	if (neighborCount == neighbors.length)
+	    neighbors = Arrays.copyOf(neighbors, 2 * neighborCount);
+	neighbors[neighborCount++] = u;
+	contractedNeighbors[u]++;
+	level[u] = Math.max(level[u], level[v] + 1);
+    }
+
+    // shortcuts -- Return the number of shortcuts needed to contract the
+    // given node.  If "add" is true, also add them to the hierarchy.
+    int shortcuts(int v, boolean add) {
+	int count = 0;
+	for (int i = 0; i < inCount[v]; i++) {
+	    int e1 = inEdges[v][i];
+	    int u = ch.from[e1];
+	    // Find the costliest path through v that a witness must beat ...
+	    double limit = -1.0;
+	    for (int j = 0; j < outCount[v]; j++) {
+		int e2 = outEdges[v][j];
+		if (ch.to[e2] != u)
+		    limit = Math.max(limit, ch.cost[e1] + ch.cost[e2]);
+	    }
+	    if (limit < 0.0)
+		continue;
+	    witness(u, v, limit, add ? ContractionHierarchy.WITNESS_LIMIT : ContractionHierarchy.ESTIMATE_LIMIT);
+	    for (int j = 0; j < outCount[v]; j++) {
+		int e2 = outEdges[v][j];
+		int w = ch.to[e2];
+		double c = ch.cost[e1] + ch.cost[e2];
+		if (w == u || (reached[w] == generation && dist[w] <= c))
+		    continue;
+		count++;
+		if (add) {
+		    link(ch.addEdge(u, w, c, e1, e2));
+		    // The shortcut is itself a witness for any parallel path ...
+		    reached[w] = generation;
+		    dist[w] = c;
+		}
+	    }
+	}
+	return (count);
+    }
+
+    // witness -- Run a uniform-cost search from the given node over the
+    // nodes not yet contracted, avoiding the given node, until every path
+    // costing up to the given limit has been found, every node that the
+    // avoided node leads to has been settled, or the search has settled the
+    // given number of nodes.
+    void witness(int source, int avoid, double limit, int maxSettled) {
+	generation++;
+	heap.clear();
+	int targets = 0;
+	for (int j = 0; j < outCount[avoid]; j++) {
+	    int w = ch.to[outEdges[avoid][j]];
+	    if (target[w] != generation) {
+		target[w] = generation;
+		targets++;
+	    }
+	}
+	reached[source] = generation;
+	dist[source] = 0.0;
+	heap.add(source, 0.0);
+	int settled = 0;
+	while (!heap.isEmpty() && heap.topPriority() <= limit && settled < maxSettled && targets > 0) {
+	    int x = heap.removeTop();
+	    settled++;
+	    if (target[x] == generation)
+		targets--;
+	    for (int i = 0; i < outCount[x]; i++) {
+		int e = outEdges[x][i];
+		int y = ch.to[e];
+		if (y == avoid)
+		    continue;
+		double d = dist[x] + ch.cost[e];
+		if (reached[y] != generation) {
+		    reached[y] = generation;
+		    dist[y] = d;
+		    heap.add(y, d);
+		} else if (d < dist[y] && heap.contains(y)) {
+		    dist[y] = d;
+		    heap.decreaseKey(y, d);
+		}
+	    }
+	}
+    }
+
+    // link -- Add the given edge to the lists of its two end nodes.
+    void link(int e) {
+	int u = ch.from[e];
+	int w = ch.to[e];
+	if (outCount[u] == outEdges[u].length)
+	    outEdges[u] = Arrays.copyOf(outEdges[u], 2 * outCount[u]);
+	outEdges[u][outCount[u]++] = e;
+	if (inCount[w] == inEdges[w].length)
+	    inEdges[w] = Arrays.copyOf(inEdges[w], 2 * inCount[w]);
+	inEdges[w][inCount[w]++] = e;
+    }
+
+    // unlinkOut -- Remove the edges leading to node v from the list of edges
+    // leaving node u.
+    void unlinkOut(int u, int v) {
+	int k = 0;
+	for (int i = 0; i < outCount[u]; i++)
+	    if (ch.to[outEdges[u][i]] != v)
+		outEdges[u][k++] = outEdges[u][i];
+	outCount[u] = k;
+    }
+
+    // unlinkIn -- Remove the edges leading from node v from the list of
+    // edges entering node w.
+    void unlinkIn(int w, int v) {
+	int k = 0;
+	for (int i = 0; i < inCount[w]; i++)
+	    if (ch.from[inEdges[w][i]] != v)
+		inEdges[w][k++] = inEdges[w][i];
+	inCount[w] = k;
+    }
+
+}
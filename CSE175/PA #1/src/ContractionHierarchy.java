@@ -0,0 +1,482 @@
+//
+// ContractionHierarchy
+//
+// This class implements a "contraction hierarchy" over a CompactMap:  a
+// preprocessed form of a map that answers shortest-path queries far faster
+// than a search of the map itself.  During preprocessing, every node of the
+// map is "contracted" in turn, from least to most important.  Contracting a
+// node removes it from the remaining map, adding a "shortcut" road between
+// each pair of its remaining neighbors whose shortest connection ran through
+// it.  Each shortcut records the two roads (original or shortcut) that it
+// replaces.  The order in which nodes are contracted is chosen greedily, by
+// contracting next the node that adds the fewest shortcuts relative to the
+// roads that it removes, with a preference for nodes whose neighbors have
+// not yet been contracted.  Whether a shortcut is needed is settled by a
+// small "witness" search, limited in the number of nodes that it settles;
+// when the limit is reached, the shortcut is simply added.
+//
+// A node's "rank" is its position in the contraction order.  Every shortest
+// path in the map corresponds to a path through the original roads and the
+// shortcuts that first climbs to higher and higher ranks and then descends.
+// A query is thus a bidirectional uniform-cost search that only ever moves up
+// in rank:  the forward search from the start follows upward roads, and the
+// backward search from the destination follows upward roads in reverse.
+// These searches typically settle only a few hundred nodes, even on very
+// large maps, particularly as a search does not continue past a node that it
+// has already reached more cheaply from above.  The shortcuts on the path
+// found are then unpacked, through the roads that they replace, into a
+// sequence of roads from the original map, which may be reported as a chain
+// of Waypoint objects in the usual way.
+//
+// A contraction hierarchy may be written to a file and read back in, so that
+// preprocessing need only be done once for a given map.  The file records the
+// rank of every node and every road and shortcut, in the same little-endian
+// layout used by the MapFile class, along with a fingerprint of the road
+// costs, and a file whose fingerprint does not match the map is not used.
+// The "main" method preprocesses a binary map file in this way.  A hierarchy
+// built or read for a Map refuses queries once the costs of its roads have
+// been changed, as its shortcuts no longer give the right distances.
+// Queries may be made concurrently from any number of threads, as each
+// thread keeps its own search state.
+//
+
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+
+public class ContractionHierarchy {
+    static final int MAGIC = 0x48434d43;    // "CMCH"
+    static final int VERSION = 2;
+    static final int WITNESS_LIMIT = 500;   // Nodes settled per witness search
+    static final int ESTIMATE_LIMIT = 50;   // ... when only estimating priority
+
+    CompactMap graph;
+    Map source;     // The map whose compact view this was built for, if any
+    int nodeCount;
+    int[] rank;
+    // Every road and shortcut, indexed by edge id.  The first roadCount edges
+    // are the roads of the map, in road id order.  For a shortcut, "first"
+    // and "second" are the edges that it replaces ...
+    int edgeCount;
+    int[] from;
+    int[] to;
+    double[] cost;
+    int[] first;
+    int[] second;
+    // Upward edges leaving each node, and upward edges entering each node,
+    // in compressed sparse row form ...
+    int[] upOffsets;
+    int[] upEdges;
+    int[] downOffsets;
+    int[] downEdges;
+    ThreadLocal<SearchContext[]> contexts;
+
+    // Constructor with compact map specified ...  The hierarchy is empty
+    // until it is either built or read from a file.
+    ContractionHierarchy(CompactMap graph) {
+	this.graph = graph;
+	this.nodeCount = graph.nodeCount();
+	this.rank = new int[nodeCount];
+	this.edgeCount = 0;
+	int capacity = Math.max(16, 2 * graph.roadCount());
+	this.from = new int[capacity];
+	this.to = new int[capacity];
+	this.cost = new double[capacity];
+	this.first = new int[capacity];
+	this.second = new int[capacity];
+	this.contexts = new ThreadLocal<SearchContext[]>();
+    }
+
+    // build -- Preprocess the given compact map, and return the resulting
+    // contraction hierarchy.
+    public static ContractionHierarchy build(CompactMap graph) {
+	ContractionHierarchy ch = new ContractionHierarchy(graph);
+	ch.addRoads();
+	new Contraction(ch).run();
+	ch.index();
+	return (ch);
+    }
+
+    // build -- Preprocess the current compact view of the given map, and
+    // return the resulting contraction hierarchy.  Queries of the hierarchy
+    // fail once the costs of the map's roads have changed.
+    public static ContractionHierarchy build(Map graph) {
+	ContractionHierarchy ch = build(graph.compact());
+	ch.source = graph;
+	return (ch);
+    }
+
+    // addRoads -- Record every road of the map as an edge, so that each
+    // road id is also the edge id of the road.
+    void addRoads() {
+	for (int n = 0; n < nodeCount; n++)
+	    for (int e = graph.firstRoad(n); e < graph.endRoad(n); e++)
+		addEdge(n, graph.target(e), graph.cost(e), -1, -1);
+    }
+
+    // addEdge -- Record a new edge with the given ends and cost, replacing
+    // the given pair of edges, and return its edge id.
+    int addEdge(int u, int w, double c, int e1, int e2) {
+	if (edgeCount == from.length) {
+	    int length = 2 * edgeCount;
+	    from = Arrays.copyOf(from, length);
+	    to = Arrays.copyOf(to, length);
+	    cost = Arrays.copyOf(cost, length);
+	    first = Arrays.copyOf(first, length);
+	    second = Arrays.copyOf(second, length);
+	}
+	from[edgeCount] = u;
+	to[edgeCount] = w;
+	cost[edgeCount] = c;
+	first[edgeCount] = e1;
+	second[edgeCount] = e2;
+	return (edgeCount++);
+    }
+
+    // isCurrent -- Return true if this hierarchy was built from the given
+    // version of its compact map.  Once the costs of roads have changed,
+    // the shortcuts no longer give the right distances, and the hierarchy
+    // must be built again.
+    public boolean isCurrent(CompactMap current) {
+	return (current.isVersionOf(graph) && current.version() == graph.version());
+    }
+
+    // checkCurrent -- Throw an IllegalStateException if this hierarchy was
+    // built for a Map whose road costs have changed since.  (A hierarchy
+    // built for a compact map alone is always current, as a compact map
+    // never changes.)
+    void checkCurrent() {
+	if (source != null && !isCurrent(source.compact()))
+	    throw new IllegalStateException("Road costs have changed since the hierarchy was built.");
+    }
+
+    // isShortcut -- Return true if and only if the given edge is a shortcut,
+    // rather than a road of the map.
+    public boolean isShortcut(int edge) {
+	return (first[edge] >= 0);
+    }
+
+    // shortcutCount -- Return the number of shortcuts in the hierarchy.
+    public int shortcutCount() {
+	return (edgeCount - graph.roadCount());
+    }
+
+    // index -- Sort the edges into the upward edges leaving each node and
+    // the upward edges entering each node, according to node rank.
+    void index() {
+	upOffsets = new int[nodeCount + 1];
+	downOffsets = new int[nodeCount + 1];
+	for (int e = 0; e < edgeCount; e++) {
+	    if (from[e] == to[e])
+		continue;
+	    if (rank[to[e]] > rank[from[e]])
+		upOffsets[from[e] + 1]++;
+	    else
+		downOffsets[to[e] + 1]++;
+	}
+	for (int n = 0; n < nodeCount; n++) {
+	    upOffsets[n + 1] += upOffsets[n];
+	    downOffsets[n + 1] += downOffsets[n];
+	}
+	upEdges = new int[upOffsets[nodeCount]];
+	downEdges = new int[downOffsets[nodeCount]];
+	int[] upNext = Arrays.copyOf(upOffsets, nodeCount);
+	int[] downNext = Arrays.copyOf(downOffsets, nodeCount);
+	for (int e = 0; e < edgeCount; e++) {
+	    if (from[e] == to[e])
+		continue;
+	    if (rank[to[e]] > rank[from[e]])
+		upEdges[upNext[from[e]]++] = e;
+	    else
+		downEdges[downNext[to[e]]++] = e;
+	}
+    }
+
+    // distance -- Return the cost of the shortest path from the given source
+    // node to the given target node, or infinity if there is no such path.
+    public double distance(int source, int target) {
+	int meet = query(source, target);
+	if (meet < 0)
+	    return (Double.POSITIVE_INFINITY);
+	SearchContext[] ctx = contexts.get();
+	return (ctx[0].pathCost(meet) + ctx[1].pathCost(meet));
+    }
+
+    // route -- Return the road ids of the map along the shortest path from
+    // the given source node to the given target node, in order, or null if
+    // there is no such path.
+    public int[] route(int source, int target) {
+	int meet = query(source, target);
+	if (meet < 0)
+	    return (null);
+	SearchContext[] ctx = contexts.get();
+	// Collect the edges of the path, from source to target ...
+	int[] edges = new int[ctx[0].depth[meet] + ctx[1].depth[meet]];
+	int k = ctx[0].path(meet, edges);
+	for (int n = meet; k < edges.length; n = ctx[1].parent[n])
+	    edges[k++] = ctx[1].road[n];
+	// Unpack the shortcuts ...
+	int[] roads = new int[Math.max(16, edges.length)];
+	int count = 0;
+	int[] stack = new int[16];
+	for (int e : edges) {
+	    int top = 0;
+	    stack[top++] = e;
+	    while (top > 0) {
+		int x = stack[--top];
+		if (first[x] < 0) {
+		    if (count == roads.length)
+			roads = Arrays.copyOf(roads, 2 * count);
+		    roads[count++] = x;
+		} else {
+		    if (top + 2 > stack.length)
+			stack = Arrays.copyOf(stack, 2 * stack.length);
+		    stack[top++] = second[x];
+		    stack[top++] = first[x];
+		}
+	    }
+	}
+	return (Arrays.copyOf(roads, count));
+    }
+
+    // search -- Return the Waypoint at the end of the shortest path from the
+    // location with the first given name to the location with the second,
+    // with the whole path linked through the "previous" references, as
+    // would be returned by a search of the map.  Return null if either
+    // location is not on the map or there is no path between them.
+    public Waypoint search(String initialLoc, String destinationLoc) {
+	int source = graph.nodeOf(initialLoc);
+	int target = graph.nodeOf(destinationLoc);
+	if (source < 0 || target < 0)
+	    return (null);
+	int[] roads = route(source, target);
+	if (roads == null)
+	    return (null);
+	Waypoint wp = new Waypoint(graph.location(source), null);
+	for (int e : roads) {
+	    Waypoint next = new Waypoint(graph.location(graph.target(e)), wp);
+	    next.road = graph.road(e);
+	    next.depth = wp.depth + 1;
+	    next.partialPathCost = wp.partialPathCost + graph.cost(e);
+	    wp = next;
+	}
+	return (wp);
+    }
+
+    // write -- Write the node ranks and the shortcuts of this hierarchy to
+    // the given file.  Return false on error.
+    public boolean write(String filename) {
+	try (RandomAccessFile file = new RandomAccessFile(filename, "rw")) {
+	    file.setLength(0);
+	    MapFile out = new MapFile(file.getChannel());
+	    out.putInt(MAGIC);
+	    out.putInt(VERSION);
+	    out.putInt(nodeCount);
+	    out.putInt(graph.roadCount());
+	    out.putInt(shortcutCount());
+	    out.putInt(0);
+	    out.putLong(graph.costFingerprint());
+	    for (int n = 0; n < nodeCount; n++)
+		out.putInt(rank[n]);
+	    out.align();
+	    for (int e = graph.roadCount(); e < edgeCount; e++)
+		out.putDouble(cost[e]);
+	    for (int e = graph.roadCount(); e < edgeCount; e++) {
+		out.putInt(from[e]);
+		out.putInt(to[e]);
+		out.putInt(first[e]);
+		out.putInt(second[e]);
+	    }
+	    out.flush();
+	    return (true);
+	} catch (IOException e) {
+	    // Something went wrong ...
+	    return (false);
+	}
+    }
+
+    // read -- Read a hierarchy for the given compact map from the given
+    // file, written by the "write" method.  Return null on error, including
+    // when the file was written for a different map, or for other road
+    // costs, since its shortcuts would then give the wrong distances.
+    public static ContractionHierarchy read(CompactMap graph, String filename) {
+	try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
+	    FileChannel ch = file.getChannel();
+	    ByteBuffer in = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()).order(ByteOrder.LITTLE_ENDIAN);
+	    if (in.getInt() != MAGIC || in.getInt() != VERSION)
+		return (null);
+	    if (in.getInt() != graph.nodeCount() || in.getInt() != graph.roadCount())
+		return (null);
+	    int shortcuts = in.getInt();
+	    in.getInt();  // Padding ...
+	    if (in.getLong() != graph.costFingerprint())
+		return (null);
+	    ContractionHierarchy hierarchy = new ContractionHierarchy(graph);
+	    for (int n = 0; n < graph.nodeCount(); n++)
+		hierarchy.rank[n] = in.getInt();
+	    in.position((in.position() + 7) & ~7);
+	    hierarchy.addRoads();
+	    DoubleBuffer costs = in.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+	    in.position(in.position() + 8 * shortcuts);
+	    for (int i = 0; i < shortcuts; i++)
+		hierarchy.addEdge(in.getInt(), in.getInt(), costs.get(i), in.getInt(), in.getInt());
+	    hierarchy.index();
+	    return (hierarchy);
+	} catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+	    // Something went wrong ...
+	    return (null);
+	}
+    }
+
+    // read -- As above, for the current compact view of the given map.
+    // Queries of the hierarchy fail once the costs of the map's roads have
+    // changed.
+    public static ContractionHierarchy read(Map graph, String filename) {
+	ContractionHierarchy ch = read(graph.compact(), filename);
+	if (ch != null)
+	    ch.source = graph;
+	return (ch);
+    }
+
+    // query -- Run the forward and backward upward searches between the
+    // given nodes, leaving their results in the calling thread's search
+    // contexts, the first for the forward search and the second for the
+    // backward search.  Return the node at which the shortest path passes
+    // from the forward search to the backward search, or -1 if there is no
+    // path.  Each search stops once its next node costs at least as much as
+    // the best path found, since the meeting node of the shortest path is
+    // the highest ranked node on it, and both searches reach it by then.
+    // Throw an IllegalStateException if the hierarchy is out of date.
+    int query(int source, int target) {
+	checkCurrent();
+	SearchContext[] ctx = local();
+	SearchContext fwd = ctx[0];
+	SearchContext bwd = ctx[1];
+	fwd.reset();
+	bwd.reset();
+	fwd.reachRoot(source, 0.0);
+	bwd.reachRoot(target, 0.0);
+	fwd.heap.add(source, 0.0);
+	bwd.heap.add(target, 0.0);
+	int meet = -1;
+	double best = Double.POSITIVE_INFINITY;
+	while (true) {
+	    boolean forward = !fwd.heap.isEmpty() && fwd.heap.topPriority() < best;
+	    boolean backward = !bwd.heap.isEmpty() && bwd.heap.topPriority() < best;
+	    if (!(forward || backward))
+		break;
+	    if (forward && backward)
+		forward = (fwd.heap.topPriority() <= bwd.heap.topPriority());
+	    SearchContext self = forward ? fwd : bwd;
+	    SearchContext other = forward ? bwd : fwd;
+	    int u = self.heap.removeTop();
+	    self.markExplored(u);
+	    if (other.isReached(u) && self.pathCost(u) + other.pathCost(u) < best) {
+		best = self.pathCost(u) + other.pathCost(u);
+		meet = u;
+	    }
+	    if (!stalled(self, forward, u))
+		relax(self, forward, u);
+	}
+	return (meet);
+    }
+
+    // searchSpace -- Run a single upward search from the given node until
+    // the frontier is empty, forward along upward edges or backward along
+    // them, using the given context.  Return the nodes settled, other than
+    // those stalled, in the order settled; their path costs are left in the
+    // context.  These are the nodes at which the search could meet a search
+    // in the other direction.  Throw an IllegalStateException if the
+    // hierarchy is out of date.
+    int[] searchSpace(int start, boolean forward, SearchContext self) {
+	checkCurrent();
+	self.reset();
+	self.reachRoot(start, 0.0);
+	self.heap.add(start, 0.0);
+	int[] nodes = new int[16];
+	int count = 0;
+	while (!self.heap.isEmpty()) {
+	    int u = self.heap.removeTop();
+	    self.markExplored(u);
+	    if (stalled(self, forward, u))
+		continue;
+	    if (count == nodes.length)
+		nodes = Arrays.copyOf(nodes, 2 * count);
+	    nodes[count++] = u;
+	    relax(self, forward, u);
+	}
+	return (Arrays.copyOf(nodes, count));
+    }
+
+    // local -- Return the calling thread's pair of search contexts, for
+    // forward and backward searches.
+    SearchContext[] local() {
+	SearchContext[] ctx = contexts.get();
+	if (ctx == null) {
+	    ctx = new SearchContext[] { new SearchContext(nodeCount), new SearchContext(nodeCount) };
+	    contexts.set(ctx);
+	}
+	return (ctx);
+    }
+
+    // relax -- Follow the upward edges of the given node, just settled by
+    // the search with the given context, forward or backward.
+    void relax(SearchContext self, boolean forward, int u) {
+	int[] offsets = forward ? upOffsets : downOffsets;
+	int[] edges = forward ? upEdges : downEdges;
+	int[] ends = forward ? to : from;
+	for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+	    int e = edges[i];
+	    int v = ends[e];
+	    double g = self.pathCost(u) + cost[e];
+	    if (!self.isReached(v)) {
+		self.reachChild(u, e, v, cost[e], 0.0);
+		self.heap.add(v, g);
+	    } else if (!self.isExplored(v) && g < self.pathCost(v)) {
+		self.reachChild(u, e, v, cost[e], 0.0);
+		self.heap.decreaseKey(v, g);
+	    }
+	}
+    }
+
+    // stalled -- Return true if and only if the given node, just settled by
+    // the search with the given context, can be reached more cheaply from a
+    // higher ranked node that the search has already reached.  The node is
+    // then not on any shortest path found by the search, so there is no
+    // need to follow its edges ("stall-on-demand").
+    boolean stalled(SearchContext self, boolean forward, int u) {
+	int[] offsets = forward ? downOffsets : upOffsets;
+	int[] edges = forward ? downEdges : upEdges;
+	int[] ends = forward ? from : to;
+	for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+	    int e = edges[i];
+	    int x = ends[e];
+	    if (self.isReached(x) && self.pathCost(x) + cost[e] < self.pathCost(u))
+		return (true);
+	}
+	return (false);
+    }
+
+    // main -- Preprocess the binary map file named on the command line, and
+    // write the resulting hierarchy to the file also named there.
+    public static void main(String[] args) {
+	if (args.length != 2) {
+	    System.err.println("Usage:  java ContractionHierarchy <map file> <hierarchy file>");
+	    return;
+	}
+	CompactMap graph = MapFile.read(args[0]);
+	if (graph == null) {
+	    System.err.println("Error:  Unable to read map.");
+	    return;
+	}
+	ContractionHierarchy ch = build(graph);
+	if (!ch.write(args[1]))
+	    System.err.println("Error:  Unable to write hierarchy.");
+	else
+	    System.out.printf("%d locations, %d roads, %d shortcuts.\n", graph.nodeCount(), graph.roadCount(), ch.shortcutCount());
+    }
+
+}
@@ -0,0 +1,60 @@
+//
+// CostUpdate
+//
+// This class records a change to the cost of travel from one location
+// directly to another, as when traffic slows a road down or clears.  An
+// update names the "from" and "to" locations, rather than a road, since
+// road names need not be unique, and it applies to every road segment
+// leading directly from the one location to the other.  Updates may be
+// read from a stream, one per line, each giving the "from" location name,
+// the "to" location name, and the new cost, separated by whitespace.  See
+// the "updateCosts" methods of the Map class.
+//
+
+
+import java.io.*;
+import java.util.*;
+
+
+public class CostUpdate {
+    public String fromLocationName;
+    public String toLocationName;
+    public double cost = 0.0;
+
+    // Default constructor ...
+    public CostUpdate() {
+    }
+
+    // Constructor with location names and new cost specified ...
+    public CostUpdate(String fromLocationName, String toLocationName, double cost) {
+	this.fromLocationName = fromLocationName;
+	this.toLocationName = toLocationName;
+	this.cost = cost;
+    }
+
+    // read -- Read an update from the given stream into this object.  Return
+    // true if and only if all three fields are successfully read.
+    public boolean read(BufferedReader str) {
+	try {
+	    String thisLine = str.readLine();
+	    if (thisLine == null)
+		// No more input, at all ...
+		return (false);
+	    Scanner inScanner = new Scanner(thisLine).useDelimiter("\\s+");
+	    if (!inScanner.hasNext())
+		return (false);
+	    fromLocationName = inScanner.next();
+	    if (!inScanner.hasNext())
+		return (false);
+	    toLocationName = inScanner.next();
+	    if (!inScanner.hasNextDouble())
+		return (false);
+	    cost = inScanner.nextDouble();
+	    return (true);
+	} catch (IOException e) {
+	    // Something went wrong ...
+	    return (false);
+	}
+    }
+
+}
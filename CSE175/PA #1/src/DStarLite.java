@@ -0,0 +1,493 @@
+//
+// DStarLite
+//
+// This class implements the D* Lite algorithm (Koenig and Likhachev, 2002)
+// for replanning a route over a CompactMap as the costs of roads change
+// during a trip.  Rather than running a new A* search from scratch every
+// time that a few costs change, D* Lite keeps the state of its search
+// between calls and repairs only the part of it that the changes affect.
+//
+// The search runs backward, from the destination toward the current start
+// location, along the reverse view of the map (see ReverseGraph).  Every
+// node has a "g" value, the cost of the best path to the destination found
+// so far, and an "rhs" value, a one-step lookahead computed from the g
+// values of its successors.  A node is "consistent" when the two agree, and
+// only inconsistent nodes are placed on the priority queue, ordered by a
+// pair of keys:  min(g, rhs) plus a heuristic estimate of the cost between
+// the start and the node, and then min(g, rhs) alone.  When a road's cost
+// changes, only the rhs value of the node it leads out of is recomputed,
+// and the search resumes from the nodes made inconsistent.  As the trip
+// moves on, the start changes; rather than recomputing every key on the
+// queue, the heuristic distance moved is added to an offset, "km", that is
+// added to every new key, so that the old keys remain lower bounds.  (For
+// the same reason, a node whose rhs value does not change is left where it
+// is on the queue, even if its key is out of date; a node whose key turns
+// out to be too low when it reaches the front is simply put back.)
+//
+// The heuristic must estimate the cost of travel between the start and a
+// node, in either direction, and remain consistent as costs change.  By
+// default, a GoodHeuristic is used, whose fastest road speed is raised if
+// a road becomes faster than any before it.  Since that changes every
+// heuristic value, the search is then begun again from scratch, which
+// happens only rarely.  Roads that become slower leave the old speed in
+// place, where it remains a consistent (if looser) bound.
+//
+// The costs are taken from successive versions of the compact map, as
+// published by the "updateCosts" method of the Map class, and the roads
+// whose costs have changed are found by comparing versions.  The number of
+// nodes expanded by each call of "search", and its other statistics, are
+// recorded in "expansionCount" and "stats", in the same way as for the
+// other searches, so that replanning may be compared with a full search.
+//
+
+
+import java.util.*;
+
+
+public class DStarLite {
+    Map map;
+    CompactMap graph;
+    ReverseGraph reverse;
+    Heuristic heuristic;
+    int start;
+    int goal;
+    double km;
+    double[] g;
+    double[] rhs;
+    Queue queue;
+    public int expansionCount = 0;
+    public long totalExpansions = 0;
+    public SearchStats stats = new SearchStats();
+    public SearchMetrics metrics = null;
+
+    // Constructor with map and location names specified ...  The costs of
+    // roads are taken from the latest version of the map's compact view
+    // whenever "update" is called.
+    public DStarLite(Map map, String initialLoc, String destinationLoc) {
+	this(map, map.compact(), initialLoc, destinationLoc);
+    }
+
+    // Constructor with map, its current compact view, and location names
+    // specified ...
+    DStarLite(Map map, CompactMap graph, String initialLoc, String destinationLoc) {
+	this(graph, graph.nodeOf(initialLoc), graph.nodeOf(destinationLoc), null);
+	this.map = map;
+    }
+
+    // Constructor with compact map, start and destination nodes, and
+    // heuristic function specified ...  If the heuristic function is null,
+    // a GoodHeuristic is used.
+    public DStarLite(CompactMap graph, int start, int goal, Heuristic heuristic) {
+	if (start < 0 || goal < 0)
+	    throw new IllegalArgumentException("The start and destination must be on the map.");
+	this.graph = graph;
+	this.reverse = new ReverseGraph(graph);
+	this.start = start;
+	this.goal = goal;
+	if (heuristic == null) {
+	    GoodHeuristic good = new GoodHeuristic();
+	    good.maxRoadSpeed(graph);
+	    heuristic = good;
+	}
+	this.heuristic = heuristic;
+	this.g = new double[graph.nodeCount()];
+	this.rhs = new double[graph.nodeCount()];
+	this.queue = new Queue(graph.nodeCount());
+	initialize();
+    }
+
+    // initialize -- Forget any search done so far, and set up a new search
+    // with only the destination on the queue.
+    void initialize() {
+	Arrays.fill(g, Double.POSITIVE_INFINITY);
+	Arrays.fill(rhs, Double.POSITIVE_INFINITY);
+	queue.clear();
+	km = 0.0;
+	heuristic.setDestination(graph, start);
+	rhs[goal] = 0.0;
+	queue.add(goal, h(goal), 0.0);
+    }
+
+    // h -- Return the heuristic estimate of the cost between the current
+    // start and the given node.
+    double h(int node) {
+	stats.heuristicEvaluations++;
+	return (heuristic.heuristicFunction(graph, node));
+    }
+
+    // key1 -- Return the first key of the given node.
+    double key1(int node) {
+	return (Math.min(g[node], rhs[node]) + h(node) + km);
+    }
+
+    // key2 -- Return the second key of the given node.
+    double key2(int node) {
+	return (Math.min(g[node], rhs[node]));
+    }
+
+    // updateVertex -- Place the given node on the queue, with fresh keys, if
+    // it is inconsistent, and remove it from the queue otherwise.
+    void updateVertex(int node) {
+	if (g[node] != rhs[node]) {
+	    if (queue.contains(node)) {
+		queue.update(node, key1(node), key2(node));
+	    } else {
+		queue.add(node, key1(node), key2(node));
+		stats.frontier(queue.size());
+	    }
+	} else if (queue.contains(node)) {
+	    queue.remove(node);
+	}
+    }
+
+    // lookahead -- Return the cost of the best path to the destination that
+    // begins with a road leading out of the given node, according to the g
+    // values of its successors.
+    double lookahead(int node) {
+	double best = Double.POSITIVE_INFINITY;
+	for (int e = graph.firstRoad(node); e < graph.endRoad(node); e++) {
+	    double c = graph.cost(e) + g[graph.target(e)];
+	    if (c < best)
+		best = c;
+	}
+	return (best);
+    }
+
+    // computeShortestPath -- Expand inconsistent nodes until the start is
+    // consistent and no node on the queue could improve its path.
+    void computeShortestPath() {
+	while (!queue.isEmpty()
+	       && (Queue.less(queue.topKey1(), queue.topKey2(), key1(start), key2(start)) || rhs[start] > g[start])) {
+	    int u = queue.top();
+	    double old1 = queue.topKey1();
+	    double old2 = queue.topKey2();
+	    double new1 = key1(u);
+	    double new2 = key2(u);
+	    if (Queue.less(old1, old2, new1, new2)) {
+		// The key was computed before the start last moved ...
+		queue.update(u, new1, new2);
+	    } else if (g[u] > rhs[u]) {
+		// Overconsistent:  the path from here has become cheaper ...
+		expansionCount++;
+		g[u] = rhs[u];
+		queue.remove(u);
+		for (int i = reverse.firstRoad(u); i < reverse.endRoad(u); i++) {
+		    int s = reverse.source(i);
+		    stats.generated++;
+		    double c = graph.cost(reverse.road(i)) + g[u];
+		    if (s != goal && c < rhs[s]) {
+			rhs[s] = c;
+			updateVertex(s);
+		    }
+		}
+	    } else {
+		// Underconsistent:  the path from here has become dearer ...
+		expansionCount++;
+		double old = g[u];
+		g[u] = Double.POSITIVE_INFINITY;
+		for (int i = reverse.firstRoad(u); i < reverse.endRoad(u); i++) {
+		    int s = reverse.source(i);
+		    stats.generated++;
+		    if (s != goal && rhs[s] == graph.cost(reverse.road(i)) + old) {
+			rhs[s] = lookahead(s);
+			updateVertex(s);
+		    }
+		}
+		if (u != goal)
+		    rhs[u] = lookahead(u);
+		updateVertex(u);
+	    }
+	}
+    }
+
+    // search -- Bring the search up to date with the current start and road
+    // costs, and return the final node of the best path from the start to
+    // the destination, linked back to the start, or null if there is none.
+    public Waypoint search() {
+	stats.start();
+	try {
+	    expansionCount = 0;
+	    stats.setupDone();
+	    computeShortestPath();
+	    totalExpansions += expansionCount;
+	    return (path());
+	} finally {
+	    stats.finish(expansionCount, metrics);
+	}
+    }
+
+    // path -- Return the best path from the start to the destination, found
+    // by following, from each node, the road that minimizes its cost plus
+    // the g value of the node it leads to.
+    Waypoint path() {
+	if (rhs[start] == Double.POSITIVE_INFINITY)
+	    return (null);
+	Waypoint wp = new Waypoint(graph.location(start));
+	int node = start;
+	while (node != goal && wp.depth < graph.nodeCount()) {
+	    int best = -1;
+	    double bestCost = Double.POSITIVE_INFINITY;
+	    for (int e = graph.firstRoad(node); e < graph.endRoad(node); e++) {
+		double c = graph.cost(e) + g[graph.target(e)];
+		if (c < bestCost) {
+		    bestCost = c;
+		    best = e;
+		}
+	    }
+	    if (best < 0)
+		return (null);
+	    node = graph.target(best);
+	    Waypoint next = new Waypoint(graph.location(node), wp);
+	    next.road = graph.road(best);
+	    next.depth = wp.depth + 1;
+	    next.partialPathCost = wp.partialPathCost + graph.cost(best);
+	    wp = next;
+	}
+	return ((node == goal) ? wp : null);
+    }
+
+    // pathCost -- Return the cost of the best path from the start to the
+    // destination found by the last search, or infinity if there is none.
+    // The search may stop with the start itself inconsistent, but its rhs
+    // value is then correct.
+    public double pathCost() {
+	return (rhs[start]);
+    }
+
+    // start -- Return the current start node.
+    public int start() {
+	return (start);
+    }
+
+    // moveTo -- Move the start to the given node, as when the trip has
+    // reached it.
+    public void moveTo(int node) {
+	if (node == start)
+	    return;
+	// The heuristic still measures from the last start ...
+	km += heuristic.heuristicFunction(graph, node);
+	start = node;
+	heuristic.setDestination(graph, start);
+    }
+
+    // moveTo -- Move the start to the named location.
+    public void moveTo(String name) {
+	int node = graph.nodeOf(name);
+	if (node < 0)
+	    throw new IllegalArgumentException("The location, " + name + ", is not known.");
+	moveTo(node);
+    }
+
+    // update -- Take the road costs from the latest version of the map's
+    // compact view.  Return the number of roads whose costs changed.
+    public int update() {
+	if (map == null)
+	    return (0);
+	return (update(map.compact()));
+    }
+
+    // update -- Take the road costs from the given version of the compact
+    // map, repairing the search state for every road whose cost changed.
+    // If the given map is not a version of the current one, or the speed of
+    // the fastest road has risen, the search is begun again from scratch.
+    // Return the number of roads whose costs changed.
+    public int update(CompactMap newer) {
+	if (newer == graph)
+	    return (0);
+	if (!newer.isVersionOf(graph) || newer.nodeCount() != graph.nodeCount()) {
+	    graph = newer;
+	    reverse = new ReverseGraph(newer);
+	    restart();
+	    return (newer.roadCount());
+	}
+	int[] changed = newer.changedRoads(graph);
+	double[] before = new double[changed.length];
+	for (int i = 0; i < changed.length; i++)
+	    before[i] = graph.cost(changed[i]);
+	graph = newer;
+	if (heuristic instanceof GoodHeuristic) {
+	    GoodHeuristic good = (GoodHeuristic) heuristic;
+	    double speed = good.maxSpeed;
+	    if (good.maxRoadSpeed(newer) > speed) {
+		restart();
+		return (changed.length);
+	    }
+	}
+	for (int i = 0; i < changed.length; i++) {
+	    int e = changed[i];
+	    int u = graph.findSource(e);
+	    int v = graph.target(e);
+	    double after = graph.cost(e);
+	    if (u != goal) {
+		if (after < before[i])
+		    rhs[u] = Math.min(rhs[u], after + g[v]);
+		else if (rhs[u] == before[i] + g[v])
+		    rhs[u] = lookahead(u);
+	    }
+	    updateVertex(u);
+	}
+	return (changed.length);
+    }
+
+    // restart -- Begin the search again from scratch, from the current
+    // start.
+    void restart() {
+	if (heuristic instanceof GoodHeuristic)
+	    ((GoodHeuristic) heuristic).maxRoadSpeed(graph);
+	initialize();
+    }
+
+    // Queue -- An indexed binary heap of node ids, ordered by a pair of
+    // keys, compared lexicographically, with ties going to the lower id.
+    // Ids may be removed from anywhere in the queue, and their keys may be
+    // raised or lowered in place.
+    static class Queue {
+	int size;
+	int[] heap;
+	double[] keys1;
+	double[] keys2;
+	int[] position;
+
+	// Constructor with number of ids specified ...
+	Queue(int capacity) {
+	    capacity = Math.max(capacity, 1);
+	    this.size = 0;
+	    this.heap = new int[capacity];
+	    this.keys1 = new double[capacity];
+	    this.keys2 = new double[capacity];
+	    this.position = new int[capacity];
+	    Arrays.fill(position, -1);
+	}
+
+	// less -- Return true if and only if the first pair of keys and id
+	// should leave the queue before the second.
+	static boolean less(double a1, double a2, double b1, double b2) {
+	    return (a1 < b1 || (a1 == b1 && a2 < b2));
+	}
+
+	// before -- Return true if and only if the entry at heap position "i"
+	// should leave the queue before the given keys and id.
+	boolean before(int i, double k1, double k2, int id) {
+	    return (less(keys1[i], keys2[i], k1, k2)
+		    || (keys1[i] == k1 && keys2[i] == k2 && heap[i] < id));
+	}
+
+	// isEmpty -- Return true if and only if the queue holds no ids.
+	boolean isEmpty() {
+	    return (size == 0);
+	}
+
+	// size -- Return the number of ids in the queue.
+	int size() {
+	    return (size);
+	}
+
+	// contains -- Return true if and only if the given id is in the queue.
+	boolean contains(int id) {
+	    return (position[id] >= 0);
+	}
+
+	// top -- Return the id at the front of the queue, which must not be
+	// empty.
+	int top() {
+	    return (heap[0]);
+	}
+
+	// topKey1 -- Return the first key of the id at the front of the queue.
+	double topKey1() {
+	    return (keys1[0]);
+	}
+
+	// topKey2 -- Return the second key of the id at the front of the queue.
+	double topKey2() {
+	    return (keys2[0]);
+	}
+
+	// clear -- Remove every id from the queue.
+	void clear() {
+	    for (int i = 0; i < size; i++)
+		position[heap[i]] = -1;
+	    size = 0;
+	}
+
+	// add -- Insert the given id, which must not already be in the queue,
+	// with the given keys.
+	void add(int id, double k1, double k2) {
+	    siftUp(size++, id, k1, k2);
+	}
+
+	// update -- Change the keys of the given id, which must be in the
+	// queue, to the given values, which may be higher or lower than before.
+	void update(int id, double k1, double k2) {
+	    int hole = position[id];
+	    if (less(k1, k2, keys1[hole], keys2[hole]))
+		siftUp(hole, id, k1, k2);
+	    else
+		siftDown(hole, id, k1, k2);
+	}
+
+	// remove -- Remove the given id, which must be in the queue.
+	void remove(int id) {
+	    int hole = position[id];
+	    position[id] = -1;
+	    size--;
+	    if (hole == size)
+		return;
+	    // Fill the hole with the last entry, which may move either way ...
+	    int moved = heap[size];
+	    double k1 = keys1[size];
+	    double k2 = keys2[size];
+	    if (hole > 0 && !before((hole - 1) >>> 1, k1, k2, moved))
+		siftUp(hole, moved, k1, k2);
+	    else
+		siftDown(hole, moved, k1, k2);
+	}
+
+	// siftUp -- Place the given id and keys at the given hole in the heap,
+	// moving it up toward the root as far as it needs to go.
+	void siftUp(int hole, int id, double k1, double k2) {
+	    while (hole > 0) {
+		int parent = (hole - 1) >>> 1;
+		if (before(parent, k1, k2, id))
+		    break;
+		move(parent, hole);
+		hole = parent;
+	    }
+	    place(hole, id, k1, k2);
+	}
+
+	// siftDown -- Place the given id and keys at the given hole in the
+	// heap, moving it down toward the leaves as far as it needs to go.
+	void siftDown(int hole, int id, double k1, double k2) {
+	    while (true) {
+		int child = 2 * hole + 1;
+		if (child >= size)
+		    break;
+		if (child + 1 < size && before(child + 1, keys1[child], keys2[child], heap[child]))
+		    child++;
+		if (!before(child, k1, k2, id))
+		    break;
+		move(child, hole);
+		hole = child;
+	    }
+	    place(hole, id, k1, k2);
+	}
+
+	// move -- Move the entry at one heap position to another.
+	void move(int from, int to) {
+	    heap[to] = heap[from];
+	    keys1[to] = keys1[from];
+	    keys2[to] = keys2[from];
+	    position[heap[to]] = to;
+	}
+
+	// place -- Put the given id and keys at the given heap position.
+	void place(int hole, int id, double k1, double k2) {
+	    heap[hole] = id;
+	    keys1[hole] = k1;
+	    keys2[hole] = k2;
+	    position[id] = hole;
+	}
+    }
+
+}
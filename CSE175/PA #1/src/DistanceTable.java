@@ -0,0 +1,326 @@
+//
+// DistanceTable
+//
+// This class computes a "many-to-many" table of shortest path costs, from
+// each of a list of source nodes of a CompactMap to each of a list of
+// target nodes.  The table is a single primitive array of doubles, with the
+// cost from source "i" to target "j" at position "i * targetCount + j", and
+// with infinity for a target that cannot be reached from a source.
+//
+// Without preprocessing, the table is filled in by one uniform-cost search
+// per source, each of which stops as soon as every target has been settled
+// (rather than once per pair of locations).  These searches run in parallel
+// on a pool of threads, each thread using its own SearchContext.  Given a
+// ContractionHierarchy, the table is instead filled in by the "bucket"
+// algorithm:  an upward backward search is run from every target, and each
+// node that it settles records the target and the cost in that node's
+// "bucket".  An upward forward search is then run from every source, and at
+// each node that it settles, the costs in the node's bucket are combined
+// with the cost of reaching the node.  Both sets of searches are small, and
+// both run in parallel.
+//
+// A table may be written to a file, in the same little-endian layout used
+// by the MapFile class:  a header giving the numbers of sources and
+// targets, the source and target node ids, and then the costs, a row at a
+// time.  The "main" method computes and writes a table for the locations
+// named in two files.
+//
+
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.*;
+
+
+public class DistanceTable {
+    static final int MAGIC = 0x54444d43;    // "CMDT"
+    static final int VERSION = 1;
+
+    int[] sources;
+    int[] targets;
+    double[] costs;
+    boolean[] isTarget;
+    int distinctTargets;
+
+    // Constructor with sources and targets specified ...  Every cost starts
+    // out infinite.
+    public DistanceTable(int[] sources, int[] targets) {
+	this.sources = sources;
+	this.targets = targets;
+	this.costs = new double[sources.length * targets.length];
+	Arrays.fill(costs, Double.POSITIVE_INFINITY);
+    }
+
+    // sourceCount -- Return the number of sources (rows).
+    public int sourceCount() {
+	return (sources.length);
+    }
+
+    // targetCount -- Return the number of targets (columns).
+    public int targetCount() {
+	return (targets.length);
+    }
+
+    // get -- Return the cost of the shortest path from the source in row
+    // "i" to the target in column "j".
+    public double get(int i, int j) {
+	return (costs[i * targets.length + j]);
+    }
+
+    // matrix -- Return the array of costs, a row at a time.
+    public double[] matrix() {
+	return (costs);
+    }
+
+    // compute -- Fill in a table from the given sources to the given targets
+    // on the given map, with one uniform-cost search per source, using the
+    // given number of threads.
+    public static DistanceTable compute(final CompactMap graph, int[] sources, int[] targets, int threads) {
+	final DistanceTable table = new DistanceTable(sources, targets);
+	table.isTarget = new boolean[graph.nodeCount()];
+	for (int target : targets) {
+	    if (!table.isTarget[target]) {
+		table.isTarget[target] = true;
+		table.distinctTargets++;
+	    }
+	}
+	ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+	try {
+	    List<Future<?>> rows = new ArrayList<Future<?>>();
+	    for (int i = 0; i < sources.length; i++) {
+		final int row = i;
+		rows.add(pool.submit(() -> table.searchRow(graph, row)));
+	    }
+	    waitFor(rows);
+	} finally {
+	    pool.shutdown();
+	}
+	return (table);
+    }
+
+    // compute -- Fill in a table from the given sources to the given targets
+    // with the bucket algorithm on the given hierarchy, using the given
+    // number of threads.
+    public static DistanceTable compute(final ContractionHierarchy ch, int[] sources, final int[] targets, int threads) {
+	final DistanceTable table = new DistanceTable(sources, targets);
+	ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+	try {
+	    // Find the backward search space of every target ...
+	    List<Future<double[]>> spaces = new ArrayList<Future<double[]>>();
+	    for (final int target : targets) {
+		spaces.add(pool.submit(() -> {
+		    SearchContext bwd = ch.local()[1];
+		    int[] nodes = ch.searchSpace(target, false, bwd);
+		    // Nodes and costs are returned together, in pairs ...
+		    double[] space = new double[2 * nodes.length];
+		    for (int k = 0; k < nodes.length; k++) {
+			space[2 * k] = nodes[k];
+			space[2 * k + 1] = bwd.pathCost(nodes[k]);
+		    }
+		    return (space);
+		}));
+	    }
+	    // Sort the entries into buckets, in compressed sparse row form ...
+	    double[][] space = new double[targets.length][];
+	    for (int j = 0; j < targets.length; j++)
+		space[j] = result(spaces.get(j));
+	    final int[] offsets = new int[ch.nodeCount + 1];
+	    for (int j = 0; j < targets.length; j++)
+		for (int k = 0; k < space[j].length; k += 2)
+		    offsets[(int) space[j][k] + 1]++;
+	    for (int n = 0; n < ch.nodeCount; n++)
+		offsets[n + 1] += offsets[n];
+	    final int[] bucketTargets = new int[offsets[ch.nodeCount]];
+	    final double[] bucketCosts = new double[offsets[ch.nodeCount]];
+	    int[] next = Arrays.copyOf(offsets, ch.nodeCount);
+	    for (int j = 0; j < targets.length; j++) {
+		for (int k = 0; k < space[j].length; k += 2) {
+		    int b = next[(int) space[j][k]]++;
+		    bucketTargets[b] = j;
+		    bucketCosts[b] = space[j][k + 1];
+		}
+	    }
+	    // Scan the buckets from the forward search space of every source ...
+	    List<Future<?>> rows = new ArrayList<Future<?>>();
+	    for (int i = 0; i < sources.length; i++) {
+		final int row = i;
+		rows.add(pool.submit(() -> {
+		    SearchContext fwd = ch.local()[0];
+		    int base = row * targets.length;
+		    for (int n : ch.searchSpace(table.sources[row], true, fwd)) {
+			for (int b = offsets[n]; b < offsets[n + 1]; b++) {
+			    double c = fwd.pathCost(n) + bucketCosts[b];
+			    if (c < table.costs[base + bucketTargets[b]])
+				table.costs[base + bucketTargets[b]] = c;
+			}
+		    }
+		}));
+	    }
+	    waitFor(rows);
+	} finally {
+	    pool.shutdown();
+	}
+	return (table);
+    }
+
+    // searchRow -- Fill in the given row of this table with a uniform-cost
+    // search from its source, which stops once every target is settled.
+    void searchRow(CompactMap graph, int row) {
+	SearchContext context = SearchContext.local(graph);
+	HeapFrontier frontier = context.heap;
+	int base = row * targets.length;
+	int remaining = distinctTargets;
+	int source = sources[row];
+	context.reachRoot(source, 0.0);
+	frontier.add(source, 0.0);
+	while (!frontier.isEmpty() && remaining > 0) {
+	    int u = frontier.removeTop();
+	    context.markExplored(u);
+	    if (isTarget[u])
+		remaining--;
+	    for (int e = graph.firstRoad(u); e < graph.endRoad(u); e++) {
+		int v = graph.target(e);
+		double g = context.pathCost(u) + graph.cost(e);
+		if (!context.isReached(v)) {
+		    context.reachChild(u, e, v, graph.cost(e), 0.0);
+		    frontier.add(v, g);
+		} else if (!context.isExplored(v) && g < context.pathCost(v)) {
+		    context.reachChild(u, e, v, graph.cost(e), 0.0);
+		    frontier.decreaseKey(v, g);
+		}
+	    }
+	}
+	for (int j = 0; j < targets.length; j++)
+	    if (context.isExplored(targets[j]))
+		costs[base + j] = context.pathCost(targets[j]);
+    }
+
+    // waitFor -- Wait for every one of the given tasks to finish.
+    static void waitFor(List<Future<?>> tasks) {
+	for (Future<?> f : tasks)
+	    result(f);
+    }
+
+    // result -- Wait for and return the result of the given task.
+    static <T> T result(Future<T> f) {
+	try {
+	    return (f.get());
+	} catch (InterruptedException | ExecutionException e) {
+	    throw new IllegalStateException("Distance table search failed.", e);
+	}
+    }
+
+    // write -- Write this table to the given file, streaming the costs a
+    // row at a time.  Return false on error.
+    public boolean write(String filename) {
+	try (RandomAccessFile file = new RandomAccessFile(filename, "rw")) {
+	    file.setLength(0);
+	    MapFile out = new MapFile(file.getChannel());
+	    out.putInt(MAGIC);
+	    out.putInt(VERSION);
+	    out.putInt(sources.length);
+	    out.putInt(targets.length);
+	    for (int source : sources)
+		out.putInt(source);
+	    for (int target : targets)
+		out.putInt(target);
+	    out.align();
+	    for (double c : costs)
+		out.putDouble(c);
+	    out.flush();
+	    return (true);
+	} catch (IOException e) {
+	    // Something went wrong ...
+	    return (false);
+	}
+    }
+
+    // read -- Read a table from the given file, written by the "write"
+    // method.  Return null on error.
+    public static DistanceTable read(String filename) {
+	try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
+	    FileChannel ch = file.getChannel();
+	    ByteBuffer in = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()).order(ByteOrder.LITTLE_ENDIAN);
+	    if (in.getInt() != MAGIC || in.getInt() != VERSION)
+		return (null);
+	    int[] sources = new int[in.getInt()];
+	    int[] targets = new int[in.getInt()];
+	    in.asIntBuffer().get(sources);
+	    in.position(in.position() + 4 * sources.length);
+	    in.asIntBuffer().get(targets);
+	    in.position((in.position() + 4 * targets.length + 7) & ~7);
+	    DistanceTable table = new DistanceTable(sources, targets);
+	    in.asDoubleBuffer().get(table.costs);
+	    return (table);
+	} catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+	    // Something went wrong ...
+	    return (null);
+	}
+    }
+
+    // nodes -- Return the node ids of the locations named, one per line, in
+    // the given file, or null on error.
+    static int[] nodes(CompactMap graph, String filename) {
+	try (BufferedReader in = new BufferedReader(new FileReader(filename))) {
+	    int[] nodes = new int[16];
+	    int count = 0;
+	    String line;
+	    while ((line = in.readLine()) != null) {
+		line = line.trim();
+		if (line.isEmpty())
+		    continue;
+		int node = graph.nodeOf(line);
+		if (node < 0) {
+		    System.err.printf("The location, %s, is not known.\n", line);
+		    return (null);
+		}
+		if (count == nodes.length)
+		    nodes = Arrays.copyOf(nodes, 2 * count);
+		nodes[count++] = node;
+	    }
+	    return (Arrays.copyOf(nodes, count));
+	} catch (IOException e) {
+	    // Something went wrong ...
+	    return (null);
+	}
+    }
+
+    // main -- Compute the table between the locations named in the source
+    // file and the target file named on the command line, on the binary map
+    // file also named there, and write it to the given output file.  If a
+    // hierarchy file is named as well, the bucket algorithm is used.
+    public static void main(String[] args) {
+	if (args.length < 4 || args.length > 5) {
+	    System.err.println("Usage:  java DistanceTable <map file> <source file> <target file> <table file> [hierarchy file]");
+	    return;
+	}
+	CompactMap graph = MapFile.read(args[0]);
+	if (graph == null) {
+	    System.err.println("Error:  Unable to read map.");
+	    return;
+	}
+	int[] sources = nodes(graph, args[1]);
+	int[] targets = nodes(graph, args[2]);
+	if (sources == null || targets == null) {
+	    System.err.println("Error:  Unable to read locations.");
+	    return;
+	}
+	int threads = Runtime.getRuntime().availableProcessors();
+	DistanceTable table;
+	if (args.length > 4) {
+	    ContractionHierarchy ch = ContractionHierarchy.read(graph, args[4]);
+	    if (ch == null) {
+		System.err.println("Error:  Unable to read hierarchy.");
+		return;
+	    }
+	    table = compute(ch, sources, targets, threads);
+	} else {
+	    table = compute(graph, sources, targets, threads);
+	}
+	if (!table.write(args[3]))
+	    System.err.println("Error:  Unable to write table.");
+    }
+
+}
@@ -0,0 +1,311 @@
+//
+// FrontierBenchmark
+//
+// This class provides a "main" method that measures the cost of frontier
+// membership tests on square grid maps of increasing size.  For each map,
+// every location is placed in a Frontier and in a SortedFrontier, and then
+// the average time taken by "contains" and "find" is reported, next to the
+// average time taken by a linear search of the same frontier (which is how
+// these methods used to be implemented).  The indexed methods should take
+// about the same time at every size, while the linear searches grow in
+// proportion to the number of locations.  Lastly, uniform-cost search and
+// A* search, both with repeated state checking, are run from one corner of
+// each map to the opposite corner, and the time per node expansion is
+// reported.  The grid sizes may be given on the command line.
+//
+// A second benchmark then runs a batch of queries on each map with each of
+// uniform-cost, greedy, and A* search, with and without repeated state
+// checking, totalling the statistics of each batch in a SearchMetrics
+// object.  It reports the throughput, the memory allocated per query (where
+// the virtual machine can measure it), and the average number of nodes
+// expanded and generated, and so on, per query.  With repeated state
+// checking, each query runs between two locations chosen at random.
+// Without it, the search tree grows exponentially with depth, so each
+// query ends a short random walk from where it starts, and the depth of
+// the search is limited.
+//
+// A third benchmark drives a trip from one corner of each map to the
+// opposite corner, one road at a time.  At every step, the traffic changes
+// the costs of a few roads on the route ahead, and the route is planned
+// again, both by a DStarLite object that is kept for the whole trip and by
+// a new A* search from the current location.  It reports the average
+// number of nodes expanded, and the time taken, per step by each.
+//
+
+
+import java.lang.management.*;
+import java.util.*;
+
+
+public class FrontierBenchmark {
+
+    // gridMap -- Return a map with the given number of rows and columns of
+    // locations, with roads in both directions between horizontally and
+    // vertically adjacent locations.  Each road costs between one and two
+    // units, chosen at random from the given seed.  Since adjacent
+    // locations are one unit apart, straight-line distance never exceeds
+    // the true path cost.
+    public static Map gridMap(int side, long seed) {
+	Map graph = new Map();
+	Random rand = new Random(seed);
+	Location[][] grid = new Location[side][side];
+	for (int r = 0; r < side; r++) {
+	    for (int c = 0; c < side; c++) {
+		grid[r][c] = new Location("n" + r + "-" + c, c, r);
+		graph.recordLocation(grid[r][c]);
+	    }
+	}
+	for (int r = 0; r < side; r++) {
+	    for (int c = 0; c < side; c++) {
+		if (c + 1 < side)
+		    connect(grid[r][c], grid[r][c + 1], 1.0 + rand.nextDouble());
+		if (r + 1 < side)
+		    connect(grid[r][c], grid[r + 1][c], 1.0 + rand.nextDouble());
+	    }
+	}
+	return (graph);
+    }
+
+    // connect -- Record roads in both directions between the two given
+    // locations, with the given cost.
+    static void connect(Location a, Location b, double cost) {
+	a.recordRoad(road(a, b, cost));
+	b.recordRoad(road(b, a, cost));
+    }
+
+    // road -- Return a new road segment between the given locations.
+    static Road road(Location from, Location to, double cost) {
+	Road r = new Road();
+	r.name = "street";
+	r.fromLocation = from;
+	r.fromLocationName = from.name;
+	r.toLocation = to;
+	r.toLocationName = to.name;
+	r.cost = cost;
+	return (r);
+    }
+
+    // linearContains -- Test SortedFrontier membership the old way, by
+    // searching the whole frontier.
+    static boolean linearContains(SortedFrontier sf, String name) {
+	for (int i = 0; i < sf.size(); i++)
+	    if (name.equals(sf.get(i).loc.name))
+		return (true);
+	return (false);
+    }
+
+    // linearContains -- Test Frontier membership the old way, by searching
+    // the whole frontier list.
+    static boolean linearContains(Frontier f, String name) {
+	for (int i = 0; i < f.size(); i++)
+	    if (name.equals(f.get(i).loc.name))
+		return (true);
+	return (false);
+    }
+
+    // nanosPerCall -- Return the average time, in nanoseconds, of the given
+    // number of membership tests, using the indexed method if "indexed" is
+    // true and a linear search otherwise.
+    static double nanosPerCall(Frontier f, SortedFrontier sf, Location[] places, int calls, boolean sorted,
+			       boolean indexed) {
+	int hits = 0;
+	long start = System.nanoTime();
+	for (int i = 0; i < calls; i++) {
+	    Location loc = places[(int) ((i * 2654435761L) % places.length)];
+	    boolean found;
+	    if (sorted)
+		found = indexed ? (sf.find(loc) != null) : linearContains(sf, loc.name);
+	    else
+		found = indexed ? f.contains(loc) : linearContains(f, loc.name);
+	    if (found)
+		hits++;
+	}
+	long elapsed = System.nanoTime() - start;
+	if (hits != calls)
+	    throw new IllegalStateException("Frontier lost a member.");
+	return ((double) elapsed / calls);
+    }
+
+    // allocatedBytes -- Return the number of bytes allocated so far by the
+    // calling thread, or -1 if the virtual machine cannot say.
+    static long allocatedBytes() {
+	ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+	if (bean instanceof com.sun.management.ThreadMXBean)
+	    return (((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId()));
+	return (-1);
+    }
+
+    // runSearch -- Run the named search between the given locations, adding
+    // its statistics to the given metrics.
+    static Waypoint runSearch(String algorithm, Map graph, String from, String to, int limit, boolean repeated,
+			      SearchMetrics metrics) {
+	switch (algorithm) {
+	    case "UCS":
+		UniformCostSearch ucs = new UniformCostSearch(graph, from, to, limit);
+		ucs.metrics = metrics;
+		return (ucs.search(repeated));
+	    case "Greedy":
+		GreedySearch gs = new GreedySearch(graph, from, to, limit);
+		gs.metrics = metrics;
+		return (gs.search(repeated));
+	    default:
+		AStarSearch as = new AStarSearch(graph, from, to, limit);
+		as.metrics = metrics;
+		return (as.search(repeated));
+	}
+    }
+
+    // walk -- Return the location reached by a random walk of the given
+    // number of steps from the given location.
+    static Location walk(Location loc, int steps, Random rand) {
+	for (int i = 0; i < steps && !loc.roads.isEmpty(); i++)
+	    loc = loc.roads.get(rand.nextInt(loc.roads.size())).toLocation;
+	return (loc);
+    }
+
+    // searchBatch -- Run the given number of queries on the given map with
+    // the named search, and report their statistics on one line.
+    static void searchBatch(Map graph, String algorithm, boolean repeated, int queries) {
+	Random rand = new Random(queries);
+	int n = graph.locations.size();
+	String[][] pairs = new String[queries][2];
+	for (int q = 0; q < queries; q++) {
+	    Location from = graph.locations.get(rand.nextInt(n));
+	    Location to = repeated ? graph.locations.get(rand.nextInt(n)) : walk(from, 6, rand);
+	    pairs[q][0] = from.name;
+	    pairs[q][1] = to.name;
+	}
+	int limit = repeated ? 2 * n : 8;
+	// Warm up, then measure ...
+	for (int q = 0; q < Math.min(queries, 5); q++)
+	    runSearch(algorithm, graph, pairs[q][0], pairs[q][1], limit, repeated, null);
+	SearchMetrics metrics = new SearchMetrics();
+	long bytes = allocatedBytes();
+	long start = System.nanoTime();
+	for (String[] pair : pairs)
+	    runSearch(algorithm, graph, pair[0], pair[1], limit, repeated, metrics);
+	double seconds = (System.nanoTime() - start) / 1e9;
+	bytes = (bytes < 0) ? -1 : (allocatedBytes() - bytes) / queries;
+	System.out.printf("%10d %-7s %-9s %10.1f q/s %12d bytes/query  ", n, algorithm, repeated ? "checked" : "unchecked",
+			  queries / seconds, bytes);
+	metrics.write(System.out);
+    }
+
+    // replanTrip -- Drive a trip across the given map, changing the costs of
+    // a few roads ahead at every step, and report the work done per step in
+    // planning the rest of the trip, by D* Lite and by A* search, on one
+    // line.
+    static void replanTrip(Map graph, long seed) {
+	Random rand = new Random(seed);
+	int n = graph.locations.size();
+	String to = graph.locations.get(n - 1).name;
+	DStarLite dstar = new DStarLite(graph, graph.locations.get(0).name, to);
+	Waypoint route = dstar.search();
+	long dstarNanos = 0;
+	long astarNanos = 0;
+	long astarExpansions = 0;
+	int steps = 0;
+	int mismatches = 0;
+	while (route != null && route.depth > 0) {
+	    // Step to the next location on the route ...
+	    Waypoint next = route;
+	    while (next.depth > 1)
+		next = next.previous;
+	    dstar.moveTo(next.loc.name);
+	    // Slow down, or speed up, a few roads along the route ahead.  No
+	    // road becomes faster than one unit of distance per unit of cost ...
+	    List<CostUpdate> updates = new ArrayList<CostUpdate>();
+	    for (int k = 0; k < 3 && route.depth > 1; k++) {
+		Waypoint wp = route;
+		for (int back = rand.nextInt(route.depth - 1); back > 0; back--)
+		    wp = wp.previous;
+		Road r = wp.road;
+		double cost = Math.max(1.0, r.cost * (0.5 + 2.0 * rand.nextDouble()));
+		updates.add(new CostUpdate(r.fromLocationName, r.toLocationName, cost));
+	    }
+	    graph.updateCosts(updates);
+	    CompactMap compact = graph.compact();
+	    long start = System.nanoTime();
+	    dstar.update();
+	    route = dstar.search();
+	    dstarNanos += System.nanoTime() - start;
+	    AStarSearch as = new AStarSearch(graph, next.loc.name, to, 2 * n);
+	    start = System.nanoTime();
+	    Waypoint check = as.search(compact, true);
+	    astarNanos += System.nanoTime() - start;
+	    astarExpansions += as.expansionCount;
+	    if (route == null || check == null || Math.abs(route.partialPathCost - check.partialPathCost) > 1e-9)
+		mismatches++;
+	    steps++;
+	}
+	steps = Math.max(1, steps);
+	System.out.printf("%10d %8d %14.1f %14.1f %14.3f %14.3f %10d\n", n, steps,
+			  (double) dstar.totalExpansions / steps, (double) astarExpansions / steps,
+			  dstarNanos / 1e6 / steps, astarNanos / 1e6 / steps, mismatches);
+    }
+
+    public static void main(String[] args) {
+	int[] sides = { 50, 100, 200, 400 };
+	if (args.length > 0) {
+	    sides = new int[args.length];
+	    for (int i = 0; i < args.length; i++)
+		sides[i] = Integer.parseInt(args[i]);
+	}
+	System.out.println("FRONTIER MEMBERSHIP BENCHMARK");
+	System.out.printf("%10s %14s %14s %14s %14s %14s %14s\n", "locations", "contains ns", "linear ns",
+			  "find ns", "linear ns", "UCS ns/exp", "A* ns/exp");
+	for (int side : sides) {
+	    Map graph = gridMap(side, side);
+	    int n = graph.locations.size();
+	    Location[] places = new Location[n];
+	    Frontier f = new Frontier();
+	    SortedFrontier sf = new SortedFrontier(SortBy.g);
+	    for (int i = 0; i < n; i++) {
+		Location loc = graph.locations.get(i);
+		places[i] = loc;
+		Waypoint wp = new Waypoint(loc);
+		wp.partialPathCost = i;
+		f.addToBottom(wp);
+		sf.addSorted(wp);
+	    }
+	    // Warm up, then measure ...
+	    int linearCalls = Math.max(200, 20000000 / n);
+	    for (int round = 0; round < 2; round++) {
+		double c = nanosPerCall(f, sf, places, 1000000, false, true);
+		double cl = nanosPerCall(f, sf, places, linearCalls, false, false);
+		double s = nanosPerCall(f, sf, places, 1000000, true, true);
+		double sl = nanosPerCall(f, sf, places, linearCalls, true, false);
+		if (round == 0)
+		    continue;
+		// Time whole searches across the grid ...
+		String from = places[0].name;
+		String to = places[n - 1].name;
+		UniformCostSearch ucs = new UniformCostSearch(graph, from, to, 2 * n);
+		long start = System.nanoTime();
+		ucs.search(true);
+		double ucsTime = (double) (System.nanoTime() - start) / Math.max(1, ucs.expansionCount);
+		AStarSearch as = new AStarSearch(graph, from, to, 2 * n);
+		start = System.nanoTime();
+		as.search(true);
+		double asTime = (double) (System.nanoTime() - start) / Math.max(1, as.expansionCount);
+		System.out.printf("%10d %14.1f %14.1f %14.1f %14.1f %14.1f %14.1f\n", n, c, cl, s, sl, ucsTime, asTime);
+	    }
+	}
+	System.out.println("SEARCH METRICS BENCHMARK");
+	for (int side : sides) {
+	    Map graph = gridMap(side, side);
+	    int queries = Math.max(10, 2000000 / (side * side));
+	    for (String algorithm : new String[] { "UCS", "Greedy", "A*" }) {
+		searchBatch(graph, algorithm, true, queries);
+		searchBatch(graph, algorithm, false, 2 * queries);
+	    }
+	}
+	System.out.println("REPLANNING BENCHMARK");
+	System.out.printf("%10s %8s %14s %14s %14s %14s %10s\n", "locations", "steps", "D* Lite exp", "A* exp",
+			  "D* Lite ms", "A* ms", "mismatches");
+	for (int side : sides)
+	    replanTrip(gridMap(side, side), side);
+	System.out.println("BENCHMARK COMPLETE");
+    }
+
+}
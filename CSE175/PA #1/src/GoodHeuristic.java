@@ -32,6 +32,17 @@ public class GoodHeuristic extends Heuristic {
 	    return (hVal);
     }
 
+    // heuristicFunction -- Return the same heuristic value as above, for the
+    // given node of a CompactMap, using the coordinates stored in the
+    // compact map for both the node and the destination.
+    public double heuristicFunction(CompactMap graph, int node) {
+        int end = getDestination().id;
+        double lon = graph.longitude(node) - graph.longitude(end);
+        double lat = graph.latitude(node) - graph.latitude(end);
+
+        return Math.sqrt(lon * lon + lat * lat) / maxSpeed;
+    }
+
     double maxSpeed = 0.0;  // store in maximum speed
 
     // this function will find highest speed and set end point
@@ -40,6 +51,12 @@ public class GoodHeuristic extends Heuristic {
         setDestination(endpoint);   // set end point
     }
 
+    // this function will find highest speed and set end point for a search over a compact map
+    public void startHeuristic(CompactMap graph, int endpoint) {
+        maxRoadSpeed(graph);    // find maximum speed
+        setDestination(graph.location(endpoint));   // set end point
+    }
+
     // this function will find the distant between two locations
     public double distance(Location startpoint, Location endtopint){
         double lon = startpoint.longitude - endtopint.longitude;
@@ -49,18 +66,16 @@ public class GoodHeuristic extends Heuristic {
     }
 
     // this function will find the highest speed in the map
+    // the map only looks at every road the first time it is asked, so this is cheap for every query after that
     public double maxRoadSpeed(Map graph) {
-        double speed;   // store in speed of road for every speed calculation
-        for (Location location : graph.locations) { // iterate all locations in the map
-            for (Road road : location.roads) {  // iterate all roads that connect to current location
-                speed = distance(road.fromLocation, road.toLocation)/road.cost; // find the speed of current road
-
-                // find the highest speed
-                if (speed > maxSpeed) {
-                    maxSpeed = speed;
-                }
-            }
-        }
+        maxSpeed = Math.max(maxSpeed, graph.maxRoadSpeed());   // find the highest speed
+        return maxSpeed;
+    }
+
+    // this function will find the highest speed in a compact map, using its coordinates
+    // the compact map only looks at every road the first time it is asked
+    public double maxRoadSpeed(CompactMap graph) {
+        maxSpeed = Math.max(maxSpeed, graph.maxRoadSpeed());   // find the highest speed
         return maxSpeed;
     }
 
@@ -7,6 +7,8 @@ public class GreedySearch {
     public String destinationLoc = " ";
     public int limit = 0;
     public int expansionCount = 0;
+    public SearchStats stats = new SearchStats();   // what the last search did
+    public SearchMetrics metrics = null;    // if set, the stats of every search are added to it
 
     // constructor
     GreedySearch(Map graph, String initialLoc, String destinationLoc, int limit) {
@@ -21,6 +23,16 @@ public class GreedySearch {
     // if repeatedChecking is true, the function will use repeated state checking; whereas, the function will not use
     // repeated if repeatedChecking is false
     public Waypoint search(boolean repeatedChecking) {
+        stats.start();
+        try {
+            return searchWaypoints(repeatedChecking);
+        } finally {
+            stats.finish(expansionCount, metrics);
+        }
+    }
+
+    // the search itself, which the function above measures
+    Waypoint searchWaypoints(boolean repeatedChecking) {
         Waypoint node = new Waypoint(graph.findLocation(initialLoc), null); //create the initial node
         expansionCount = 0; // initialize the expansionCount
 
@@ -39,6 +51,8 @@ public class GreedySearch {
             GoodHeuristic h = new GoodHeuristic();  // create a GoodHeuristic object called h
             h.startHeuristic(graph, endpoint);  // generate heuristic function
 
+            stats.setupDone();  // the search proper begins here
+
             if (repeatedChecking) { // if repeatedChecking is true, repeated state checking involves
                 // create a HashSet, called explored, for repeated checking
                 // every visited node will be added in to HashSet
@@ -53,19 +67,22 @@ public class GreedySearch {
                     } else {    // do following if current node is not destination
                         explored.add(node.loc.name);    // add current node into checklist
 
-                        // expand() will find all child nodes of current node
-                        // expand() also calculates the heuristic value for every child node
-                        node.expand(h);
-
                         expansionCount++;   // expand operates once, add 1 to expansionCount
 
-                        // for each child node in the list of child node of current node, do following
-                        for (Waypoint option : node.options) {
+                        // for each road out of the current node's location, do following
+                        for (int i = 0; i < node.successorCount(); i++) {
+                            Road road = node.successor(i);
                             // check explored and sortedFrontier contain the child node or not
-                            if (!explored.contains(option.loc.name) && !sortedFrontier.contains(option)) {
-                                sortedFrontier.addSorted(option);   // add the child node into sortedFrontier
+                            if (!explored.contains(road.toLocation.name) && !sortedFrontier.contains(road.toLocation)) {
+                                // child(road, h) creates the child node and calculates its heuristic value
+                                sortedFrontier.addSorted(node.child(road, h));   // add the child node into sortedFrontier
+                                stats.generated++;
+                                stats.heuristicEvaluations++;
+                            } else {
+                                stats.pruned++; // repeated state
                             }
                         }
+                        stats.frontier(sortedFrontier.size());
                     }
                 }
                 return null;    // fail because sortedFrontier is empty or reach the limit
@@ -78,18 +95,156 @@ public class GreedySearch {
                         return node;    // return current node if it is the destination
                     } else {    // do following if current node is not destination
 
-                        // expand(h) will find all child nodes of current node
-                        // expand(h) also calculates the heuristic value for every child node
-                        node.expand(h);
-
                         expansionCount++;// expand operates once, add 1 to expansionCount
 
-                        // add the whole list of child nodes into sortedFrontier without repeated state check
-                        sortedFrontier.addSorted(node.options);
+                        // add a child node for each road out of the current node's location into sortedFrontier without repeated
+                        // state check; child(road, h) also calculates the heuristic value for every child node
+                        for (int i = 0; i < node.successorCount(); i++) {
+                            sortedFrontier.addSorted(node.child(node.successor(i), h));
+                        }
+                        stats.generated += node.successorCount();
+                        stats.heuristicEvaluations += node.successorCount();
+                        stats.frontier(sortedFrontier.size());
                     }
                 }
                 return null;    // fail because sortedFrontier is empty or reach the limit
             }
         }
     }
+
+    // the following function performs the same search as the one above, but over a CompactMap
+    // with repeated state checking, it uses searchNode below, and Waypoint objects are only created for the
+    // nodes on the returned solution path
+    // without repeated state checking, the search tree is kept in a SearchTree of primitive arrays, and the
+    // frontier is keyed by search tree slot
+    public Waypoint search(CompactMap compact, boolean repeatedChecking) {
+        stats.start();
+        try {
+            return searchCompact(compact, repeatedChecking);
+        } finally {
+            stats.finish(expansionCount, metrics);
+        }
+    }
+
+    // the search itself, which the function above measures
+    Waypoint searchCompact(CompactMap compact, boolean repeatedChecking) {
+        if (repeatedChecking) {
+            int node = searchNode(compact);
+            return (node < 0) ? null : SearchContext.current().toWaypoint(compact, node);
+        }
+        int start = compact.nodeOf(initialLoc);     // node id of the start point
+        int goal = compact.nodeOf(destinationLoc);  // node id of the end point
+        expansionCount = 0; // initialize the expansionCount
+
+        GoodHeuristic h = compactHeuristic(compact, goal);   // heuristic function for the end point
+
+        SearchTree tree = new SearchTree();
+        int current = tree.addRoot(start, h.heuristicFunction(compact, start));    // create the initial node
+
+        if (start == goal) {    // check if the start point is the destination
+            return tree.toWaypoint(compact, current);
+        }
+        // the frontier is sorted by the same statistic as a SortedFrontier(SortBy.h)
+        HeapFrontier frontier = new HeapFrontier();
+        frontier.add(current, tree.priority(current, SortBy.h));
+
+        stats.setupDone();  // the search proper begins here
+
+        // check frontier is empty or not and check the search limit
+        while (!frontier.isEmpty() && tree.depth[current] < limit) {
+            current = frontier.removeTop();     // the first slot of the frontier
+            int node = tree.state[current];
+
+            if (node == goal) {     // check the current node is destination or not
+                return tree.toWaypoint(compact, current);
+            }
+            expansionCount++;   // expand operates once so add 1 to expansionCount
+
+            // no repeated state checking involved, add a child node for every road leading out of the current node
+            for (int e = compact.firstRoad(node); e < compact.endRoad(node); e++) {
+                int child = compact.target(e);
+                int childSlot = tree.addChild(current, e, child, compact.cost(e), h.heuristicFunction(compact, child));
+                frontier.add(childSlot, tree.priority(childSlot, SortBy.h));
+            }
+            stats.generated += compact.endRoad(node) - compact.firstRoad(node);
+            stats.heuristicEvaluations += compact.endRoad(node) - compact.firstRoad(node);
+            stats.frontier(frontier.size());
+        }
+        return null;    // fail if frontier is empty or reach to the limit
+    }
+
+    // the following function performs the same search as the one above with repeated state checking, but over
+    // a CompactMap, recording the search tree in the calling thread's SearchContext
+    // it returns the node id of the destination, or -1 on failure; the path found can then be read from the
+    // context, which is returned by SearchContext.current until the thread starts another search
+    // once the context has grown to the size of the map, this function allocates nothing
+    public int searchNode(CompactMap compact) {
+        stats.start();
+        try {
+            return searchContext(compact);
+        } finally {
+            stats.finish(expansionCount, metrics);
+        }
+    }
+
+    // the search itself, which the function above measures
+    int searchContext(CompactMap compact) {
+        int start = compact.nodeOf(initialLoc);     // node id of the start point
+        int goal = compact.nodeOf(destinationLoc);  // node id of the end point
+        expansionCount = 0; // initialize the expansionCount
+        GoodHeuristic h = compactHeuristic(compact, goal);   // heuristic function for the end point
+
+        SearchContext context = SearchContext.local(compact);
+        context.reachRoot(start, h.heuristicFunction(compact, start));    // create the initial node
+        if (start == goal) {    // check if the start point is the destination
+            return start;
+        }
+        HeapFrontier frontier = context.heap;   // the frontier is sorted like a SortedFrontier(SortBy.h)
+        frontier.add(start, context.priority(start, SortBy.h));
+        int node = start;
+        stats.setupDone();  // the search proper begins here
+
+        // check frontier is empty or not and check the search limit
+        while (!frontier.isEmpty() && context.depth[node] < limit) {
+            node = frontier.removeTop();    // the first node of the frontier
+
+            if (node == goal) {     // check the current node is destination or not
+                return node;
+            }
+            context.markExplored(node);     // add current node into checklist
+            expansionCount++;   // expand operates once so add 1 to expansionCount
+
+            // visit every road leading out of the current node
+            for (int e = compact.firstRoad(node); e < compact.endRoad(node); e++) {
+                int child = compact.target(e);
+                // skip the child node if it has been explored or is already in the frontier
+                if (context.isExplored(child) || frontier.contains(child)) {
+                    stats.pruned++;
+                    continue;
+                }
+                context.reachChild(node, e, child, compact.cost(e), h.heuristicFunction(compact, child));
+                stats.generated++;
+                stats.heuristicEvaluations++;
+                frontier.add(child, context.priority(child, SortBy.h));
+            }
+            stats.frontier(frontier.size());
+        }
+        return -1;  // fail if frontier is empty or reach to the limit
+    }
+
+    // the heuristic function used for searches over a compact map, kept from one search to the next
+    GoodHeuristic compactHeuristic = null;
+    CompactMap compactHeuristicGraph = null;
+
+    // this function returns the heuristic function for a search over the given compact map, set for the given
+    // end point; the maximum road speed is only found again when the search moves to a different map
+    GoodHeuristic compactHeuristic(CompactMap compact, int goal) {
+        if (compactHeuristic == null || compactHeuristicGraph != compact) {
+            compactHeuristic = new GoodHeuristic();
+            compactHeuristic.maxRoadSpeed(compact);
+            compactHeuristicGraph = compact;
+        }
+        compactHeuristic.setDestination(compact.location(goal));
+        return compactHeuristic;
+    }
 }
@@ -0,0 +1,169 @@
+//
+// HeapFrontier
+//
+// This class implements a priority queue of integer ids, such as the node
+// ids of a CompactMap or the slots of a SearchTree, each with a double
+// precision priority.  The id with the lowest priority is the first to be
+// removed, with ties going to the lower id.  The queue is an indexed 4-ary
+// heap:  alongside the heap arrays, the position of every id in the heap is
+// recorded, so that membership tests take constant time and the priority
+// of an id already in the queue can be lowered in place by "decreaseKey".
+// Every operation other than membership tests takes time logarithmic in
+// the size of the queue, and none of them allocate objects once the arrays
+// have grown large enough.  The priority of an id may also be raised, using
+// "update", for queues that are not used as search frontiers.
+//
+
+
+import java.util.*;
+
+
+public class HeapFrontier {
+    int size;
+    int[] heap;
+    double[] keys;
+    int[] position;
+
+    // Default constructor ...
+    public HeapFrontier() {
+	this(16);
+    }
+
+    // Constructor with initial capacity specified ...  The capacity is the
+    // number of ids expected, and ids are expected to fall below it.
+    public HeapFrontier(int capacity) {
+	capacity = Math.max(capacity, 1);
+	this.size = 0;
+	this.heap = new int[capacity];
+	this.keys = new double[capacity];
+	this.position = new int[capacity];
+	Arrays.fill(position, -1);
+    }
+
+    // isEmpty -- Return true if and only if the queue holds no ids.
+    public boolean isEmpty() {
+	return (size == 0);
+    }
+
+    // size -- Return the number of ids in the queue.
+    public int size() {
+	return (size);
+    }
+
+    // clear -- Remove every id from the queue, keeping the allocated storage
+    // for reuse.
+    public void clear() {
+	for (int i = 0; i < size; i++)
+	    position[heap[i]] = -1;
+	size = 0;
+    }
+
+    // contains -- Return true if and only if the given id is in the queue.
+    public boolean contains(int id) {
+	return (id < position.length && position[id] >= 0);
+    }
+
+    // priority -- Return the priority of the given id, which must be in the
+    // queue.
+    public double priority(int id) {
+	return (keys[position[id]]);
+    }
+
+    // topPriority -- Return the lowest priority in the queue, which must not
+    // be empty.
+    public double topPriority() {
+	return (keys[0]);
+    }
+
+    // add -- Insert the given id, which must not already be in the queue,
+    // with the given priority.
+    public void add(int id, double priority) {
+	if (id >= position.length) {
+	    int length = Math.max(id + 1, position.length * 2);
+	    int old = position.length;
+	    position = Arrays.copyOf(position, length);
+	    Arrays.fill(position, old, length, -1);
+	}
+	if (size == heap.length) {
+	    heap = Arrays.copyOf(heap, size * 2);
+	    keys = Arrays.copyOf(keys, size * 2);
+	}
+	siftUp(size++, id, priority);
+    }
+
+    // decreaseKey -- Lower the priority of the given id, which must be in
+    // the queue, to the given value.
+    public void decreaseKey(int id, double priority) {
+	siftUp(position[id], id, priority);
+    }
+
+    // update -- Change the priority of the given id, which must be in the
+    // queue, to the given value, which may be higher or lower than before.
+    public void update(int id, double priority) {
+	int hole = position[id];
+	if (less(priority, id, keys[hole], id))
+	    siftUp(hole, id, priority);
+	else
+	    siftDown(hole, id, priority);
+    }
+
+    // removeTop -- Remove the id with the lowest priority from the queue,
+    // which must not be empty, and return it.
+    public int removeTop() {
+	int top = heap[0];
+	position[top] = -1;
+	size--;
+	if (size > 0)
+	    siftDown(0, heap[size], keys[size]);
+	return (top);
+    }
+
+    // less -- Return true if and only if the first id and priority should
+    // leave the queue before the second.
+    static boolean less(double key1, int id1, double key2, int id2) {
+	return (key1 < key2 || (key1 == key2 && id1 < id2));
+    }
+
+    // siftUp -- Place the given id and priority at the given hole in the
+    // heap, moving it up toward the root as far as it needs to go.
+    void siftUp(int hole, int id, double priority) {
+	while (hole > 0) {
+	    int parent = (hole - 1) >>> 2;
+	    if (!less(priority, id, keys[parent], heap[parent]))
+		break;
+	    heap[hole] = heap[parent];
+	    keys[hole] = keys[parent];
+	    position[heap[hole]] = hole;
+	    hole = parent;
+	}
+	heap[hole] = id;
+	keys[hole] = priority;
+	position[id] = hole;
+    }
+
+    // siftDown -- Place the given id and priority at the given hole in the
+    // heap, moving it down toward the leaves as far as it needs to go.
+    void siftDown(int hole, int id, double priority) {
+	while (true) {
+	    int child = 4 * hole + 1;
+	    if (child >= size)
+		break;
+	    // Find the smallest of up to four children ...
+	    int best = child;
+	    int last = Math.min(child + 4, size);
+	    for (int c = child + 1; c < last; c++)
+		if (less(keys[c], heap[c], keys[best], heap[best]))
+		    best = c;
+	    if (!less(keys[best], heap[best], priority, id))
+		break;
+	    heap[hole] = heap[best];
+	    keys[hole] = keys[best];
+	    position[heap[hole]] = hole;
+	    hole = best;
+	}
+	heap[hole] = id;
+	keys[hole] = priority;
+	position[id] = hole;
+    }
+
+}
@@ -38,6 +38,15 @@ public class Heuristic {
         this.destination = destination;
     }
 
+    // setDestination -- Set the destination to the given node of the given
+    // CompactMap, which is the version of the map about to be searched.
+    // This version of this method sets the destination to the Location of
+    // that node.  Classes whose values depend on the version of the map
+    // searched should override it.
+    public void setDestination(CompactMap graph, int node) {
+        setDestination(graph.location(node));
+    }
+
     // heuristicFunction -- Return the appropriate heuristic values for the
     // given search tree node.  Note that the given Waypoint should not be
     // modified within the body of this function.  For this skeletal class,
@@ -48,4 +57,13 @@ public class Heuristic {
         return (0.0);
     }
 
+    // heuristicFunction -- Return the appropriate heuristic value for the
+    // given node of a CompactMap, as used by searches that do not build a
+    // Waypoint for every search tree node.  For this skeletal class, a value
+    // of zero is returned for every node.  Classes that inherit from this
+    // one should override this method to agree with the other version.
+    public double heuristicFunction(CompactMap graph, int node) {
+        return (0.0);
+    }
+
 }
@@ -0,0 +1,176 @@
+//
+// HeuristicCache
+//
+// This class keeps the straight-line heuristic values of every node of a
+// CompactMap, for a number of destinations, so that repeated queries to the
+// same destination need not compute them again.  The values for one
+// destination are held in a primitive array indexed by node id, and they
+// are the same values that a GoodHeuristic would give:  the straight-line
+// distance between the coordinates of the node and the destination,
+// divided by the speed of the fastest road on the map.  Filling in an
+// array takes time proportional to the size of the map, which is repaid
+// once a destination is searched for more than a few times.
+//
+// The arrays are kept in least-recently-used order, and the least recently
+// used ones are dropped whenever the total size of the arrays goes over a
+// given number of bytes.  (The array for the destination most recently
+// requested is always kept.)  A cache may be shared by many threads, each
+// of which should use its own CachedHeuristic object to look values up.
+// An array that is dropped while a search is still using it stays valid
+// for that search.  When the costs of roads change, the cache should be
+// moved to the new version of the compact map; if the speed of the fastest
+// road has changed, every array is dropped, since its values would no
+// longer match those of a GoodHeuristic.  The cache only ever moves forward
+// to later versions.  Values are always requested for the version of the
+// map being searched, and a search of a version whose fastest road speed
+// differs from the cache's is given values of its own, which are not kept,
+// so that a search never uses values computed with another speed.
+//
+
+
+import java.util.*;
+
+
+public class HeuristicCache {
+    CompactMap graph;
+    long maxBytes;
+    long bytes;
+    double maxSpeed;
+    LinkedHashMap<Integer, double[]> values;
+    long hits;
+    long misses;
+    long generation;
+
+    // Constructor with compact map and memory cap, in bytes, specified ...
+    public HeuristicCache(CompactMap graph, long maxBytes) {
+	this.graph = graph;
+	this.maxBytes = maxBytes;
+	this.bytes = 0;
+	this.maxSpeed = graph.maxRoadSpeed();
+	this.values = new LinkedHashMap<Integer, double[]>(16, 0.75f, true);
+	this.hits = 0;
+	this.misses = 0;
+    }
+
+    // graph -- Return the compact map whose heuristic values are kept.
+    public synchronized CompactMap graph() {
+	return (graph);
+    }
+
+    // setGraph -- Move this cache to the given version of its compact map,
+    // dropping every kept array if the speed of the fastest road differs.
+    // A compact map that is not this one or a later version of it, such as
+    // an older version still held by some thread, is ignored.
+    public synchronized void setGraph(CompactMap graph) {
+	if (graph == this.graph || !graph.isVersionOf(this.graph))
+	    return;
+	double speed = graph.maxRoadSpeed();
+	if (speed != maxSpeed) {
+	    maxSpeed = speed;
+	    clear();
+	}
+	this.graph = graph;
+    }
+
+    // values -- Return the heuristic values of every node of the cache's
+    // current compact map for the given destination node, as below.
+    public double[] values(int destination) {
+	return (values(graph(), destination));
+    }
+
+    // values -- Return the heuristic values of every node for the given
+    // destination node, computed with the fastest road speed of the given
+    // version of the compact map, which is the one being searched.  The
+    // cache is first moved to that version, if it is a later one.  The
+    // values are filled in if they are not already kept, and they are only
+    // kept if the cache's fastest road speed is the same.  The array must
+    // not be modified.
+    public double[] values(CompactMap searched, int destination) {
+	setGraph(searched);
+	double speed = searched.maxRoadSpeed();
+	long before;
+	synchronized (this) {
+	    if (speed == maxSpeed) {
+		double[] h = values.get(destination);
+		if (h != null) {
+		    hits++;
+		    return (h);
+		}
+	    }
+	    misses++;
+	    before = generation;
+	}
+	// Fill in the array without holding the lock, so that other threads
+	// may look up other destinations in the meantime ...
+	double[] h = fill(searched, speed, destination);
+	synchronized (this) {
+	    if (generation != before || speed != maxSpeed)
+		// The cache was cleared meanwhile, or holds values for another
+		// speed, so the array is not kept ...
+		return (h);
+	    double[] other = values.get(destination);
+	    if (other != null)
+		return (other);
+	    values.put(destination, h);
+	    bytes += byteSize(h);
+	    evict();
+	}
+	return (h);
+    }
+
+    // fill -- Return a new array of the heuristic values of every node of
+    // the given compact map for the given destination node, with the given
+    // fastest road speed.
+    static double[] fill(CompactMap graph, double maxSpeed, int destination) {
+	int n = graph.nodeCount();
+	double[] h = new double[n];
+	float lon = graph.longitude(destination);
+	float lat = graph.latitude(destination);
+	for (int node = 0; node < n; node++) {
+	    double dlon = graph.longitude(node) - lon;
+	    double dlat = graph.latitude(node) - lat;
+	    h[node] = Math.sqrt(dlon * dlon + dlat * dlat) / maxSpeed;
+	}
+	return (h);
+    }
+
+    // evict -- Drop the least recently used arrays until the total size of
+    // the arrays is within the memory cap, keeping at least one.
+    void evict() {
+	Iterator<double[]> it = values.values().iterator();
+	while (bytes > maxBytes && values.size() > 1) {
+	    bytes -= byteSize(it.next());
+	    it.remove();
+	}
+    }
+
+    // byteSize -- Return the approximate memory used by the given array.
+    static long byteSize(double[] h) {
+	return (16 + 8L * h.length);
+    }
+
+    // size -- Return the number of destinations whose values are kept.
+    public synchronized int size() {
+	return (values.size());
+    }
+
+    // bytes -- Return the approximate memory used by the kept values.
+    public synchronized long bytes() {
+	return (bytes);
+    }
+
+    // hitRate -- Return the fraction of requests for values that were
+    // answered without filling in a new array.
+    public synchronized double hitRate() {
+	long total = hits + misses;
+	return ((total == 0) ? 0.0 : ((double) hits) / total);
+    }
+
+    // clear -- Drop every kept array.
+    public synchronized void clear() {
+	values.clear();
+	bytes = 0;
+	generation++;
+    }
+
+}
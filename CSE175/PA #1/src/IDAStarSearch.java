@@ -0,0 +1,210 @@
+import java.util.Arrays;
+
+public class IDAStarSearch {
+    // initializing...
+    public Map graph;
+    public String initialLoc = " ";
+    public String destinationLoc = " ";
+    public int limit = 0;
+    public int expansionCount = 0;
+    public int iterationCount = 0;
+    public Heuristic heuristic = null;  // if set, used in place of a GoodHeuristic
+    public double boundGrowth = 1.1;    // each bound is at least this multiple of the last one; 1 for plain IDA*
+
+    // the path being explored, kept as a stack of node ids along with the next road to try out of each one and
+    // the partial path cost of each one
+    // these are the only things kept from one expansion to the next, so the memory used grows with the depth
+    // of the search rather than with the number of nodes generated
+    int[] nodes = new int[16];
+    int[] nextRoad = new int[16];
+    double[] pathCost = new double[16];
+
+    // the lowest f-value found beyond the bound of the last iteration, which is the bound of the next one
+    double nextBound;
+
+    // the cheapest path to the end point found so far in the current iteration, copied off the stack, along
+    // with the road taken out of each node on it
+    int[] bestNodes = new int[16];
+    int[] bestRoads = new int[16];
+    double[] bestCost = new double[16];
+    int bestDepth;
+
+    // constructor
+    IDAStarSearch(Map graph, String initialLoc, String destinationLoc, int limit){
+        this.graph = graph; // encode the map
+        this.initialLoc = initialLoc;   // set start point
+        this.destinationLoc = destinationLoc;   // set end point
+        this.limit = limit; // set search limit
+    }
+
+    // constructor with a heuristic function to use in place of a GoodHeuristic, such as a LandmarkHeuristic
+    IDAStarSearch(Map graph, String initialLoc, String destinationLoc, int limit, Heuristic heuristic){
+        this(graph, initialLoc, destinationLoc, limit);
+        this.heuristic = heuristic;
+    }
+
+    // the following function uses IDA* Search to find path from the initialLoc and destinationLoc
+    // it runs a depth-first search that skips every node whose f-value (partialPathCost plus heuristic value)
+    // is over a bound, starting with the heuristic value of the initial node; if the destination is not found,
+    // the bound is raised to the lowest f-value that was skipped, and the search is run again
+    // with an admissible heuristic, the path found is a shortest path, as for A*
+    // only the current path is stored, so a location is skipped when it is already on the path, but it may be
+    // reached again by another path, and nodes are expanded again in every iteration
+    // as road costs are real numbers, raising the bound only to the next f-value can take a great many
+    // iterations, so by default the bound is raised by at least a factor of boundGrowth each time; a path found
+    // within the bound may then not be the shortest, so the iteration goes on, skipping every node whose
+    // f-value is no better than the cheapest path found so far, which keeps the path found a shortest path
+    // expansionCount counts every expansion in every iteration, and iterationCount counts the iterations
+    public Waypoint search() {
+        CompactMap compact = graph.compact();
+        int start = compact.nodeOf(initialLoc);     // node id of the start point
+        int goal = compact.nodeOf(destinationLoc);  // node id of the end point
+        expansionCount = 0; // initialize the expansionCount
+        iterationCount = 0;
+        Heuristic h = compactHeuristic(compact, goal);   // heuristic function for the end point
+
+        bestNodes[0] = start;   // create the initial node
+        bestCost[0] = 0.0;
+        if (start == goal) {    // check if the start point is the destination
+            return toWaypoint(compact, 0, h);
+        }
+        double bound = h.heuristicFunction(compact, start);
+        // keep searching with a higher bound until nothing was skipped
+        while (bound < Double.POSITIVE_INFINITY) {
+            iterationCount++;
+            int depth = searchBounded(compact, start, goal, bound, h);
+            if (depth >= 0) {
+                return toWaypoint(compact, depth, h);   // the path to the end point has been kept
+            }
+            bound = Math.max(nextBound, bound * boundGrowth);
+        }
+        return null;    // fail if nothing was skipped or reach to the limit
+    }
+
+    // the following function runs one depth-first search from the start point within the given bound, and
+    // returns the depth of the cheapest path to the end point found within the bound, which is kept in
+    // bestNodes and bestCost, or -1 if there is none; the lowest f-value over the bound is left in nextBound
+    public int searchBounded(CompactMap compact, int start, int goal, double bound, Heuristic h) {
+        nextBound = Double.POSITIVE_INFINITY;
+        bestDepth = -1;
+        int depth = 0;
+        nodes[0] = start;   // create the initial node
+        nextRoad[0] = compact.firstRoad(start);
+        pathCost[0] = 0.0;
+        expansionCount++;   // expand operates once so add 1 to expansionCount
+
+        while (depth >= 0) {
+            int node = nodes[depth];
+            if (nextRoad[depth] == compact.endRoad(node)) {
+                depth--;    // every child has been tried, so go back up the path
+                continue;
+            }
+            int e = nextRoad[depth]++;
+            int child = compact.target(e);
+            // skip the child node if it is already on the current path
+            if (onPath(child, depth)) {
+                continue;
+            }
+            double g = pathCost[depth] + compact.cost(e);
+            double f = g + h.heuristicFunction(compact, child);
+            // skip the child node if it is over the bound, remembering the lowest such f-value
+            if (f > bound) {
+                nextBound = Math.min(nextBound, f);
+                continue;
+            }
+            // skip the child node if it cannot lead to a path cheaper than the one already found
+            if (bestDepth >= 0 && f >= bestCost[bestDepth]) {
+                continue;
+            }
+            push(depth + 1, child, g, compact);
+            if (child == goal) {    // check the child node is destination or not
+                keepBest(depth + 1);
+                if (boundGrowth <= 1.0) {
+                    return bestDepth;   // the bound is the lowest possible, so no cheaper path can be found
+                }
+                continue;
+            }
+            // the search limit bounds the depth, as it does for AStarSearch
+            if (depth + 1 >= limit) {
+                continue;
+            }
+            depth++;
+            expansionCount++;   // expand operates once so add 1 to expansionCount
+        }
+        return bestDepth;
+    }
+
+    // this function copies the path on the stack, down to the given depth, into bestNodes and bestCost
+    void keepBest(int depth) {
+        if (bestNodes.length < nodes.length) {
+            bestNodes = new int[nodes.length];
+            bestRoads = new int[nodes.length];
+            bestCost = new double[nodes.length];
+        }
+        System.arraycopy(nodes, 0, bestNodes, 0, depth + 1);
+        for (int i = 0; i < depth; i++) {
+            bestRoads[i] = nextRoad[i] - 1;    // the road to the next node on the path was the last one tried
+        }
+        System.arraycopy(pathCost, 0, bestCost, 0, depth + 1);
+        bestDepth = depth;
+    }
+
+    // this function places the given node on the stack at the given depth, growing the stack as needed
+    void push(int depth, int node, double g, CompactMap compact) {
+        if (depth == nodes.length) {
+            nodes = Arrays.copyOf(nodes, 2 * depth);
+            nextRoad = Arrays.copyOf(nextRoad, 2 * depth);
+            pathCost = Arrays.copyOf(pathCost, 2 * depth);
+        }
+        nodes[depth] = node;
+        nextRoad[depth] = compact.firstRoad(node);
+        pathCost[depth] = g;
+    }
+
+    // this function returns true if the given node is on the stack at or above the given depth
+    boolean onPath(int node, int depth) {
+        for (int i = 0; i <= depth; i++) {
+            if (nodes[i] == node) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // this function builds the chain of Waypoint objects for the path kept in bestNodes, down to the given
+    // depth, and returns the Waypoint at the end of it
+    Waypoint toWaypoint(CompactMap compact, int depth, Heuristic h) {
+        Waypoint wp = null;
+        for (int i = 0; i <= depth; i++) {
+            wp = new Waypoint(compact.location(bestNodes[i]), wp);
+            if (i > 0) {
+                wp.road = compact.road(bestRoads[i - 1]);
+            }
+            wp.depth = i;
+            wp.partialPathCost = bestCost[i];
+            wp.heuristicValue = h.heuristicFunction(compact, bestNodes[i]);
+        }
+        return wp;
+    }
+
+    // the heuristic function used for searches over a compact map, kept from one search to the next
+    GoodHeuristic compactHeuristic = null;
+    CompactMap compactHeuristicGraph = null;
+
+    // this function returns the heuristic function for a search over the given compact map, set for the given
+    // end point; the maximum road speed is only found again when the search moves to a different map
+    // a heuristic function given to the constructor is used instead, if there is one
+    Heuristic compactHeuristic(CompactMap compact, int goal) {
+        if (heuristic != null) {
+            heuristic.setDestination(compact, goal);
+            return heuristic;
+        }
+        if (compactHeuristic == null || compactHeuristicGraph != compact) {
+            compactHeuristic = new GoodHeuristic();
+            compactHeuristic.maxRoadSpeed(compact);
+            compactHeuristicGraph = compact;
+        }
+        compactHeuristic.setDestination(compact.location(goal));
+        return compactHeuristic;
+    }
+}
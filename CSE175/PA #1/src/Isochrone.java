@@ -0,0 +1,173 @@
+//
+// Isochrone
+//
+// This class records the set of nodes of a CompactMap that can be reached
+// from a source node at a cost no greater than a given budget, along with
+// the cost of the cheapest path to each.  It is found by the uniform-cost
+// search behind UniformCostSearch.searchAll, which stops as soon as the
+// lowest cost on its frontier exceeds the budget, so the work done grows
+// with the size of the reachable set rather than with the size of the map.
+// Rather than a ShortestPathTree, which has an entry for every node of the
+// map, the nodes are held in the order in which the search settled them,
+// which is in order of increasing cost, in a pair of primitive arrays that
+// are only as long as the set.
+//
+// The search uses the calling thread's SearchContext.  The "computeAll"
+// method finds the isochrones of many sources (every store location on a
+// map, say) at once, on a pool of threads, and returns them in the same
+// order as the sources.  The "main" method reports the size of the
+// isochrone of each location named on the standard input stream.
+//
+
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+
+public class Isochrone {
+    CompactMap graph;
+    int source;
+    double budget;
+    int[] nodes;
+    double[] costs;
+
+    // Constructor with every field specified ...
+    Isochrone(CompactMap graph, int source, double budget, int[] nodes, double[] costs) {
+	this.graph = graph;
+	this.source = source;
+	this.budget = budget;
+	this.nodes = nodes;
+	this.costs = costs;
+    }
+
+    // source -- Return the node id of the source.
+    public int source() {
+	return (source);
+    }
+
+    // budget -- Return the greatest path cost allowed.
+    public double budget() {
+	return (budget);
+    }
+
+    // size -- Return the number of nodes reached, including the source.
+    public int size() {
+	return (nodes.length);
+    }
+
+    // node -- Return the node id of the i'th node reached.
+    public int node(int i) {
+	return (nodes[i]);
+    }
+
+    // cost -- Return the cost of the cheapest path to the i'th node reached.
+    public double cost(int i) {
+	return (costs[i]);
+    }
+
+    // location -- Return the Location of the i'th node reached.
+    public Location location(int i) {
+	return (graph.location(nodes[i]));
+    }
+
+    // locations -- Return the Locations of every node reached, in order of
+    // increasing cost.
+    public List<Location> locations() {
+	List<Location> result = new ArrayList<Location>(nodes.length);
+	for (int n : nodes)
+	    result.add(graph.location(n));
+	return (result);
+    }
+
+    // compute -- Find the isochrone of the given source with the given
+    // budget, on the calling thread.
+    public static Isochrone compute(CompactMap graph, int source, double budget) {
+	Collector reached = new Collector();
+	UniformCostSearch.settleAll(graph, source, budget, Integer.MAX_VALUE, reached);
+	return (new Isochrone(graph, source, budget, Arrays.copyOf(reached.nodes, reached.count),
+			      Arrays.copyOf(reached.costs, reached.count)));
+    }
+
+    // Collector -- Gathers the nodes settled by the search, and their costs,
+    // in growing arrays.
+    static class Collector implements SettleVisitor {
+	int[] nodes = new int[16];
+	double[] costs = new double[16];
+	int count = 0;
+
+	public void settle(int node, int parentNode, int viaRoad, double g) {
+	    if (count == nodes.length) {
+		nodes = Arrays.copyOf(nodes, 2 * count);
+		costs = Arrays.copyOf(costs, 2 * count);
+	    }
+	    nodes[count] = node;
+	    costs[count++] = g;
+	}
+    }
+
+    // computeAll -- Find the isochrones of every one of the given sources
+    // with the given budget, using the given number of threads, and return
+    // them in the same order as the sources.
+    public static Isochrone[] computeAll(final CompactMap graph, int[] sources, final double budget, int threads) {
+	Isochrone[] result = new Isochrone[sources.length];
+	ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+	try {
+	    List<Future<Isochrone>> pending = new ArrayList<Future<Isochrone>>(sources.length);
+	    for (final int source : sources)
+		pending.add(pool.submit(() -> compute(graph, source, budget)));
+	    for (int i = 0; i < sources.length; i++)
+		result[i] = DistanceTable.result(pending.get(i));
+	} finally {
+	    pool.shutdown();
+	}
+	return (result);
+    }
+
+    // main -- Read the binary map file named on the command line, then
+    // report the number of locations within the given budget of each of the
+    // locations named on the standard input stream, one per line, and the
+    // overall time taken.
+    public static void main(String[] args) {
+	if (args.length < 2 || args.length > 3) {
+	    System.err.println("Usage:  java Isochrone <map file> <budget> [threads]");
+	    return;
+	}
+	CompactMap graph = MapFile.read(args[0]);
+	if (graph == null) {
+	    System.err.println("Error:  Unable to read map.");
+	    return;
+	}
+	double budget = Double.parseDouble(args[1]);
+	int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+	List<Integer> sources = new ArrayList<Integer>();
+	try {
+	    BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+	    String line;
+	    while ((line = in.readLine()) != null) {
+		line = line.trim();
+		if (line.isEmpty())
+		    continue;
+		int node = graph.nodeOf(line);
+		if (node < 0)
+		    System.err.printf("The location, %s, is not known.\n", line);
+		else
+		    sources.add(node);
+	    }
+	} catch (IOException e) {
+	    // Something went wrong ...
+	    System.err.println("Error:  Unable to read locations.");
+	    return;
+	}
+	int[] nodes = new int[sources.size()];
+	for (int i = 0; i < nodes.length; i++)
+	    nodes[i] = sources.get(i);
+	long start = System.nanoTime();
+	Isochrone[] result = computeAll(graph, nodes, budget, threads);
+	double seconds = (System.nanoTime() - start) / 1e9;
+	for (Isochrone iso : result)
+	    System.out.printf("%s %d\n", graph.locationName(iso.source()), iso.size());
+	System.err.printf("%d isochrones in %.3f seconds on %d threads.\n", result.length, seconds, threads);
+    }
+
+}
@@ -0,0 +1,407 @@
+//
+// LandmarkHeuristic
+//
+// This class extends the Heuristic class with an "ALT" (A*, landmarks, and
+// the triangle inequality) heuristic function.  A small number of locations
+// on the map are chosen as "landmarks", and the cost of the shortest path
+// from every landmark to every location, and from every location to every
+// landmark, is computed in advance.  For any landmark L, location v, and
+// destination t, the triangle inequality gives two lower bounds on the cost
+// of the shortest path from v to t:  d(L,t) - d(L,v) and d(v,L) - d(t,L).
+// The heuristic value of v is the largest of these bounds over all of the
+// landmarks (or zero, if they are all negative).  This value is admissible
+// and consistent, and, unlike a bound based on straight-line distance and
+// the fastest road on the map, it reflects the actual road network.
+//
+// Landmarks work best when they lie at the edges of the map, "behind" the
+// locations being searched between.  Three ways of choosing them are
+// provided:  choosing locations at random, choosing each landmark to be the
+// location farthest (by shortest path) from the landmarks chosen so far,
+// and dividing the map into equal sectors around its center and choosing
+// the location farthest from the center in each sector.  The shortest path
+// costs are found by uniform-cost searches from every landmark, along roads
+// and against them, run in parallel on a pool of threads.
+//
+// The table of shortest path costs may be written to a file and read back
+// in, in the same little-endian layout used by the MapFile class, so that
+// the preprocessing need only be done once for a given map.  A table that
+// is read back in is memory-mapped rather than copied.  The file records a
+// fingerprint of the road costs, and a table whose fingerprint does not
+// match the map is not used.  The "main" method builds such a file for a
+// binary map file.
+//
+
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.*;
+
+
+enum LandmarkSelection { random, farthest, planar }
+
+
+public class LandmarkHeuristic extends Heuristic {
+    static final int MAGIC = 0x4d4c4d43;    // "CMLM"
+    static final int VERSION = 2;
+
+    CompactMap graph;
+    int[] landmarks;
+    DoubleBuffer[] fromLandmark;    // d(L,v), indexed by landmark, then node
+    DoubleBuffer[] toLandmark;      // d(v,L), indexed by landmark, then node
+    int target;
+
+    // Constructor with compact map and landmark tables specified ...
+    LandmarkHeuristic(CompactMap graph, int[] landmarks, DoubleBuffer[] fromLandmark, DoubleBuffer[] toLandmark) {
+	this.graph = graph;
+	this.landmarks = landmarks;
+	this.fromLandmark = fromLandmark;
+	this.toLandmark = toLandmark;
+	this.target = -1;
+    }
+
+    // isAdmissible -- Return true if this heuristic function is still
+    // admissible on the given version of its compact map, which is the
+    // case if no road costs less there than it did when the landmark
+    // distances were found.  (Roads that cost more only make the bounds
+    // less tight.)
+    public boolean isAdmissible(CompactMap current) {
+	return (current.costsAtLeast(graph));
+    }
+
+    // landmarkCount -- Return the number of landmarks.
+    public int landmarkCount() {
+	return (landmarks.length);
+    }
+
+    // setDestination -- Set the destination location to be used by this
+    // heuristic function to the given location, which must be on the map.
+    public void setDestination(Location destination) {
+	super.setDestination(destination);
+	target = (destination == null) ? -1 : nodeOf(destination);
+    }
+
+    // nodeOf -- Return the node id of the given location, which is its
+    // location id if it has one.
+    int nodeOf(Location loc) {
+	if (loc.id >= 0 && loc.id < graph.nodeCount())
+	    return (loc.id);
+	return (graph.nodeOf(loc.name));
+    }
+
+    // heuristicFunction -- Return the landmark bound on the cost of the
+    // shortest path from the location of the given search tree node to the
+    // destination.
+    public double heuristicFunction(Waypoint wp) {
+	return (bound(nodeOf(wp.loc), target));
+    }
+
+    // heuristicFunction -- Return the landmark bound on the cost of the
+    // shortest path from the given node to the destination.
+    public double heuristicFunction(CompactMap graph, int node) {
+	return (bound(node, target));
+    }
+
+    // bound -- Return the largest lower bound on the cost of the shortest
+    // path from node v to node t given by the triangle inequality.  Bounds
+    // involving a landmark that cannot be reached, or cannot be left, are
+    // not used.
+    public double bound(int v, int t) {
+	if (v < 0 || t < 0)
+	    return (0.0);
+	double best = 0.0;
+	for (int i = 0; i < landmarks.length; i++) {
+	    double a = fromLandmark[i].get(t) - fromLandmark[i].get(v);
+	    double b = toLandmark[i].get(v) - toLandmark[i].get(t);
+	    if (a > best && a < Double.POSITIVE_INFINITY)
+		best = a;
+	    if (b > best && b < Double.POSITIVE_INFINITY)
+		best = b;
+	}
+	return (best);
+    }
+
+    // build -- Choose the given number of landmarks on the given compact map,
+    // in the given way, and compute their tables of shortest path costs,
+    // using the given number of threads.  The seed is used for any random
+    // choices.
+    public static LandmarkHeuristic build(CompactMap graph, int count, LandmarkSelection how, int threads, long seed) {
+	count = Math.min(count, graph.nodeCount());
+	ReverseGraph reverse = new ReverseGraph(graph);
+	ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+	try {
+	    int[] landmarks;
+	    double[][] from;
+	    Random rand = new Random(seed);
+	    switch (how) {
+		case farthest:
+		    landmarks = new int[count];
+		    from = new double[count][];
+		    // Each choice depends on the last, so these searches are not
+		    // run in parallel ...
+		    double[] nearest = new double[graph.nodeCount()];
+		    Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+		    int next = (count > 0) ? rand.nextInt(graph.nodeCount()) : -1;
+		    for (int i = 0; i < count; i++) {
+			landmarks[i] = next;
+			from[i] = shortestPaths(graph, null, next);
+			next = -1;
+			for (int n = 0; n < graph.nodeCount(); n++) {
+			    if (from[i][n] < nearest[n])
+				nearest[n] = from[i][n];
+			    // Prefer reachable locations that are far away, and
+			    // otherwise locations that no landmark reaches ...
+			    if (next < 0 || farther(nearest[n], nearest[next]))
+				next = n;
+			}
+		    }
+		    break;
+		case planar:
+		    landmarks = planarLandmarks(graph, count);
+		    from = parallelShortestPaths(pool, graph, null, landmarks);
+		    break;
+		default:
+		    landmarks = randomLandmarks(graph, count, rand);
+		    from = parallelShortestPaths(pool, graph, null, landmarks);
+		    break;
+	    }
+	    double[][] to = parallelShortestPaths(pool, graph, reverse, landmarks);
+	    DoubleBuffer[] fromBuffers = new DoubleBuffer[landmarks.length];
+	    DoubleBuffer[] toBuffers = new DoubleBuffer[landmarks.length];
+	    for (int i = 0; i < landmarks.length; i++) {
+		fromBuffers[i] = DoubleBuffer.wrap(from[i]);
+		toBuffers[i] = DoubleBuffer.wrap(to[i]);
+	    }
+	    return (new LandmarkHeuristic(graph, landmarks, fromBuffers, toBuffers));
+	} finally {
+	    pool.shutdown();
+	}
+    }
+
+    // farther -- Return true if and only if a location with the first
+    // distance to its nearest landmark is a better next landmark than one
+    // with the second.
+    static boolean farther(double d1, double d2) {
+	if (d1 == Double.POSITIVE_INFINITY || d2 == Double.POSITIVE_INFINITY)
+	    return (d1 == Double.POSITIVE_INFINITY && d2 != Double.POSITIVE_INFINITY);
+	return (d1 > d2);
+    }
+
+    // randomLandmarks -- Return the given number of distinct nodes of the
+    // given map, chosen at random.
+    static int[] randomLandmarks(CompactMap graph, int count, Random rand) {
+	int[] nodes = new int[graph.nodeCount()];
+	for (int n = 0; n < nodes.length; n++)
+	    nodes[n] = n;
+	for (int i = 0; i < count; i++) {
+	    int j = i + rand.nextInt(nodes.length - i);
+	    int swap = nodes[i];
+	    nodes[i] = nodes[j];
+	    nodes[j] = swap;
+	}
+	return (Arrays.copyOf(nodes, count));
+    }
+
+    // planarLandmarks -- Divide the given map into the given number of equal
+    // sectors around the center of its bounding box, and return the node in
+    // each sector that lies farthest from the center.  Sectors holding no
+    // nodes get no landmark.
+    static int[] planarLandmarks(CompactMap graph, int count) {
+	double minLon = Double.POSITIVE_INFINITY, maxLon = Double.NEGATIVE_INFINITY;
+	double minLat = Double.POSITIVE_INFINITY, maxLat = Double.NEGATIVE_INFINITY;
+	for (int n = 0; n < graph.nodeCount(); n++) {
+	    minLon = Math.min(minLon, graph.longitude(n));
+	    maxLon = Math.max(maxLon, graph.longitude(n));
+	    minLat = Math.min(minLat, graph.latitude(n));
+	    maxLat = Math.max(maxLat, graph.latitude(n));
+	}
+	double centerLon = (minLon + maxLon) / 2.0;
+	double centerLat = (minLat + maxLat) / 2.0;
+	int[] best = new int[count];
+	double[] bestDistance = new double[count];
+	Arrays.fill(best, -1);
+	for (int n = 0; n < graph.nodeCount(); n++) {
+	    double lon = graph.longitude(n) - centerLon;
+	    double lat = graph.latitude(n) - centerLat;
+	    double angle = Math.atan2(lat, lon) + Math.PI;
+	    int sector = Math.min(count - 1, (int) (angle / (2.0 * Math.PI) * count));
+	    double d = lon * lon + lat * lat;
+	    if (best[sector] < 0 || d > bestDistance[sector]) {
+		best[sector] = n;
+		bestDistance[sector] = d;
+	    }
+	}
+	int k = 0;
+	for (int i = 0; i < count; i++)
+	    if (best[i] >= 0)
+		best[k++] = best[i];
+	return (Arrays.copyOf(best, k));
+    }
+
+    // parallelShortestPaths -- Return the shortest path costs from each of
+    // the given source nodes, searching the given pool of threads.  If a
+    // reverse graph is given, the costs are those of paths to the sources.
+    static double[][] parallelShortestPaths(ExecutorService pool, final CompactMap graph, final ReverseGraph reverse,
+					    int[] sources) {
+	List<Future<double[]>> results = new ArrayList<Future<double[]>>();
+	for (final int source : sources)
+	    results.add(pool.submit(() -> shortestPaths(graph, reverse, source)));
+	double[][] costs = new double[sources.length][];
+	try {
+	    for (int i = 0; i < sources.length; i++)
+		costs[i] = results.get(i).get();
+	} catch (InterruptedException | ExecutionException e) {
+	    throw new IllegalStateException("Landmark search failed.", e);
+	}
+	return (costs);
+    }
+
+    // shortestPaths -- Return the cost of the shortest path from the given
+    // source node to every node of the given map, found by a uniform-cost
+    // search, with infinity for nodes that cannot be reached.  If a reverse
+    // graph is given, roads are followed backward, giving the cost of the
+    // shortest path from every node to the source instead.
+    static double[] shortestPaths(CompactMap graph, ReverseGraph reverse, int source) {
+	double[] g = new double[graph.nodeCount()];
+	Arrays.fill(g, Double.POSITIVE_INFINITY);
+	boolean[] closed = new boolean[graph.nodeCount()];
+	HeapFrontier frontier = new HeapFrontier(graph.nodeCount());
+	g[source] = 0.0;
+	frontier.add(source, 0.0);
+	while (!frontier.isEmpty()) {
+	    int u = frontier.removeTop();
+	    closed[u] = true;
+	    int begin = (reverse == null) ? graph.firstRoad(u) : reverse.firstRoad(u);
+	    int end = (reverse == null) ? graph.endRoad(u) : reverse.endRoad(u);
+	    for (int i = begin; i < end; i++) {
+		int e = (reverse == null) ? i : reverse.road(i);
+		int v = (reverse == null) ? graph.target(e) : reverse.source(i);
+		double d = g[u] + graph.cost(e);
+		if (closed[v] || d >= g[v])
+		    continue;
+		if (g[v] == Double.POSITIVE_INFINITY)
+		    frontier.add(v, d);
+		else
+		    frontier.decreaseKey(v, d);
+		g[v] = d;
+	    }
+	}
+	return (g);
+    }
+
+    // write -- Write the landmarks and their tables of shortest path costs
+    // to the given file.  Return false on error.
+    public boolean write(String filename) {
+	try (RandomAccessFile file = new RandomAccessFile(filename, "rw")) {
+	    file.setLength(0);
+	    MapFile out = new MapFile(file.getChannel());
+	    out.putInt(MAGIC);
+	    out.putInt(VERSION);
+	    out.putInt(graph.nodeCount());
+	    out.putInt(graph.roadCount());
+	    out.putInt(landmarks.length);
+	    out.putInt(0);
+	    out.putLong(graph.costFingerprint());
+	    for (int landmark : landmarks)
+		out.putInt(landmark);
+	    out.align();
+	    for (int i = 0; i < landmarks.length; i++) {
+		for (int n = 0; n < graph.nodeCount(); n++)
+		    out.putDouble(fromLandmark[i].get(n));
+		for (int n = 0; n < graph.nodeCount(); n++)
+		    out.putDouble(toLandmark[i].get(n));
+	    }
+	    out.flush();
+	    return (true);
+	} catch (IOException e) {
+	    // Something went wrong ...
+	    return (false);
+	}
+    }
+
+    // read -- Memory-map a landmark table for the given compact map from the
+    // given file, written by the "write" method, and return a heuristic
+    // function that refers to it.  Return null on error, including when the
+    // file was written for a different map, or for other road costs, since
+    // its bounds might then not be admissible.
+    public static LandmarkHeuristic read(CompactMap graph, String filename) {
+	try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
+	    FileChannel ch = file.getChannel();
+	    ByteBuffer in = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()).order(ByteOrder.LITTLE_ENDIAN);
+	    if (in.getInt() != MAGIC || in.getInt() != VERSION)
+		return (null);
+	    int n = in.getInt();
+	    if (n != graph.nodeCount() || in.getInt() != graph.roadCount())
+		return (null);
+	    int count = in.getInt();
+	    in.getInt();  // Padding ...
+	    if (in.getLong() != graph.costFingerprint())
+		return (null);
+	    int[] landmarks = new int[count];
+	    for (int i = 0; i < count; i++)
+		landmarks[i] = in.getInt();
+	    long base = (in.position() + 7) & ~7;
+	    if (base + 16L * count * n > in.limit())
+		return (null);
+	    DoubleBuffer[] from = new DoubleBuffer[count];
+	    DoubleBuffer[] to = new DoubleBuffer[count];
+	    for (int i = 0; i < count; i++) {
+		from[i] = section(in, base + 8L * n * (2 * i), n);
+		to[i] = section(in, base + 8L * n * (2 * i + 1), n);
+	    }
+	    return (new LandmarkHeuristic(graph, landmarks, from, to));
+	} catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+	    // Something went wrong ...
+	    return (null);
+	}
+    }
+
+    // section -- Return a view of the given number of doubles in the given
+    // buffer, starting at the given byte offset.
+    static DoubleBuffer section(ByteBuffer in, long offset, int count) {
+	ByteBuffer view = in.duplicate();
+	view.position((int) offset);
+	view.limit((int) offset + 8 * count);
+	return (view.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer());
+    }
+
+    // load -- Read the landmark table for the given compact map from the
+    // given file, or, if that cannot be done (or the table in the file was
+    // computed for other road costs), build a table with the given number
+    // of landmarks chosen in the given way, using one thread per processor,
+    // and write it to the file for next time.
+    public static LandmarkHeuristic load(CompactMap graph, String filename, int count, LandmarkSelection how) {
+	LandmarkHeuristic h = read(graph, filename);
+	if (h == null) {
+	    h = build(graph, count, how, Runtime.getRuntime().availableProcessors(), 1);
+	    h.write(filename);
+	}
+	return (h);
+    }
+
+    // main -- Build a landmark table for the binary map file named on the
+    // command line, with the given number of landmarks chosen in the given
+    // way, and write it to the file also named there.
+    public static void main(String[] args) {
+	if (args.length < 3 || args.length > 4) {
+	    System.err.println("Usage:  java LandmarkHeuristic <map file> <landmark file> <count> [random|farthest|planar]");
+	    return;
+	}
+	CompactMap graph = MapFile.read(args[0]);
+	if (graph == null) {
+	    System.err.println("Error:  Unable to read map.");
+	    return;
+	}
+	try {
+	    int count = Integer.parseInt(args[2]);
+	    LandmarkSelection how = (args.length > 3) ? LandmarkSelection.valueOf(args[3]) : LandmarkSelection.farthest;
+	    LandmarkHeuristic h = build(graph, count, how, Runtime.getRuntime().availableProcessors(), 1);
+	    if (!h.write(args[1]))
+		System.err.println("Error:  Unable to write landmark table.");
+	} catch (IllegalArgumentException e) {
+	    System.err.println("Error:  Bad landmark count or selection.");
+	}
+    }
+
+}
@@ -13,7 +13,30 @@
 // their being read and parsed.  The map is stored as a collection of 
 // Location objects, with each Location being given the responsibility of
 // maintaining all of the Road objects corresponding to road segments leading
-// out of it.
+// out of it.  A hash index from location names to Location objects is kept
+// alongside the collection of locations, so that locations can be found by
+// name in constant time while roads are being read.  Alternatively, a map
+// may be read from a binary map file (see MapFile), in which case the map
+// is held only as a memory-mapped CompactMap, and Location objects are
+// created from it as they are looked up by name.  Since each Location only
+// records the roads leading out of it, the Map also provides a reverse view
+// of the roads leading into each location, built from the CompactMap the
+// first time that it is needed.  Statistics of the whole map that heuristic
+// functions depend upon, such as the speed of the fastest road, are found
+// once and kept until the map changes.
+//
+// The costs of roads may be changed in place, as traffic changes, by
+// applying a batch of cost updates, without reading the map again.  Each
+// batch publishes a new version of the compact view (see CompactMap), so
+// a search of the compact view, which fetches the view once, sees the
+// costs either entirely before or entirely after any batch.  The costs of
+// the Road objects themselves are changed as well, so a search of the Map
+// itself that runs while a batch is applied may see some of its changes
+// but not others.  The speed of the fastest road is repaired as costs
+// change, rather than found again from scratch.  Lastly, a spatial index of
+// the coordinates of the locations (see SpatialIndex) is built the first
+// time that it is needed, so that a point given by its coordinates can be
+// matched to the nearest location on the map.
 //
 // David Noelle -- Sun Feb 11 18:05:18 PST 2007
 //
@@ -27,10 +50,18 @@ public class Map {
     String locationFilename = "locations.dat";
     String roadFilename = "roads.dat";
     List<Location> locations;
+    HashMap<String, Location> locationIndex;
+    volatile CompactMap compactMap;
+    List<List<Road>> incoming;
+    CompactMap incomingSource;
+    double maxSpeed;
+    CompactMap maxSpeedSource;
+    volatile SpatialIndex spatialIndex;
 
     // Default constructor ...
     public Map() {
 		this.locations = new ArrayList<Location>();
+		this.locationIndex = new HashMap<String, Location>();
     }
 
     // Constructor with filenames specified ...
@@ -75,21 +106,35 @@ public class Map {
 		return (true);
     }
 
-    // findLocation -- Search through the collection of locations on this map
-    // for one with the given textual name.  Return a reference to the
+    // findLocation -- Look up the location on this map with the given
+    // textual name, using the name index.  Return a reference to the
     // corresponding Location object, or null if no such location is found.
+    // For a map read from a binary map file, the location is looked up in
+    // the compact map instead.
     public Location findLocation(String name) {
-		for (Location loc : locations) {
-	    	if (loc.name.equals(name))
-				return (loc);
+		if (name == null)
+	    	return (null);
+		Location loc = locationIndex.get(name);
+		if (loc == null && compactMap != null && compactMap.isMapped()) {
+	    	int node = compactMap.nodeOf(name);
+	    	if (node >= 0)
+				loc = compactMap.location(node);
 		}
-		return (null);
+		return (loc);
     }
 
     // recordLocation -- Add the given Location object to the collection of
-    // locations for this map.
+    // locations for this map, and enter it into the name index.  Since
+    // location names are assumed to be unique, but should they repeat, the
+    // index keeps the first location with a given name, which is the one
+    // that a search of the collection in order would find.  The location
+    // is given an integer id equal to its position in the collection.
     public void recordLocation(Location loc) {
+		loc.id = locations.size();
 		locations.add(loc);
+		locationIndex.putIfAbsent(loc.name, loc);
+		compactMap = null;
+		spatialIndex = null;
     }
 
     // readLocations -- Attempt to open the location file specified by the
@@ -155,6 +200,7 @@ public class Map {
 		    		}
 		    		// Record the road in the appropriate location ...
 		    		r.fromLocation.recordRoad(r);
+		    		compactMap = null;
 		    		// Allocate storage for the next road segment ...
 		    		r = new Road();
 				}
@@ -169,6 +215,217 @@ public class Map {
 		}
     }
 
+    // readLocations -- As above, but split the location file into chunks
+    // that are parsed by the given number of threads (see MapLoader).  The
+    // result is the same as that of the single-threaded method.
+    public boolean readLocations(int threads) {
+		return (new MapLoader(this, threads).readLocations(locationFilename));
+    }
+
+    // readRoads -- As above, but split the road file into chunks that are
+    // parsed by the given number of threads (see MapLoader).  The result is
+    // the same as that of the single-threaded method.
+    public boolean readRoads(int threads) {
+		return (new MapLoader(this, threads).readRoads(roadFilename));
+    }
+
+    // readBinaryMap -- Memory-map the given binary map file, written by the
+    // MapFile class, and use it as the contents of this map.  Any locations
+    // and roads previously read into this map are forgotten.  Return false
+    // on error.
+    public boolean readBinaryMap(String filename) {
+		CompactMap mapped = MapFile.read(filename);
+		if (mapped == null)
+	    	return (false);
+		locations.clear();
+		locationIndex.clear();
+		synchronized (this) {
+	    	compactMap = mapped;
+	    	spatialIndex = null;
+		}
+		return (true);
+    }
+
+    // compact -- Return a frozen CompactMap view of this map, building it
+    // the first time that it is requested.  The view is discarded, and
+    // rebuilt on the next request, whenever locations or roads are read
+    // into this map, and a new version replaces it whenever the costs of
+    // roads are changed.  Once built, the view is returned without locking.
+    public CompactMap compact() {
+		CompactMap graph = compactMap;
+		if (graph != null)
+	    	return (graph);
+		synchronized (this) {
+	    	if (compactMap == null)
+				compactMap = new CompactMap(this);
+	    	return (compactMap);
+		}
+    }
+
+    // spatialIndex -- Return the spatial index of the locations on this map,
+    // building it the first time that it is requested.  It is rebuilt only
+    // when locations are read into this map, not when costs change.
+    public SpatialIndex spatialIndex() {
+		SpatialIndex index = spatialIndex;
+		if (index != null)
+	    	return (index);
+		synchronized (this) {
+	    	if (spatialIndex == null)
+				spatialIndex = new SpatialIndex(compact());
+	    	return (spatialIndex);
+		}
+    }
+
+    // nearestLocation -- Return the location on this map nearest to the
+    // given coordinates, or null if the map has no locations.
+    public Location nearestLocation(double longitude, double latitude) {
+		int node = spatialIndex().nearest(longitude, latitude);
+		return ((node < 0) ? null : compact().location(node));
+    }
+
+    // updateCosts -- Apply the given batch of cost updates to this map,
+    // changing the cost of every road leading directly from the "from"
+    // location of an update to its "to" location, and publish a new version
+    // of the compact view with the new costs.  Updates naming locations
+    // that are not on the map, or that are not joined by a road, are
+    // ignored.  Return the number of updates applied.
+    public synchronized int updateCosts(List<CostUpdate> updates) {
+		CompactMap graph = compact();
+		int[] ids = new int[updates.size()];
+		double[] costs = new double[updates.size()];
+		int count = 0;
+		int applied = 0;
+		for (CostUpdate u : updates) {
+	    	int from = graph.nodeOf(u.fromLocationName);
+	    	int to = graph.nodeOf(u.toLocationName);
+	    	if (from < 0 || to < 0)
+				continue;
+	    	boolean found = false;
+	    	for (int e = graph.firstRoad(from); e < graph.endRoad(from); e++) {
+				if (graph.target(e) == to) {
+		    		if (count == ids.length) {
+						ids = Arrays.copyOf(ids, 2 * count);
+						costs = Arrays.copyOf(costs, 2 * count);
+		    		}
+		    		ids[count] = e;
+		    		costs[count] = u.cost;
+		    		count++;
+		    		found = true;
+				}
+	    	}
+	    	if (found)
+				applied++;
+		}
+		if (count == 0)
+	    	return (0);
+		CompactMap next = graph.withCosts(Arrays.copyOf(ids, count), Arrays.copyOf(costs, count));
+		if (!graph.isMapped()) {
+	    	// Change the Road objects, repairing the fastest road speed ...
+	    	boolean slower = false;
+	    	for (int k = 0; k < count; k++) {
+				Road r = graph.road(ids[k]);
+				double before = speed(r);
+				r.cost = costs[k];
+				double after = speed(r);
+				if (after > maxSpeed)
+		    		maxSpeed = after;
+				else if (before >= maxSpeed && after < maxSpeed)
+		    		slower = true;
+	    	}
+	    	maxSpeedSource = (maxSpeedSource == graph && !slower) ? next : null;
+		}
+		// The roads themselves have not changed, so neither has the reverse
+		// index ...
+		if (incomingSource == graph)
+	    	incomingSource = next;
+		compactMap = next;
+		return (applied);
+    }
+
+    // updateCosts -- Read cost updates from the given stream, one per line,
+    // until the end of the stream or a line that cannot be read, applying
+    // them in batches of the given size.  Return the number of updates
+    // applied.
+    public int updateCosts(BufferedReader str, int batchSize) {
+		List<CostUpdate> batch = new ArrayList<CostUpdate>();
+		int applied = 0;
+		CostUpdate u = new CostUpdate();
+		while (u.read(str)) {
+	    	batch.add(u);
+	    	if (batch.size() >= batchSize) {
+				applied += updateCosts(batch);
+				batch.clear();
+	    	}
+	    	u = new CostUpdate();
+		}
+		if (!batch.isEmpty())
+	    	applied += updateCosts(batch);
+		return (applied);
+    }
+
+    // incomingRoads -- Return the list of roads leading into the given
+    // location, which must belong to this map.  The lists of incoming roads
+    // are indexed by location id, and they are built from the compact view
+    // of this map, so they are rebuilt along with that view whenever
+    // locations or roads are read into this map.
+    public List<Road> incomingRoads(Location loc) {
+		List<List<Road>> index = reverseIndex();
+		if (loc.id < 0 || loc.id >= index.size())
+	    	return (Collections.<Road>emptyList());
+		return (index.get(loc.id));
+    }
+
+    // reverseIndex -- Return the incoming roads of every location, indexed
+    // by location id, building them if the compact view has changed.
+    synchronized List<List<Road>> reverseIndex() {
+		CompactMap graph = compact();
+		if (incoming == null || incomingSource != graph) {
+	    	List<List<Road>> index = new ArrayList<List<Road>>(graph.nodeCount());
+	    	int[] inDegree = new int[graph.nodeCount()];
+	    	for (int e = 0; e < graph.roadCount(); e++)
+				inDegree[graph.target(e)]++;
+	    	for (int node = 0; node < graph.nodeCount(); node++)
+				index.add(new ArrayList<Road>(inDegree[node]));
+	    	for (int e = 0; e < graph.roadCount(); e++)
+				index.get(graph.target(e)).add(graph.road(e));
+	    	incoming = index;
+	    	incomingSource = graph;
+		}
+		return (incoming);
+    }
+
+    // maxRoadSpeed -- Return the greatest ratio of straight-line distance to
+    // cost over all of the roads on this map, finding it again only if the
+    // compact view has changed since it was last found.  A map read from a
+    // binary map file has no Location objects of its own, so the compact
+    // view, which keeps its own fastest road speed, is asked instead.
+    public synchronized double maxRoadSpeed() {
+		CompactMap graph = compact();
+		if (graph.isMapped())
+	    	return (graph.maxRoadSpeed());
+		if (maxSpeedSource != graph) {
+	    	double best = 0.0;
+	    	for (Location loc : locations) {
+				for (Road r : loc.roads) {
+		    		double speed = speed(r);
+		    		if (speed > best)
+						best = speed;
+				}
+	    	}
+	    	maxSpeed = best;
+	    	maxSpeedSource = graph;
+		}
+		return (maxSpeed);
+    }
+
+    // speed -- Return the ratio of the straight-line distance between the
+    // ends of the given road to its cost.
+    static double speed(Road r) {
+		double lon = r.fromLocation.longitude - r.toLocation.longitude;
+		double lat = r.fromLocation.latitude - r.toLocation.latitude;
+		return (Math.sqrt(lon * lon + lat * lat) / r.cost);
+    }
+
     // readMap -- Prompt the user for the pathnames of a location file and
     // a road file, and then read those files into this Map object.  Return
     // false on error.
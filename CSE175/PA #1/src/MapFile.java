@@ -0,0 +1,286 @@
+//
+// MapFile
+//
+// This class converts maps between the textual location and road files read
+// by the Map class and a single binary map file, and it reads binary map
+// files back in as CompactMap objects.  A binary map file is not parsed when
+// it is read.  Instead, each section of the file is memory-mapped, and the
+// resulting CompactMap refers directly to the mapped pages.  Reading even a
+// very large map thus takes only as long as a few system calls, and all of
+// the processes that read the same map file share a single copy of it in
+// the operating system's page cache.
+//
+// A binary map file begins with a fixed header:  a magic number, a version
+// number, the number of locations, the number of roads, and the number of
+// distinct road names, followed by the byte offset and byte length of each
+// of the sections listed below.  All values are little-endian, and every
+// section begins on an eight byte boundary.  The sections are, in order:
+// the road offsets of each location (int), the destination location of each
+// road (int), the cost of each road (double), the two coordinates of each
+// location (float), the offsets of location names in the location name
+// bytes (int), the UTF-8 location name bytes, the location ids sorted by
+// name (int), the name id of each road (int), the offsets of road names in
+// the road name bytes (int), and the UTF-8 road name bytes.
+//
+// The "main" method provides a one-time converter:  given the pathnames of
+// a location file, a road file, and a binary map file, it reads the first
+// two and writes the third.
+//
+
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+
+public class MapFile {
+    static final int MAGIC = 0x50414d43;    // "CMAP"
+    static final int VERSION = 1;
+    static final int SECTIONS = 11;
+    static final int HEADER_SIZE = 24 + 16 * SECTIONS;
+
+    FileChannel channel;
+    ByteBuffer buffer;
+    long position;
+
+    // Constructor with output channel specified ...
+    MapFile(FileChannel channel) {
+	this.channel = channel;
+	this.buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+	this.position = 0;
+    }
+
+    // convert -- Read a map from the given location file and road file, and
+    // write it to the given binary map file.  Return false on error.
+    public static boolean convert(String locationFilename, String roadFilename, String mapFilename) {
+	Map graph = new Map(locationFilename, roadFilename);
+	if (!(graph.readLocations() && graph.readRoads()))
+	    return (false);
+	return (write(graph.compact(), mapFilename));
+    }
+
+    // write -- Write the given compact map to the given binary map file.
+    // Return false on error.
+    public static boolean write(CompactMap graph, String filename) {
+	try (RandomAccessFile file = new RandomAccessFile(filename, "rw")) {
+	    file.setLength(0);
+	    MapFile out = new MapFile(file.getChannel());
+	    out.writeSections(graph);
+	    return (true);
+	} catch (IOException e) {
+	    // Something went wrong ...
+	    return (false);
+	}
+    }
+
+    // read -- Memory-map the given binary map file, and return a CompactMap
+    // that refers to its contents.  Return null on error.
+    public static CompactMap read(String filename) {
+	try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
+	    FileChannel ch = file.getChannel();
+	    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+	    while (header.hasRemaining())
+		if (ch.read(header, header.position()) < 0)
+		    return (null);
+	    header.flip();
+	    if (header.getInt() != MAGIC || header.getInt() != VERSION)
+		return (null);
+	    CompactMap graph = new CompactMap();
+	    graph.nodeCount = header.getInt();
+	    graph.roadCount = header.getInt();
+	    header.getInt();  // Number of road names ...
+	    header.getInt();  // Padding ...
+	    ByteBuffer[] section = new ByteBuffer[SECTIONS];
+	    for (int i = 0; i < SECTIONS; i++) {
+		long offset = header.getLong();
+		long length = header.getLong();
+		section[i] = ch.map(FileChannel.MapMode.READ_ONLY, offset, length).order(ByteOrder.LITTLE_ENDIAN);
+	    }
+	    graph.offsets = section[0].asIntBuffer();
+	    graph.targets = section[1].asIntBuffer();
+	    graph.costs = section[2].asDoubleBuffer();
+	    graph.longitudes = section[3].asFloatBuffer();
+	    graph.latitudes = section[4].asFloatBuffer();
+	    graph.locationNameOffsets = section[5].asIntBuffer();
+	    graph.locationNames = section[6];
+	    graph.sortedNodes = section[7].asIntBuffer();
+	    graph.roadNameIds = section[8].asIntBuffer();
+	    graph.roadNameOffsets = section[9].asIntBuffer();
+	    graph.roadNames = section[10];
+	    return (graph);
+	} catch (IOException | IllegalArgumentException e) {
+	    // Something went wrong ...
+	    return (null);
+	}
+    }
+
+    // writeSections -- Write the header and every section of the binary
+    // map file for the given compact map.
+    void writeSections(CompactMap graph) throws IOException {
+	int n = graph.nodeCount;
+	int m = graph.roadCount;
+	long[] offset = new long[SECTIONS];
+	long[] length = new long[SECTIONS];
+	// Collect location names ...
+	byte[][] locationNames = new byte[n][];
+	for (int i = 0; i < n; i++)
+	    locationNames[i] = graph.locationName(i).getBytes(StandardCharsets.UTF_8);
+	// Collect distinct road names ...
+	HashMap<String, Integer> roadNameIndex = new HashMap<String, Integer>();
+	List<byte[]> roadNames = new ArrayList<byte[]>();
+	int[] roadNameIds = new int[m];
+	for (int e = 0; e < m; e++) {
+	    String name = graph.roadName(e);
+	    Integer id = roadNameIndex.get(name);
+	    if (id == null) {
+		id = roadNames.size();
+		roadNameIndex.put(name, id);
+		roadNames.add(name.getBytes(StandardCharsets.UTF_8));
+	    }
+	    roadNameIds[e] = id;
+	}
+	// Sort location ids by name ...
+	Integer[] sorted = new Integer[n];
+	for (int i = 0; i < n; i++)
+	    sorted[i] = i;
+	Arrays.sort(sorted, (a, b) -> Arrays.compareUnsigned(locationNames[a], locationNames[b]));
+	// Write the sections, leaving room for the header ...
+	position = HEADER_SIZE;
+	offset[0] = align();
+	for (int i = 0; i <= n; i++)
+	    putInt(graph.offsets.get(i));
+	offset[1] = align();
+	for (int e = 0; e < m; e++)
+	    putInt(graph.targets.get(e));
+	offset[2] = align();
+	for (int e = 0; e < m; e++)
+	    putDouble(graph.cost(e));
+	offset[3] = align();
+	for (int i = 0; i < n; i++)
+	    putFloat(graph.longitudes.get(i));
+	offset[4] = align();
+	for (int i = 0; i < n; i++)
+	    putFloat(graph.latitudes.get(i));
+	offset[5] = align();
+	putOffsets(Arrays.asList(locationNames));
+	offset[6] = align();
+	for (byte[] name : locationNames)
+	    putBytes(name);
+	offset[7] = align();
+	for (int i = 0; i < n; i++)
+	    putInt(sorted[i]);
+	offset[8] = align();
+	for (int e = 0; e < m; e++)
+	    putInt(roadNameIds[e]);
+	offset[9] = align();
+	putOffsets(roadNames);
+	offset[10] = align();
+	for (byte[] name : roadNames)
+	    putBytes(name);
+	long end = align();
+	for (int i = 0; i < SECTIONS; i++)
+	    length[i] = ((i + 1 < SECTIONS) ? offset[i + 1] : end) - offset[i];
+	flush();
+	// Go back and fill in the header ...
+	position = 0;
+	putInt(MAGIC);
+	putInt(VERSION);
+	putInt(n);
+	putInt(m);
+	putInt(roadNames.size());
+	putInt(0);
+	for (int i = 0; i < SECTIONS; i++) {
+	    putLong(offset[i]);
+	    putLong(length[i]);
+	}
+	flush();
+    }
+
+    // putOffsets -- Write the starting offset of each of the given byte
+    // strings within their concatenation, followed by the total length.
+    void putOffsets(List<byte[]> strings) throws IOException {
+	long total = 0;
+	for (byte[] s : strings) {
+	    putInt((int) total);
+	    total += s.length;
+	}
+	if (total > Integer.MAX_VALUE)
+	    throw new IOException("Name table too large.");
+	putInt((int) total);
+    }
+
+    // align -- Pad the output to an eight byte boundary, and return the
+    // resulting file position.
+    long align() throws IOException {
+	while (((position + buffer.position()) & 7) != 0)
+	    putByte((byte) 0);
+	return (position + buffer.position());
+    }
+
+    // room -- Make sure that the output buffer has space for the given
+    // number of bytes.
+    void room(int bytes) throws IOException {
+	if (buffer.remaining() < bytes)
+	    flush();
+    }
+
+    // flush -- Write the contents of the output buffer to the file.
+    void flush() throws IOException {
+	buffer.flip();
+	while (buffer.hasRemaining())
+	    position += channel.write(buffer, position);
+	buffer.clear();
+    }
+
+    // putByte, putInt, putLong, putFloat, putDouble, putBytes -- Append the
+    // given value to the output buffer, in little-endian order.
+    void putByte(byte b) throws IOException {
+	room(1);
+	buffer.put(b);
+    }
+
+    void putInt(int i) throws IOException {
+	room(4);
+	buffer.putInt(i);
+    }
+
+    void putLong(long l) throws IOException {
+	room(8);
+	buffer.putLong(l);
+    }
+
+    void putFloat(float f) throws IOException {
+	room(4);
+	buffer.putFloat(f);
+    }
+
+    void putDouble(double d) throws IOException {
+	room(8);
+	buffer.putDouble(d);
+    }
+
+    void putBytes(byte[] bytes) throws IOException {
+	int i = 0;
+	while (i < bytes.length) {
+	    if (!buffer.hasRemaining())
+		flush();
+	    int k = Math.min(buffer.remaining(), bytes.length - i);
+	    buffer.put(bytes, i, k);
+	    i += k;
+	}
+    }
+
+    // main -- Convert a location file and a road file, named on the command
+    // line, into a binary map file, also named on the command line.
+    public static void main(String[] args) {
+	if (args.length != 3) {
+	    System.err.println("Usage:  java MapFile <location file> <road file> <map file>");
+	    return;
+	}
+	if (!convert(args[0], args[1], args[2]))
+	    System.err.println("Error:  Unable to convert map.");
+    }
+
+}
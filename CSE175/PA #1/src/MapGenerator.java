@@ -0,0 +1,328 @@
+//
+// MapGenerator
+//
+// This class writes synthetic maps, in the same location file and road file
+// formats that the Map class reads, for testing the searches on maps far
+// larger than the sample maps.  Three kinds of map may be generated:
+//
+//   grid -- Locations on a square lattice, each displaced a little at
+//     random, with roads in both directions between horizontal and vertical
+//     neighbors.
+//   planar -- The same locations, with the shorter diagonal of each square
+//     of the lattice added as well, which gives a planar triangulation much
+//     like the Delaunay triangulation of the locations.
+//   scalefree -- Locations scattered at random, joined by preferential
+//     attachment (the Barabasi-Albert model):  each new location is joined
+//     to a few existing ones, chosen with probability in proportion to the
+//     number of roads that they already have, so that a few "hub" locations
+//     end up with very many roads.
+//
+// Coordinates are in the units used by the sample maps, with neighboring
+// lattice locations about one unit apart.  Each road is a street, an
+// avenue, or a highway, with a speed chosen at random from a range for its
+// class, and its cost is the straight-line distance between its ends
+// divided by its speed.  On the lattice maps, every tenth row and column
+// is an avenue, and every fiftieth is a highway.  On the scale-free maps,
+// roads to hubs tend to be faster.
+//
+// The files are written as they are generated, without building a Map.  The
+// lattice maps need no memory beyond the output buffers:  the displacement
+// of each location and the speed of each road are computed from a hash of
+// the seed and the location ids, so they can be computed again whenever
+// they are needed.  The scale-free maps keep only the coordinates and
+// number of roads of each location, and the list of road ends from which
+// the preferential attachment samples, in primitive arrays.  The same seed
+// always produces the same map.  The "main" method writes a map to the
+// files named on the command line.
+//
+
+
+import java.io.*;
+import java.util.*;
+
+
+enum MapTopology { grid, planar, scalefree }
+
+
+public class MapGenerator {
+    static final double JITTER = 0.2;
+    static final double[] MIN_SPEED = { 0.6, 1.2, 2.4 };
+    static final double[] MAX_SPEED = { 1.0, 1.6, 3.0 };
+    static final String[] ROAD_CLASS = { "street", "avenue", "highway" };
+
+    MapTopology topology;
+    int nodes;
+    long seed;
+    int attachments;
+    int columns;
+    int rows;
+    long roadCount;
+    StringBuilder line;
+
+    // Constructor with topology, number of locations, and seed specified ...
+    // Lattice maps are rounded up to a whole number of rows.
+    public MapGenerator(MapTopology topology, int nodes, long seed) {
+	this.topology = topology;
+	this.seed = seed;
+	this.attachments = 3;
+	this.columns = (int) Math.ceil(Math.sqrt(nodes));
+	this.rows = (nodes + columns - 1) / columns;
+	this.nodes = (topology == MapTopology.scalefree) ? nodes : rows * columns;
+	this.line = new StringBuilder(64);
+    }
+
+    // setAttachments -- Set the number of existing locations to which each
+    // new location is joined on a scale-free map.
+    public void setAttachments(int attachments) {
+	this.attachments = Math.max(1, attachments);
+    }
+
+    // nodeCount -- Return the number of locations on the generated map.
+    public int nodeCount() {
+	return (nodes);
+    }
+
+    // roadCount -- Return the number of roads written by the last call of
+    // "write".
+    public long roadCount() {
+	return (roadCount);
+    }
+
+    // write -- Write the map to the given location file and road file.
+    // Return false on error.
+    public boolean write(String locationFilename, String roadFilename) {
+	try (Writer locations = new BufferedWriter(new FileWriter(locationFilename), 1 << 16);
+	     Writer roads = new BufferedWriter(new FileWriter(roadFilename), 1 << 16)) {
+	    write(locations, roads);
+	    return (true);
+	} catch (IOException e) {
+	    // Something went wrong ...
+	    return (false);
+	}
+    }
+
+    // write -- Write the map to the given streams, as a location file and
+    // a road file.
+    public void write(Writer locations, Writer roads) throws IOException {
+	roadCount = 0;
+	if (topology == MapTopology.scalefree)
+	    writeScaleFree(locations, roads);
+	else
+	    writeLattice(locations, roads);
+	locations.flush();
+	roads.flush();
+    }
+
+    // writeLattice -- Write a grid or planar map.
+    void writeLattice(Writer locations, Writer roads) throws IOException {
+	for (int i = 0; i < nodes; i++)
+	    writeLocation(locations, i, latticeX(i), latticeY(i));
+	boolean planar = (topology == MapTopology.planar);
+	for (int i = 0; i < nodes; i++) {
+	    int r = i / columns;
+	    int c = i % columns;
+	    // Horizontal roads take the class of their row, and vertical roads
+	    // take the class of their column ...
+	    if (c > 0)
+		writeLatticeRoad(roads, i, i - 1, lineClass(r));
+	    if (c + 1 < columns)
+		writeLatticeRoad(roads, i, i + 1, lineClass(r));
+	    if (r > 0)
+		writeLatticeRoad(roads, i, i - columns, lineClass(c));
+	    if (r + 1 < rows)
+		writeLatticeRoad(roads, i, i + columns, lineClass(c));
+	    if (planar) {
+		// Each square of the lattice is split along one diagonal, and
+		// this location is a corner of up to four squares ...
+		if (r > 0 && c > 0 && mainDiagonal(r - 1, c - 1))
+		    writeLatticeRoad(roads, i, i - columns - 1, 0);
+		if (r > 0 && c + 1 < columns && !mainDiagonal(r - 1, c))
+		    writeLatticeRoad(roads, i, i - columns + 1, 0);
+		if (r + 1 < rows && c > 0 && !mainDiagonal(r, c - 1))
+		    writeLatticeRoad(roads, i, i + columns - 1, 0);
+		if (r + 1 < rows && c + 1 < columns && mainDiagonal(r, c))
+		    writeLatticeRoad(roads, i, i + columns + 1, 0);
+	    }
+	}
+    }
+
+    // latticeX -- Return the first coordinate of the given lattice location.
+    double latticeX(int i) {
+	return ((i % columns) + JITTER * (2.0 * unit(hash(i, 0)) - 1.0));
+    }
+
+    // latticeY -- Return the second coordinate of the given lattice location.
+    double latticeY(int i) {
+	return ((i / columns) + JITTER * (2.0 * unit(hash(i, 1)) - 1.0));
+    }
+
+    // lineClass -- Return the class of the roads along the given row or
+    // column of the lattice.
+    static int lineClass(int line) {
+	if (line % 50 == 0)
+	    return (2);
+	if (line % 10 == 0)
+	    return (1);
+	return (0);
+    }
+
+    // mainDiagonal -- Return true if the square of the lattice with the
+    // given top left corner is split along the diagonal running from that
+    // corner, which is the case when it is the shorter diagonal.
+    boolean mainDiagonal(int r, int c) {
+	int a = r * columns + c;
+	int b = a + 1;
+	int d = a + columns;
+	int e = d + 1;
+	return (distance(latticeX(a), latticeY(a), latticeX(e), latticeY(e))
+		<= distance(latticeX(b), latticeY(b), latticeX(d), latticeY(d)));
+    }
+
+    // writeLatticeRoad -- Write the road from one lattice location to
+    // another, of the given class.
+    void writeLatticeRoad(Writer roads, int from, int to, int roadClass) throws IOException {
+	double length = distance(latticeX(from), latticeY(from), latticeX(to), latticeY(to));
+	writeRoad(roads, from, to, roadClass, length);
+    }
+
+    // writeScaleFree -- Write a scale-free map.  The "ends" array lists both
+    // ends of every road written so far (in one direction only), so that a
+    // location appears in it once for each of its roads, and sampling it
+    // uniformly samples locations in proportion to their number of roads.
+    // The "degree" array counts the roads of each location.
+    void writeScaleFree(Writer locations, Writer roads) throws IOException {
+	int m = Math.min(attachments, Math.max(1, nodes - 1));
+	int core = Math.min(nodes, m + 1);
+	double side = Math.sqrt(nodes);
+	float[] x = new float[nodes];
+	float[] y = new float[nodes];
+	int[] degree = new int[nodes];
+	int[] ends = new int[2 * (core * (core - 1) / 2 + m * Math.max(0, nodes - core))];
+	int endCount = 0;
+	SplittableRandom rand = new SplittableRandom(seed);
+	int[] chosen = new int[m];
+	for (int i = 0; i < nodes; i++) {
+	    x[i] = (float) (side * rand.nextDouble());
+	    y[i] = (float) (side * rand.nextDouble());
+	    writeLocation(locations, i, x[i], y[i]);
+	    int count;
+	    if (i < core) {
+		// The first few locations are all joined to one another ...
+		count = i;
+		for (int j = 0; j < i; j++)
+		    chosen[j] = j;
+	    } else {
+		// Choose distinct locations in proportion to their roads ...
+		count = 0;
+		while (count < m) {
+		    int j = ends[rand.nextInt(endCount)];
+		    boolean seen = false;
+		    for (int k = 0; k < count; k++)
+			seen = seen || (chosen[k] == j);
+		    if (!seen)
+			chosen[count++] = j;
+		}
+	    }
+	    for (int k = 0; k < count; k++) {
+		int j = chosen[k];
+		// Roads to locations that already have many roads are faster ...
+		int roadClass = (degree[j] >= 8 * m) ? 2 : ((degree[j] >= 2 * m) ? 1 : 0);
+		double length = distance(x[i], y[i], x[j], y[j]);
+		writeRoad(roads, i, j, roadClass, length);
+		writeRoad(roads, j, i, roadClass, length);
+		ends[endCount++] = i;
+		ends[endCount++] = j;
+		degree[i]++;
+		degree[j]++;
+	    }
+	}
+    }
+
+    // writeLocation -- Write a line of the location file.
+    void writeLocation(Writer out, int i, double x, double y) throws IOException {
+	line.setLength(0);
+	line.append('n').append(i).append(' ');
+	appendFixed(line, x);
+	line.append(' ');
+	appendFixed(line, y);
+	line.append('\n');
+	out.append(line);
+    }
+
+    // writeRoad -- Write a line of the road file, for a road of the given
+    // class and length.  The speed depends only upon the two locations and
+    // the seed, so a road and its reverse have the same cost.
+    void writeRoad(Writer out, int from, int to, int roadClass, double length) throws IOException {
+	double u = unit(hash(Math.min(from, to), Math.max(from, to)));
+	double speed = MIN_SPEED[roadClass] + u * (MAX_SPEED[roadClass] - MIN_SPEED[roadClass]);
+	line.setLength(0);
+	line.append(ROAD_CLASS[roadClass]).append(" n").append(from).append(" n").append(to).append(' ');
+	appendFixed(line, Math.max(0.001, length / speed));
+	line.append('\n');
+	out.append(line);
+	roadCount++;
+    }
+
+    // appendFixed -- Append the given number, to three decimal places, to
+    // the given line.  This is much faster than String.format, and it does
+    // not depend upon the default locale.
+    static void appendFixed(StringBuilder line, double value) {
+	long scaled = Math.round(value * 1000.0);
+	if (scaled < 0) {
+	    line.append('-');
+	    scaled = -scaled;
+	}
+	line.append(scaled / 1000).append('.');
+	long fraction = scaled % 1000;
+	if (fraction < 100)
+	    line.append('0');
+	if (fraction < 10)
+	    line.append('0');
+	line.append(fraction);
+    }
+
+    // distance -- Return the straight-line distance between two points.
+    static double distance(double x1, double y1, double x2, double y2) {
+	double dx = x1 - x2;
+	double dy = y1 - y2;
+	return (Math.sqrt(dx * dx + dy * dy));
+    }
+
+    // hash -- Return a well-mixed hash of the seed and the two given values.
+    long hash(long a, long b) {
+	long z = seed + 0x9E3779B97F4A7C15L * (a + 1) + 0xC2B2AE3D27D4EB4FL * (b + 1);
+	z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+	z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+	return (z ^ (z >>> 31));
+    }
+
+    // unit -- Return a number between zero and one from the given hash.
+    static double unit(long hash) {
+	return ((hash >>> 11) * 0x1.0p-53);
+    }
+
+    // main -- Write a map of the given topology, with the given number of
+    // locations and seed, to the given location file and road file.
+    public static void main(String[] args) {
+	if (args.length != 5) {
+	    System.err.println("Usage:  java MapGenerator <grid|planar|scalefree> <locations> <seed> <location file> <road file>");
+	    return;
+	}
+	MapTopology topology;
+	try {
+	    topology = MapTopology.valueOf(args[0]);
+	} catch (IllegalArgumentException e) {
+	    System.err.printf("The topology, %s, is not known.\n", args[0]);
+	    return;
+	}
+	MapGenerator generator = new MapGenerator(topology, Integer.parseInt(args[1]), Long.parseLong(args[2]));
+	long start = System.nanoTime();
+	if (!generator.write(args[3], args[4])) {
+	    System.err.println("Error:  Unable to write map.");
+	    return;
+	}
+	System.err.printf("%d locations and %d roads in %.3f seconds.\n", generator.nodeCount(), generator.roadCount(),
+			  (System.nanoTime() - start) / 1e9);
+    }
+
+}
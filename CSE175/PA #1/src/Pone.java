@@ -9,10 +9,12 @@
 // a starting location on this map and a destination location.  Three search
 // algorithms are then tested on this specified search problem:  uniform-cost
 // search, greedy search, and A* search.  Also, the effect of repeated state
-// checking is examined.  A depth limit is provided to the search algorithms,
-// and the algorithms are expected to terminate and report failure if that
-// depth limit is ever reached during search.  Summary results are sent to the 
-// standard output stream.
+// checking is examined.  Lastly, bidirectional versions of uniform-cost
+// search and A* search are tested, for comparison of node expansions.  A
+// depth limit is provided to the search algorithms, and the algorithms are
+// expected to terminate and report failure if that depth limit is ever
+// reached during search.  Summary results are sent to the standard output
+// stream.
 //
 // David Noelle -- Wed Feb 21 17:17:38 PST 2007
 //
@@ -120,6 +122,58 @@ public class Pone {
 	    	}
 	    	System.out.printf("Number of Node Expansions = %d.\n", as.expansionCount);
 
+	    	// Testing bidirectional uniform-cost search ...
+	    	System.out.println("TESTING BIDIRECTIONAL UNIFORM-COST SEARCH WITH REPEATED STATE CHECKING");
+	    	BidirectionalUniformCostSearch bucs = new BidirectionalUniformCostSearch(graph, initialLoc, destinationLoc, limit);
+	    	solution = bucs.search();
+	    	System.out.println("Solution:");
+	    	if (solution == null) {
+				System.out.println("None found.");
+	    	} else {
+				solution.reportSolution(System.out);
+				System.out.printf("Path Cost = %f.\n", solution.partialPathCost);
+	    	}
+	    	System.out.printf("Number of Node Expansions = %d.\n", bucs.expansionCount);
+
+	    	// Testing bidirectional A* search ...
+	    	System.out.println("TESTING BIDIRECTIONAL A* SEARCH WITH REPEATED STATE CHECKING");
+	    	BidirectionalAStarSearch bas = new BidirectionalAStarSearch(graph, initialLoc, destinationLoc, limit);
+	    	solution = bas.search();
+	    	System.out.println("Solution:");
+	    	if (solution == null) {
+				System.out.println("None found.");
+	    	} else {
+				solution.reportSolution(System.out);
+				System.out.printf("Path Cost = %f.\n", solution.partialPathCost);
+	    	}
+	    	System.out.printf("Number of Node Expansions = %d.\n", bas.expansionCount);
+
+	    	// Testing IDA* search ...
+	    	System.out.println("TESTING IDA* SEARCH WITH PATH CHECKING");
+	    	IDAStarSearch idas = new IDAStarSearch(graph, initialLoc, destinationLoc, limit);
+	    	solution = idas.search();
+	    	System.out.println("Solution:");
+	    	if (solution == null) {
+				System.out.println("None found.");
+	    	} else {
+				solution.reportSolution(System.out);
+				System.out.printf("Path Cost = %f.\n", solution.partialPathCost);
+	    	}
+	    	System.out.printf("Number of Node Expansions = %d.\n", idas.expansionCount);
+
+	    	// Testing SMA* search ...
+	    	System.out.println("TESTING SMA* SEARCH WITH MEMORY FOR 20 NODES");
+	    	SMAStarSearch smas = new SMAStarSearch(graph, initialLoc, destinationLoc, limit, 20);
+	    	solution = smas.search();
+	    	System.out.println("Solution:");
+	    	if (solution == null) {
+				System.out.println("None found.");
+	    	} else {
+				solution.reportSolution(System.out);
+				System.out.printf("Path Cost = %f.\n", solution.partialPathCost);
+	    	}
+	    	System.out.printf("Number of Node Expansions = %d.\n", smas.expansionCount);
+
 	    	// Done ...
 	    	System.out.println("ALGORITHM COMPARISON COMPLETE");
 		} catch (IOException e) {
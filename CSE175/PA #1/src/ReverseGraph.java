@@ -0,0 +1,64 @@
+//
+// ReverseGraph
+//
+// This class records the roads of a CompactMap by destination rather than by
+// source, in the same "compressed sparse row" style.  The roads leading into
+// node "n" occupy positions "offsets[n]" up to (but not including)
+// "offsets[n+1]", with the road id of each stored in "roads" and the node
+// from which it leads stored in "sources".  The cost of a road is found in
+// the CompactMap, by road id.  Searches that follow roads backward, from a
+// destination toward the locations that lead to it, use this view.
+//
+
+
+public class ReverseGraph {
+    int[] offsets;
+    int[] sources;
+    int[] roads;
+
+    // Constructor with compact map specified ...
+    public ReverseGraph(CompactMap graph) {
+	int n = graph.nodeCount();
+	int m = graph.roadCount();
+	this.offsets = new int[n + 1];
+	this.sources = new int[m];
+	this.roads = new int[m];
+	for (int e = 0; e < m; e++)
+	    offsets[graph.target(e) + 1]++;
+	for (int v = 0; v < n; v++)
+	    offsets[v + 1] += offsets[v];
+	int[] next = new int[n];
+	System.arraycopy(offsets, 0, next, 0, n);
+	for (int u = 0; u < n; u++) {
+	    for (int e = graph.firstRoad(u); e < graph.endRoad(u); e++) {
+		int i = next[graph.target(e)]++;
+		sources[i] = u;
+		roads[i] = e;
+	    }
+	}
+    }
+
+    // firstRoad -- Return the position of the first road leading into the
+    // given node.
+    public int firstRoad(int node) {
+	return (offsets[node]);
+    }
+
+    // endRoad -- Return the position just past the last road leading into
+    // the given node.
+    public int endRoad(int node) {
+	return (offsets[node + 1]);
+    }
+
+    // source -- Return the node from which the road at the given position
+    // leads.
+    public int source(int i) {
+	return (sources[i]);
+    }
+
+    // road -- Return the road id of the road at the given position.
+    public int road(int i) {
+	return (roads[i]);
+    }
+
+}
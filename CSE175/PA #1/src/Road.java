@@ -70,6 +70,13 @@ public class Road {
     // locations.
     public void write(OutputStream str, boolean showLocs) {
 		PrintWriter out = new PrintWriter(str, true);
+		write(out, showLocs);
+		out.flush();
+    }
+
+    // write -- As above, but write to the given PrintWriter, which is not
+    // flushed, so that many calls may share one buffered writer.
+    public void write(PrintWriter out, boolean showLocs) {
 		if (showLocs) {
 	    	out.printf("%s FROM %s TO %s", name, fromLocationName, toLocationName);
 		} else {
@@ -0,0 +1,56 @@
+//
+// RouteResult
+//
+// This class records the outcome of one route query answered by a
+// RouteService:  the names of the initial and destination locations, the
+// solution found (the final Waypoint of the path, linked back to the start
+// through its "previous" references, or null if no path was found), the
+// cost of the path, the number of node expansions performed by the search,
+// and the time that the search took.  RouteResult objects are not changed
+// once they have been returned, so they may be passed freely between
+// threads.
+//
+
+
+import java.io.*;
+
+
+public class RouteResult {
+    public final String initialLoc;
+    public final String destinationLoc;
+    public final Waypoint solution;
+    public final int expansionCount;
+    public final long nanos;
+
+    // Constructor with every field specified ...
+    public RouteResult(String initialLoc, String destinationLoc, Waypoint solution, int expansionCount, long nanos) {
+	this.initialLoc = initialLoc;
+	this.destinationLoc = destinationLoc;
+	this.solution = solution;
+	this.expansionCount = expansionCount;
+	this.nanos = nanos;
+    }
+
+    // isFound -- Return true if and only if a path was found.
+    public boolean isFound() {
+	return (solution != null);
+    }
+
+    // pathCost -- Return the cost of the path found, or infinity if there
+    // is no path.
+    public double pathCost() {
+	return ((solution == null) ? Double.POSITIVE_INFINITY : solution.partialPathCost);
+    }
+
+    // write -- Write a one-line summary of this result to the given stream:
+    // the two location names, the path cost (or "none"), the number of
+    // node expansions, and the search time in microseconds.
+    public void write(PrintStream out) {
+	if (solution == null)
+	    out.printf("%s %s none %d %.1f\n", initialLoc, destinationLoc, expansionCount, nanos / 1000.0);
+	else
+	    out.printf("%s %s %f %d %.1f\n", initialLoc, destinationLoc, solution.partialPathCost, expansionCount,
+		       nanos / 1000.0);
+    }
+
+}
@@ -0,0 +1,211 @@
+//
+// RouteService
+//
+// This class answers batches of route queries against a single Map, on a
+// fixed pool of worker threads.  Every query is an A* search with repeated
+// state checking over the CompactMap view of the map, fetched afresh for
+// each query, so that a query sees the latest road costs published by the
+// map's "updateCosts" method, and a query already under way is not
+// disturbed by a later update.  The
+// search objects keep mutable state (such as "expansionCount"), so each
+// worker thread has its own AStarSearch object, which it reuses for every
+// query that it answers, along with its own SearchContext.  No state is
+// shared between queries on different threads, so throughput grows with
+// the number of threads, up to the number of processors.  The one thing
+// that the threads do share is a HeuristicCache, so that the heuristic
+// values for a popular destination are computed once, rather than for every
+// query to it, with each thread's search looking them up through its own
+// CachedHeuristic.  The searches also add their statistics (nodes
+// expanded and generated, frontier size, time taken, and so on) to a shared
+// SearchMetrics object, which totals them over every query answered.
+//
+// Queries may be submitted one at a time, returning a Future, or as a list
+// of (initial location, destination location) pairs, returning the results
+// in the same order.  The "routeStream" method reads queries, one pair of
+// location names per line, and writes one line per result, in order, while
+// keeping only a bounded number of queries in progress.  A query may also
+// be given by the coordinates of its ends, which are matched to the
+// nearest locations on the map by the map's spatial index.  The "main" method
+// uses it to answer the queries on the standard input stream.
+//
+
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+
+public class RouteService {
+    static final long CACHE_BYTES = 64L << 20;
+
+    Map graph;
+    int limit;
+    ExecutorService pool;
+    int threads;
+    ThreadLocal<AStarSearch> searches;
+    HeuristicCache heuristics;
+    SearchMetrics metrics;
+
+    // Constructor with map, number of threads, depth limit, and memory cap
+    // of the heuristic cache, in bytes, specified ...  If the cap is not
+    // positive, no heuristic values are cached.
+    public RouteService(Map graph, int threads, int limit, long cacheBytes) {
+	this.graph = graph;
+	this.limit = limit;
+	this.threads = Math.max(1, threads);
+	this.pool = Executors.newFixedThreadPool(this.threads);
+	this.searches = new ThreadLocal<AStarSearch>();
+	this.heuristics = (cacheBytes > 0) ? new HeuristicCache(graph.compact(), cacheBytes) : null;
+	this.metrics = new SearchMetrics();
+    }
+
+    // Constructor with map, number of threads, and depth limit specified ...
+    public RouteService(Map graph, int threads, int limit) {
+	this(graph, threads, limit, CACHE_BYTES);
+    }
+
+    // Constructor with map specified ...  One thread is used per processor.
+    public RouteService(Map graph) {
+	this(graph, Runtime.getRuntime().availableProcessors(), Integer.MAX_VALUE);
+    }
+
+    // route -- Answer the given query on the calling thread, and return
+    // the result.
+    public RouteResult route(String initialLoc, String destinationLoc) {
+	long start = System.nanoTime();
+	CompactMap compact = graph.compact();
+	if (compact.nodeOf(initialLoc) < 0 || compact.nodeOf(destinationLoc) < 0)
+	    return (new RouteResult(initialLoc, destinationLoc, null, 0, System.nanoTime() - start));
+	AStarSearch as = searches.get();
+	if (as == null) {
+	    as = new AStarSearch(graph, initialLoc, destinationLoc, limit);
+	    if (heuristics != null)
+		as.heuristic = new CachedHeuristic(heuristics);
+	    as.metrics = metrics;
+	    searches.set(as);
+	}
+	if (heuristics != null)
+	    heuristics.setGraph(compact);
+	as.initialLoc = initialLoc;
+	as.destinationLoc = destinationLoc;
+	int node = as.searchNode(compact);
+	Waypoint solution = (node < 0) ? null : SearchContext.current().toWaypoint(compact, node);
+	return (new RouteResult(initialLoc, destinationLoc, solution, as.expansionCount, System.nanoTime() - start));
+    }
+
+    // route -- Answer a query given by the coordinates of its start and
+    // destination, each of which is matched to the nearest location on the
+    // map, on the calling thread, and return the result.
+    public RouteResult route(double initialLon, double initialLat, double destinationLon, double destinationLat) {
+	SpatialIndex index = graph.spatialIndex();
+	CompactMap compact = graph.compact();
+	int from = index.nearest(initialLon, initialLat);
+	int to = index.nearest(destinationLon, destinationLat);
+	return (route((from < 0) ? null : compact.locationName(from), (to < 0) ? null : compact.locationName(to)));
+    }
+
+    // submit -- Queue the given query to be answered by a worker thread.
+    public Future<RouteResult> submit(final String initialLoc, final String destinationLoc) {
+	return (pool.submit(() -> route(initialLoc, destinationLoc)));
+    }
+
+    // routeAll -- Answer every one of the given queries, each a pair of
+    // location names, and return the results in the same order.
+    public List<RouteResult> routeAll(List<String[]> queries) throws InterruptedException {
+	List<Future<RouteResult>> pending = new ArrayList<Future<RouteResult>>(queries.size());
+	for (String[] query : queries)
+	    pending.add(submit(query[0], query[1]));
+	List<RouteResult> results = new ArrayList<RouteResult>(queries.size());
+	for (Future<RouteResult> f : pending)
+	    results.add(result(f));
+	return (results);
+    }
+
+    // routeStream -- Read queries from the given stream, one pair of
+    // location names per line, and write a line for each result to the
+    // given stream, in the same order.  At most a few queries per thread
+    // are in progress at once.  Return the number of queries answered.
+    public int routeStream(BufferedReader in, PrintStream out) throws IOException, InterruptedException {
+	ArrayDeque<Future<RouteResult>> pending = new ArrayDeque<Future<RouteResult>>();
+	int window = 4 * threads;
+	int count = 0;
+	String line;
+	while ((line = in.readLine()) != null) {
+	    String[] names = line.trim().split("\\s+");
+	    if (names.length < 2)
+		continue;
+	    pending.add(submit(names[0], names[1]));
+	    if (pending.size() >= window) {
+		result(pending.remove()).write(out);
+		count++;
+	    }
+	}
+	while (!pending.isEmpty()) {
+	    result(pending.remove()).write(out);
+	    count++;
+	}
+	return (count);
+    }
+
+    // result -- Wait for and return the result of the given query.
+    static RouteResult result(Future<RouteResult> f) throws InterruptedException {
+	try {
+	    return (f.get());
+	} catch (ExecutionException e) {
+	    throw new IllegalStateException("Route query failed.", e.getCause());
+	}
+    }
+
+    // heuristicCache -- Return the heuristic cache shared by the worker
+    // threads, or null if there is none.
+    public HeuristicCache heuristicCache() {
+	return (heuristics);
+    }
+
+    // metrics -- Return the totals of the statistics of every search run by
+    // this service.
+    public SearchMetrics metrics() {
+	return (metrics);
+    }
+
+    // shutdown -- Stop the worker threads once the queries already
+    // submitted have been answered.
+    public void shutdown() {
+	pool.shutdown();
+    }
+
+    // main -- Read the map from the location file and road file named on
+    // the command line, then answer the queries on the standard input
+    // stream, using the given number of threads (one per processor if no
+    // number is given), and report the overall throughput.
+    public static void main(String[] args) {
+	if (args.length < 2 || args.length > 3) {
+	    System.err.println("Usage:  java RouteService <location file> <road file> [threads]");
+	    return;
+	}
+	Map graph = new Map(args[0], args[1]);
+	if (!(graph.readLocations() && graph.readRoads())) {
+	    System.err.println("Error:  Unable to read map.");
+	    return;
+	}
+	int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+	RouteService service = new RouteService(graph, threads, Integer.MAX_VALUE);
+	try {
+	    BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+	    PrintStream out = new PrintStream(new BufferedOutputStream(System.out), false);
+	    long start = System.nanoTime();
+	    int count = service.routeStream(in, out);
+	    double seconds = (System.nanoTime() - start) / 1e9;
+	    out.flush();
+	    System.err.printf("%d queries in %.3f seconds (%.1f queries per second) on %d threads.\n", count, seconds,
+			      count / seconds, threads);
+	    service.metrics().write(System.err);
+	} catch (IOException | InterruptedException e) {
+	    // Something went wrong ...
+	    System.err.println("Error:  Unable to answer queries.");
+	} finally {
+	    service.shutdown();
+	}
+    }
+
+}
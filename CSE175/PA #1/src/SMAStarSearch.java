@@ -0,0 +1,190 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+public class SMAStarSearch {
+    // initializing...
+    public Map graph;
+    public String initialLoc = " ";
+    public String destinationLoc = " ";
+    public int limit = 0;
+    public int maxNodes = 0;    // the most search tree nodes that may be kept at once
+    public int expansionCount = 0;
+    public int forgottenCount = 0;  // the number of nodes forgotten to stay within maxNodes
+    public Heuristic heuristic = null;  // if set, used in place of a GoodHeuristic
+
+    // the nodes kept in memory: the frontier holds the leaves, sorted by f-value, along with any other node
+    // some of whose children have been forgotten, sorted by the lowest f-value among them; every node in memory
+    // is linked to its children in memory through its options list
+    SortedFrontier sortedFrontier;
+    int nodeCount;
+
+    // for each node in memory some of whose children have been forgotten, the f-value of each forgotten child,
+    // by location name, so that a child generated again starts out with the f-value that it had backed up to
+    IdentityHashMap<Waypoint, HashMap<String, Double>> forgotten;
+
+    // constructor
+    SMAStarSearch(Map graph, String initialLoc, String destinationLoc, int limit, int maxNodes){
+        this.graph = graph; // encode the map
+        this.initialLoc = initialLoc;   // set start point
+        this.destinationLoc = destinationLoc;   // set end point
+        this.limit = limit; // set search limit
+        this.maxNodes = maxNodes;   // set memory limit
+    }
+
+    // constructor with a heuristic function to use in place of a GoodHeuristic, such as a LandmarkHeuristic
+    SMAStarSearch(Map graph, String initialLoc, String destinationLoc, int limit, int maxNodes, Heuristic heuristic){
+        this(graph, initialLoc, destinationLoc, limit, maxNodes);
+        this.heuristic = heuristic;
+    }
+
+    // the following function uses a simplified memory-bounded A* Search (SMA*) to find path from the initialLoc
+    // to destinationLoc
+    // like A*, it always expands the frontier node with the lowest f-value, but it never keeps more than maxNodes
+    // search tree nodes; when an expansion goes over that number, the leaf with the highest f-value is
+    // forgotten, until the memory use is back within bounds
+    // the parent of a forgotten node remembers its f-value, and goes back on the frontier with its own f-value
+    // backed up to the lowest f-value among its forgotten children, so that they can be generated again later,
+    // with the f-values that they had, if they turn out to be the best
+    // f-values are kept in heuristicValue, which is raised as needed so that a child never has a lower f-value
+    // than its parent, and a node with no children but the locations already on its path, or one that is too
+    // deep to reach the destination within maxNodes, gets an infinite f-value
+    // with an admissible heuristic, the path found is a shortest path whenever maxNodes is at least two more
+    // than the depth of a shortest path; with less memory, a longer path may be found, or the search may fail
+    public Waypoint search() {
+        Waypoint node = new Waypoint(graph.findLocation(initialLoc), null); //create the initial node
+        expansionCount = 0; // initialize the expansionCount
+        forgottenCount = 0;
+
+        // create a GoodHeuristic object, called h, for calculating heuristic value
+        // unless another heuristic function has been given
+        Heuristic hc = heuristic;
+        Location endpoint = graph.findLocation(destinationLoc); // create a Location of endpoint for generate Heuristic
+        if (hc == null) {
+            GoodHeuristic good = new GoodHeuristic();
+            good.startHeuristic(graph, endpoint);  // operate Heuristic evaluation
+            hc = good;
+        } else {
+            hc.setDestination(endpoint);
+        }
+        node.heuristicValue = hc.heuristicFunction(node);
+
+        // among nodes with equal f-values, the deepest is expanded first and the shallowest is forgotten first
+        sortedFrontier = new SortedFrontier(SortBy.f, true);
+        sortedFrontier.addSorted(node); // add current node into sortedFrontier
+        nodeCount = 1;
+        forgotten = new IdentityHashMap<>();
+
+        while (!sortedFrontier.isEmpty()) {
+            node = sortedFrontier.removeTop();  // store the first node of sortedFrontier to node
+            double f = node.partialPathCost + node.heuristicValue;
+            if (f == Double.POSITIVE_INFINITY) {
+                return null;    // fail if every node left has an infinite f-value
+            }
+            if (node.isFinalDestination(destinationLoc)) {  // check the current node is destination or not
+                return node;    // return current node if it is the destination
+            }
+
+            // generate the child nodes that are not in memory: all of them the first time the current node is
+            // expanded, and only the forgotten ones after that
+            List<Waypoint> kept = new ArrayList<>(node.options);
+            HashMap<String, Double> remembered = forgotten.remove(node);
+            node.expand(hc);    // find all child nodes of current node
+            expansionCount++;   // expand operates once so add 1 to expansionCount
+            List<Waypoint> generated = new ArrayList<>();
+            for (Waypoint option : node.options) {
+                // skip the child node if its location is already on the path to it, or if it is still in memory
+                if (onPath(option.loc, node) || inMemory(option.loc, kept)) {
+                    continue;
+                }
+                // a child node never has a lower f-value than its parent, or than it had when it was forgotten
+                option.heuristicValue = Math.max(option.heuristicValue, f - option.partialPathCost);
+                if (remembered != null && remembered.containsKey(option.loc.name)) {
+                    option.heuristicValue = Math.max(option.heuristicValue,
+                            remembered.get(option.loc.name) - option.partialPathCost);
+                }
+                // a child node that is not the destination, and has no room for children of its own, is a dead end
+                boolean tooDeep = option.depth >= limit || option.depth >= maxNodes - 1;
+                if (tooDeep && !option.isFinalDestination(destinationLoc)) {
+                    option.heuristicValue = Double.POSITIVE_INFINITY;
+                }
+                generated.add(option);
+            }
+            node.options = kept;
+            node.options.addAll(generated);
+            if (node.options.isEmpty()) {
+                // no child nodes, so the current node is a dead end
+                node.heuristicValue = Double.POSITIVE_INFINITY;
+                forget(node);
+                continue;
+            }
+            sortedFrontier.addSorted(generated);
+            nodeCount += generated.size();
+
+            // forget the worst leaves until the search tree fits in memory again, but never the best child node
+            // just generated, so that the search always moves forward; nodes that are not leaves stay where
+            // they are on the frontier
+            Waypoint best = null;
+            for (Waypoint option : generated) {
+                if (best == null || sortedFrontier.priority(option) < sortedFrontier.priority(best)) {
+                    best = option;
+                }
+            }
+            final Waypoint spared = best;
+            while (nodeCount > maxNodes) {
+                Waypoint worst = sortedFrontier.removeBottom(wp -> wp != spared && wp.options.isEmpty());
+                if (worst == null) {
+                    return null;    // fail if nothing can be forgotten
+                }
+                forget(worst);
+            }
+        }
+        return null;    // fail if sortedFrontier is empty
+    }
+
+    // this function removes the given leaf node, which is not in the frontier, from the search tree
+    // its parent remembers its f-value, and goes back on the frontier, if it is not there already, with the
+    // lowest f-value among its forgotten children
+    void forget(Waypoint leaf) {
+        Waypoint parent = leaf.previous;
+        nodeCount--;
+        forgottenCount++;
+        forgotten.remove(leaf);
+        if (parent == null) {
+            return;     // the initial node is a dead end
+        }
+        parent.options.remove(leaf);
+        double f = leaf.partialPathCost + leaf.heuristicValue;
+        forgotten.computeIfAbsent(parent, k -> new HashMap<>()).put(leaf.loc.name, f);
+        if (parent.frontierIndex >= 0) {
+            if (f >= sortedFrontier.priority(parent)) {
+                return;     // the parent already has a forgotten child that is no worse
+            }
+            sortedFrontier.remove(parent);
+        }
+        parent.heuristicValue = f - parent.partialPathCost;  // back up the f-value
+        sortedFrontier.addSorted(parent);
+    }
+
+    // this function returns true if and only if the given location is that of one of the given nodes
+    boolean inMemory(Location loc, List<Waypoint> nodes) {
+        for (Waypoint wp : nodes) {
+            if (wp.loc == loc) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // this function returns true if and only if the given location is that of the given node or one of its
+    // ancestors
+    boolean onPath(Location loc, Waypoint node) {
+        for (Waypoint wp = node; wp != null; wp = wp.previous) {
+            if (wp.loc == loc) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,177 @@
+//
+// SearchContext
+//
+// This class holds the working storage for a search with repeated state
+// checking over a CompactMap, so that the storage can be reused from one
+// search to the next.  With repeated state checking, each map node appears
+// at most once in the search tree, so the search tree can be recorded in
+// arrays indexed by node id:  the parent node, the road taken from the
+// parent, the depth, the partial path cost, and the heuristic value of
+// each node.  Rather than clearing these arrays before every search, each
+// search is given a new "generation" number, and a node's entries are only
+// considered valid if the node was reached (or, for the "closed" set,
+// expanded) during the current generation.  Starting a new search is thus
+// a constant-time operation.  The HeapFrontier used by searches is kept
+// here as well.
+//
+// A SearchContext must only be used by one search at a time.  The "local"
+// method returns a context belonging to the calling thread, sized for the
+// given map, so that concurrent searches on different threads never share
+// a context.  Once a thread's context has grown to the size of the map,
+// searches allocate nothing further, apart from any Waypoint objects built
+// to report a solution.
+//
+
+
+import java.util.*;
+
+
+public class SearchContext {
+    static final ThreadLocal<SearchContext> contexts = new ThreadLocal<SearchContext>();
+
+    int generation;
+    int[] reached;
+    int[] closed;
+    int[] parent;
+    int[] road;
+    int[] depth;
+    double[] partialPathCost;
+    double[] heuristicValue;
+    HeapFrontier heap;
+
+    // Constructor with number of map nodes specified ...
+    public SearchContext(int nodeCount) {
+	this.generation = 0;
+	this.reached = new int[nodeCount];
+	this.closed = new int[nodeCount];
+	this.parent = new int[nodeCount];
+	this.road = new int[nodeCount];
+	this.depth = new int[nodeCount];
+	this.partialPathCost = new double[nodeCount];
+	this.heuristicValue = new double[nodeCount];
+	this.heap = new HeapFrontier(nodeCount);
+    }
+
+    // local -- Return the calling thread's context, ready for a new search
+    // on the given map.  The context is replaced by a larger one if it is
+    // too small for the map.
+    public static SearchContext local(CompactMap graph) {
+	SearchContext context = contexts.get();
+	if (context == null || context.reached.length < graph.nodeCount()) {
+	    context = new SearchContext(graph.nodeCount());
+	    contexts.set(context);
+	}
+	context.reset();
+	return (context);
+    }
+
+    // current -- Return the calling thread's context as the last search left
+    // it, so that the results of that search can be read.  Return null if
+    // the thread has not yet searched.
+    public static SearchContext current() {
+	return (contexts.get());
+    }
+
+    // reset -- Begin a new search, forgetting everything about the last one.
+    public void reset() {
+	generation++;
+	if (generation == Integer.MAX_VALUE) {
+	    // Generation numbers have run out, so start over ...
+	    Arrays.fill(reached, 0);
+	    Arrays.fill(closed, 0);
+	    generation = 1;
+	}
+	heap.clear();
+    }
+
+    // isReached -- Return true if and only if the given node has been added
+    // to the search tree during the current search.
+    public boolean isReached(int node) {
+	return (reached[node] == generation);
+    }
+
+    // isExplored -- Return true if and only if the given node has been
+    // expanded during the current search.
+    public boolean isExplored(int node) {
+	return (closed[node] == generation);
+    }
+
+    // markExplored -- Record that the given node has been expanded during
+    // the current search.
+    public void markExplored(int node) {
+	closed[node] = generation;
+    }
+
+    // reachRoot -- Add the given node to the search tree as its root.
+    public void reachRoot(int node, double h) {
+	reach(node, -1, -1, 0, 0.0, h);
+    }
+
+    // reachChild -- Add the given node to the search tree, or move it if it
+    // is already there, as the child of the given parent node, reached by
+    // the given road at the given incremental cost.
+    public void reachChild(int parentNode, int viaRoad, int node, double cost, double h) {
+	reach(node, parentNode, viaRoad, depth[parentNode] + 1, partialPathCost[parentNode] + cost, h);
+    }
+
+    // reach -- Record the given statistics for the given node.
+    void reach(int node, int parentNode, int viaRoad, int d, double g, double h) {
+	reached[node] = generation;
+	parent[node] = parentNode;
+	road[node] = viaRoad;
+	depth[node] = d;
+	partialPathCost[node] = g;
+	heuristicValue[node] = h;
+    }
+
+    // priority -- Return the statistic of the given node by which a
+    // SortedFrontier with the given sorting strategy would order it.
+    public double priority(int node, SortBy statistic) {
+	switch (statistic) {
+	    case h:
+		return (heuristicValue[node]);
+	    case f:
+		return (partialPathCost[node] + heuristicValue[node]);
+	    default:
+		return (partialPathCost[node]);
+	}
+    }
+
+    // pathCost -- Return the partial path cost of the given node.
+    public double pathCost(int node) {
+	return (partialPathCost[node]);
+    }
+
+    // path -- Fill the given array with the ids of the roads on the path
+    // from the root of the search tree to the given node, in order, and
+    // return the number of roads on the path.  The array must be long
+    // enough to hold them, which is the depth of the node.
+    public int path(int node, int[] roads) {
+	int length = depth[node];
+	for (int n = node, i = length - 1; i >= 0; n = parent[n], i--)
+	    roads[i] = road[n];
+	return (length);
+    }
+
+    // toWaypoint -- Build the chain of Waypoint objects running from the
+    // root of the search tree to the given node, and return the Waypoint
+    // for that node.  Only nodes on this path are allocated.
+    public Waypoint toWaypoint(CompactMap graph, int node) {
+	if (node < 0)
+	    return (null);
+	int[] nodes = new int[depth[node] + 1];
+	for (int n = node, i = depth[node]; i >= 0; n = parent[n], i--)
+	    nodes[i] = n;
+	Waypoint wp = null;
+	for (int n : nodes) {
+	    wp = new Waypoint(graph.location(n), wp);
+	    if (wp.previous != null)
+		wp.road = graph.road(road[n]);
+	    wp.depth = depth[n];
+	    wp.partialPathCost = partialPathCost[n];
+	    wp.heuristicValue = heuristicValue[n];
+	}
+	return (wp);
+    }
+
+}
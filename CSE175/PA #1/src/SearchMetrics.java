@@ -0,0 +1,117 @@
+//
+// SearchMetrics
+//
+// This class totals the SearchStats of many searches, such as those of a
+// batch of route queries answered on many threads.  The totals are kept in
+// LongAdder objects (and the largest frontier in a LongAccumulator), so
+// that threads adding their statistics at the same time do not contend
+// with one another.  Each search adds its statistics once, when it is
+// done, so the cost of keeping the totals does not grow with the size of
+// the search.  The "write" method reports the totals, and the averages per
+// query, on a single line.
+//
+
+
+import java.io.*;
+import java.util.concurrent.atomic.*;
+
+
+public class SearchMetrics {
+    final LongAdder queries = new LongAdder();
+    final LongAdder expansions = new LongAdder();
+    final LongAdder generated = new LongAdder();
+    final LongAdder pruned = new LongAdder();
+    final LongAdder decreaseKeys = new LongAdder();
+    final LongAdder heuristicEvaluations = new LongAdder();
+    final LongAdder setupNanos = new LongAdder();
+    final LongAdder searchNanos = new LongAdder();
+    final LongAccumulator frontierPeak = new LongAccumulator(Math::max, 0);
+
+    // record -- Add the statistics of one finished search to the totals.
+    public void record(SearchStats stats) {
+	queries.increment();
+	expansions.add(stats.expansions);
+	generated.add(stats.generated);
+	pruned.add(stats.pruned);
+	decreaseKeys.add(stats.decreaseKeys);
+	heuristicEvaluations.add(stats.heuristicEvaluations);
+	setupNanos.add(stats.setupNanos);
+	searchNanos.add(stats.searchNanos);
+	frontierPeak.accumulate(stats.frontierPeak);
+    }
+
+    // queries -- Return the number of searches recorded.
+    public long queries() {
+	return (queries.sum());
+    }
+
+    // expansions -- Return the total number of nodes expanded.
+    public long expansions() {
+	return (expansions.sum());
+    }
+
+    // generated -- Return the total number of child nodes generated.
+    public long generated() {
+	return (generated.sum());
+    }
+
+    // pruned -- Return the total number of child nodes pruned as repeated
+    // states.
+    public long pruned() {
+	return (pruned.sum());
+    }
+
+    // decreaseKeys -- Return the total number of frontier nodes replaced by
+    // cheaper ones.
+    public long decreaseKeys() {
+	return (decreaseKeys.sum());
+    }
+
+    // heuristicEvaluations -- Return the total number of heuristic function
+    // evaluations.
+    public long heuristicEvaluations() {
+	return (heuristicEvaluations.sum());
+    }
+
+    // frontierPeak -- Return the largest frontier of any search recorded.
+    public long frontierPeak() {
+	return (frontierPeak.get());
+    }
+
+    // setupNanos -- Return the total time spent setting searches up.
+    public long setupNanos() {
+	return (setupNanos.sum());
+    }
+
+    // searchNanos -- Return the total time spent searching, after setup.
+    public long searchNanos() {
+	return (searchNanos.sum());
+    }
+
+    // reset -- Clear the totals.
+    public void reset() {
+	queries.reset();
+	expansions.reset();
+	generated.reset();
+	pruned.reset();
+	decreaseKeys.reset();
+	heuristicEvaluations.reset();
+	setupNanos.reset();
+	searchNanos.reset();
+	frontierPeak.reset();
+    }
+
+    // write -- Write the totals, and the averages per search, to the given
+    // stream, on one line.
+    public void write(PrintStream out) {
+	long n = Math.max(1, queries());
+	out.printf("queries %d  expanded %d (%.1f/query)  generated %d (%.1f/query)  pruned %d (%.1f/query)  "
+		   + "decrease-key %d (%.1f/query)  heuristic %d (%.1f/query)  frontier peak %d  "
+		   + "setup %.3f ms/query  search %.3f ms/query\n",
+		   queries(), expansions(), (double) expansions() / n, generated(), (double) generated() / n,
+		   pruned(), (double) pruned() / n, decreaseKeys(), (double) decreaseKeys() / n,
+		   heuristicEvaluations(), (double) heuristicEvaluations() / n, frontierPeak(),
+		   setupNanos() / 1e6 / n, searchNanos() / 1e6 / n);
+    }
+
+}
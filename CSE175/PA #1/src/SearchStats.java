@@ -0,0 +1,80 @@
+//
+// SearchStats
+//
+// This class records what a single search did:  the number of nodes
+// expanded, the number of child nodes generated, the number of child nodes
+// pruned as repeated states, the number of times a node on the frontier was
+// replaced by a cheaper one ("decrease key"), the number of heuristic
+// function evaluations, the largest size that the frontier reached, and the
+// wall clock time spent setting the search up and then running it.  Each
+// search object keeps one of these, which it fills in as it goes, using
+// plain fields, so counting costs no more than incrementing
+// "expansionCount" does.  A SearchStats object is not thread-safe; to
+// total the statistics of many searches, possibly on many threads, add
+// each one to a shared SearchMetrics object when its search is done.
+//
+// A search entry point that calls another one (as the CompactMap search
+// with repeated state checking calls "searchNode") is only measured once:
+// the measurements start at the outermost "start" and end at the matching
+// "finish".
+//
+
+
+public class SearchStats {
+    public long expansions;
+    public long generated;
+    public long pruned;
+    public long decreaseKeys;
+    public long heuristicEvaluations;
+    public long frontierPeak;
+    public long setupNanos;
+    public long searchNanos;
+    long startTime;
+    int active;
+
+    // start -- Begin measuring a search, clearing the statistics of the
+    // last one, unless a search is already being measured.
+    public void start() {
+	if (active++ == 0) {
+	    expansions = 0;
+	    generated = 0;
+	    pruned = 0;
+	    decreaseKeys = 0;
+	    heuristicEvaluations = 0;
+	    frontierPeak = 0;
+	    setupNanos = 0;
+	    searchNanos = 0;
+	    startTime = System.nanoTime();
+	}
+    }
+
+    // setupDone -- Record the end of the setup phase of the search (building
+    // the initial node, the frontier, and the heuristic function), which is
+    // when the search proper begins.
+    public void setupDone() {
+	if (setupNanos == 0)
+	    setupNanos = System.nanoTime() - startTime;
+    }
+
+    // frontier -- Record the current size of the frontier.
+    public void frontier(int size) {
+	if (size > frontierPeak)
+	    frontierPeak = size;
+    }
+
+    // finish -- End the measurement of a search, which expanded the given
+    // number of nodes, and add its statistics to the given metrics, unless
+    // they are null.
+    public void finish(int expansionCount, SearchMetrics metrics) {
+	if (--active > 0)
+	    return;
+	expansions = expansionCount;
+	long elapsed = System.nanoTime() - startTime;
+	if (setupNanos == 0)
+	    setupNanos = elapsed;
+	searchNanos = elapsed - setupNanos;
+	if (metrics != null)
+	    metrics.record(this);
+    }
+
+}
@@ -0,0 +1,213 @@
+//
+// ShortestPathTree
+//
+// This class records the shortest paths from one source node of a
+// CompactMap to every node that a uniform-cost search settled, as arrays
+// indexed by node id:  the parent node of each node in the tree, the road
+// id taken from that parent, and the cost of the shortest path.  Nodes that
+// were not settled, because they cannot be reached or because they lie
+// beyond the cost budget given to the search, have a parent of -1 and an
+// infinite cost, as does the source itself (with a cost of zero).  The
+// tree holds no references to Location or Waypoint objects, so it takes up
+// about 16 bytes per map node however many nodes were settled.
+//
+// A tree may be written to a ByteBuffer, or to a file, in a little-endian
+// layout like that of the MapFile class:  a header, the parent array, the
+// road array, and then (aligned to eight bytes) the cost array.  The "read"
+// method maps such a file back into a tree.
+//
+
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+
+public class ShortestPathTree implements SettleVisitor {
+    static final int MAGIC = 0x54505343;    // "CSPT"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 24;
+
+    int source;
+    int settledCount;
+    int[] parent;
+    int[] road;
+    double[] cost;
+
+    // Constructor with source and number of map nodes specified ...  Only
+    // the source is in the tree.
+    public ShortestPathTree(int source, int nodeCount) {
+	this.source = source;
+	this.settledCount = 1;
+	this.parent = new int[nodeCount];
+	this.road = new int[nodeCount];
+	this.cost = new double[nodeCount];
+	Arrays.fill(parent, -1);
+	Arrays.fill(road, -1);
+	Arrays.fill(cost, Double.POSITIVE_INFINITY);
+	cost[source] = 0.0;
+    }
+
+    // source -- Return the node id of the root of the tree.
+    public int source() {
+	return (source);
+    }
+
+    // nodeCount -- Return the number of map nodes covered by the arrays.
+    public int nodeCount() {
+	return (cost.length);
+    }
+
+    // settledCount -- Return the number of nodes in the tree, including the
+    // source.
+    public int settledCount() {
+	return (settledCount);
+    }
+
+    // contains -- Return true if and only if the given node is in the tree.
+    public boolean contains(int node) {
+	return (cost[node] < Double.POSITIVE_INFINITY);
+    }
+
+    // parent -- Return the node before the given node on its shortest path,
+    // or -1 for the source and for nodes not in the tree.
+    public int parent(int node) {
+	return (parent[node]);
+    }
+
+    // road -- Return the id of the road leading into the given node on its
+    // shortest path, or -1 for the source and for nodes not in the tree.
+    public int road(int node) {
+	return (road[node]);
+    }
+
+    // cost -- Return the cost of the shortest path to the given node, or
+    // infinity if it is not in the tree.
+    public double cost(int node) {
+	return (cost[node]);
+    }
+
+    // parents, roads, costs -- Return the arrays themselves, indexed by node
+    // id.  They must not be changed.
+    public int[] parents() {
+	return (parent);
+    }
+
+    public int[] roads() {
+	return (road);
+    }
+
+    public double[] costs() {
+	return (cost);
+    }
+
+    // settle -- Add the given node to the tree, reached from the given
+    // parent by the given road, at the given path cost.
+    public void settle(int node, int parentNode, int viaRoad, double g) {
+	if (node != source)
+	    settledCount++;
+	parent[node] = parentNode;
+	road[node] = viaRoad;
+	cost[node] = g;
+    }
+
+    // path -- Fill the given array with the ids of the roads on the path
+    // from the source to the given node, in order, and return the number of
+    // roads on the path, or -1 if the node is not in the tree.  The array
+    // must be long enough to hold them.
+    public int path(int node, int[] roads) {
+	if (!contains(node))
+	    return (-1);
+	int length = 0;
+	for (int n = node; n != source; n = parent[n])
+	    length++;
+	for (int n = node, i = length - 1; i >= 0; n = parent[n], i--)
+	    roads[i] = road[n];
+	return (length);
+    }
+
+    // byteSize -- Return the number of bytes taken by the tree when written.
+    public int byteSize() {
+	return (HEADER_SIZE + align(8 * nodeCount()) + 8 * nodeCount());
+    }
+
+    // align -- Round the given size up to a multiple of eight bytes.
+    static int align(int size) {
+	return ((size + 7) & ~7);
+    }
+
+    // write -- Write the tree to the given buffer, starting at its current
+    // position, which is advanced past it.  The buffer must have at least
+    // "byteSize()" bytes remaining.
+    public void write(ByteBuffer out) {
+	ByteOrder order = out.order();
+	out.order(ByteOrder.LITTLE_ENDIAN);
+	int start = out.position();
+	out.putInt(MAGIC);
+	out.putInt(VERSION);
+	out.putInt(nodeCount());
+	out.putInt(source);
+	out.putInt(settledCount);
+	out.putInt(0);
+	out.asIntBuffer().put(parent);
+	out.position(out.position() + 4 * parent.length);
+	out.asIntBuffer().put(road);
+	out.position(start + HEADER_SIZE + align(8 * nodeCount()));
+	out.asDoubleBuffer().put(cost);
+	out.position(out.position() + 8 * cost.length);
+	out.order(order);
+    }
+
+    // write -- Write the tree to the given file.  Return false on error.
+    public boolean write(String filename) {
+	try (RandomAccessFile file = new RandomAccessFile(filename, "rw")) {
+	    file.setLength(0);
+	    FileChannel ch = file.getChannel();
+	    write(ch.map(FileChannel.MapMode.READ_WRITE, 0, byteSize()));
+	    return (true);
+	} catch (IOException e) {
+	    // Something went wrong ...
+	    return (false);
+	}
+    }
+
+    // read -- Read a tree from the given buffer, starting at its current
+    // position, which is advanced past it.  Return null if the buffer does
+    // not hold a tree.
+    public static ShortestPathTree read(ByteBuffer in) {
+	try {
+	    in.order(ByteOrder.LITTLE_ENDIAN);
+	    int start = in.position();
+	    if (in.getInt() != MAGIC || in.getInt() != VERSION)
+		return (null);
+	    int n = in.getInt();
+	    ShortestPathTree tree = new ShortestPathTree(in.getInt(), n);
+	    tree.settledCount = in.getInt();
+	    in.getInt();
+	    in.asIntBuffer().get(tree.parent);
+	    in.position(in.position() + 4 * n);
+	    in.asIntBuffer().get(tree.road);
+	    in.position(start + HEADER_SIZE + align(8 * n));
+	    in.asDoubleBuffer().get(tree.cost);
+	    in.position(in.position() + 8 * n);
+	    return (tree);
+	} catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+	    // Something went wrong ...
+	    return (null);
+	}
+    }
+
+    // read -- Read a tree from the given file, written by the "write"
+    // method.  Return null on error.
+    public static ShortestPathTree read(String filename) {
+	try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
+	    FileChannel ch = file.getChannel();
+	    return (read(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size())));
+	} catch (IOException e) {
+	    // Something went wrong ...
+	    return (null);
+	}
+    }
+
+}
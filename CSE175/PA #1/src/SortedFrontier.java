@@ -11,7 +11,32 @@
 // is the first to be removed.  Note that the insertion method is overloaded
 // to accept either an individual Waypoint or a list of multiple Waypoint
 // objects.  This class is intended to to be used to implement the frontier
-// (i.e., the "fringe" or "open list") of nodes in a search tree.
+// (i.e., the "fringe" or "open list") of nodes in a search tree.  The
+// contained Waypoint objects are also indexed by location, so that the
+// "contains" and "find" methods taking a Location or a Waypoint do not need
+// to search the queue.  The index is a table of the first Waypoint for
+// each location id, with any other Waypoints for the same location linked
+// to it through the Waypoints themselves, so that inserting a Waypoint
+// allocates nothing.  (Locations without an id, which are not on a Map,
+// are indexed by name instead.)  The first time that a Waypoint is sought
+// by location name alone, a table from each name to its Location is built
+// from the queue, and it is kept up to date from then on, so that these
+// methods need only look up the Location.  Names are taken to be unique to
+// Locations, as they are on a Map.
+//
+// The queue is a binary heap.  The sorting statistic of each contained
+// Waypoint is computed once, when the Waypoint is inserted, and is stored
+// in a parallel array of doubles.  Waypoints with exactly equal values are
+// ordered alphabetically by location name, as they always have been, and
+// Waypoints for the same location with equal values are removed in the
+// order in which they were inserted.  (A frontier may instead be created
+// to order such Waypoints by depth, deepest first, before comparing names,
+// as memory-bounded searches require.)  Each Waypoint records its own
+// position in the heap, so that it can be removed, or replaced by a better
+// Waypoint for the same location using "decreaseKey", in logarithmic time.
+// The "removeBottom" method removes the Waypoint that would be the last to
+// come out, optionally among only those passing a given test, in linear
+// time.
 //
 // David Noelle -- Created Tue Feb 27 11:25:05 PST 2007
 //                 Modified Wed Oct  6 02:32:34 PDT 2010
@@ -20,117 +45,148 @@
 
 
 import java.util.*;
-import java.io.*;
+import java.util.function.Predicate;
 
 
 enum SortBy { g, h, f }
 
 
-class WaypointComparator implements Comparator<Waypoint>, Serializable {
-    static final long serialVersionUID = 1;  // Version 1
-    SortBy statistic;
-
-    // Default constructor ...
-    public WaypointComparator() {
-		this.statistic = SortBy.g;
-    }
-
-    // Constructor with sorting criterion argument ...
-    public WaypointComparator(SortBy strategy) {
-		this.statistic = strategy;
-    }
-
-    // compare -- Determine which of two Waypoints is "larger", according
-    // to the Comparator protocol.
-    public int compare(Waypoint wp1, Waypoint wp2) {
-		// Extract the appropriate statistics ...
-		double val1 = 0.0;
-		double val2 = 0.0;
-		switch (statistic) {
-			case g:
-	    		val1 = wp1.partialPathCost;
-	    		val2 = wp2.partialPathCost;
-	    		break;
-			case h:
-	    		val1 = wp1.heuristicValue;
- 	    		val2 = wp2.heuristicValue;
-	    		break;
-			case f:
-	    		val1 = wp1.partialPathCost + wp1.heuristicValue;
-	    		val2 = wp2.partialPathCost + wp2.heuristicValue;
-	    		break;
-		}
-		// Compare values ...
-		if (val1 < val2)
-			return (-1);
-		if (val1 > val2)
-	    	return (1);
-		if (wp1.equals(wp2)) {
-	    	// This is the exact same Waypoint ...
-	    	return (0);
-		} else {
-	    	// These are two Waypoint objects with the same value, but we
-	    	// still need to put them in some order.  Otherwise, two nodes
-	    	// with the same value will "overwrite" each other ...
-	    	if (wp1.loc.equals(wp2.loc)) {
-			// Even the locations are the same, so order the two nodes
-			// based on the ordering of their parents in the search
-			// tree ...
-				return (this.compare(wp1.previous, wp2.previous));
-	    	} else {
-				// The locations differ, so we can use the alphabetical
-				// ordering of their names to order the nodes ...
-				return (wp1.loc.name.compareTo(wp2.loc.name));
-	    	}
-		}
-    }
-
-}
-	
-
 public class SortedFrontier {
     SortBy sortingStrategy;
-    SortedSet<Waypoint> fringe;
+    boolean deeperFirst;
+    Waypoint[] fringe;
+    double[] keys;
+    long[] order;
+    int size;
+    long insertions;
+    Waypoint[] membersById;
+    HashMap<String, Waypoint> membersByName;    // only for locations without ids
+    HashMap<String, Location> placesByName;     // null until a name is sought
 
     // Default constructor ...
     public SortedFrontier() {
-		this.sortingStrategy = SortBy.g;
-		Comparator<Waypoint> sortingComparator = new WaypointComparator(this.sortingStrategy);
-		this.fringe = new TreeSet<Waypoint>(sortingComparator);
+		this(SortBy.g);
     }
 
     // Constructor with sorting strategy specified ...
     public SortedFrontier(SortBy strategy) {
+		this(strategy, false);
+    }
+
+    // Constructor with sorting strategy and tie-breaking specified ...  If
+    // "deeperFirst" is true, Waypoints with exactly equal values are ordered
+    // by depth, deepest first, before they are ordered by location name.
+    public SortedFrontier(SortBy strategy, boolean deeperFirst) {
 		this.sortingStrategy = strategy;
-		Comparator<Waypoint> sortingComparator = new WaypointComparator(this.sortingStrategy);
-		this.fringe = new TreeSet<Waypoint>(sortingComparator);
+		this.deeperFirst = deeperFirst;
+		this.fringe = new Waypoint[16];
+		this.keys = new double[16];
+		this.order = new long[16];
+		this.size = 0;
+		this.insertions = 0;
+		this.membersById = new Waypoint[16];
+		this.membersByName = null;
+		this.placesByName = null;
     }
 
-    // isEmpty -- Return true if and only if there are currently no nodes in 
+    // isEmpty -- Return true if and only if there are currently no nodes in
     // the frontier.
     public boolean isEmpty() {
-		return (fringe.isEmpty());
+		return (size == 0);
+    }
+
+    // size -- Return the number of nodes currently in the frontier.
+    public int size() {
+		return (size);
+    }
+
+    // get -- Return the Waypoint object at the given position in the heap.
+    // Positions run from zero to one less than the size of the frontier,
+    // but, apart from position zero holding the top of the frontier, they
+    // are in no particular order.
+    public Waypoint get(int i) {
+		return (fringe[i]);
+    }
+
+    // priority -- Return the value of the sorting statistic for the given
+    // Waypoint object.
+    public double priority(Waypoint wp) {
+		switch (sortingStrategy) {
+			case h:
+	    		return (wp.heuristicValue);
+			case f:
+	    		return (wp.partialPathCost + wp.heuristicValue);
+			default:
+	    		return (wp.partialPathCost);
+		}
     }
 
     // removeTop -- Return the Waypoint object at the top of the frontier
     // list.  Also, remove this node from the frontier.  Return null if the
     // frontier is empty.
     public Waypoint removeTop() {
-		if (fringe.isEmpty()) {
+		if (size == 0) {
 	    	return (null);
 		} else {
-	    	Waypoint top = fringe.first();
-	    	fringe.remove(top);
+	    	Waypoint top = fringe[0];
+	    	removeAt(0);
+	    	forget(top);
 	    	return (top);
 		}
     }
 
+    // removeBottom -- Return the Waypoint object that would be the last to
+    // be removed from the frontier.  Also, remove this node from the
+    // frontier.  Return null if the frontier is empty.  The bottom of the
+    // heap is always one of its leaves, which fill the later half of its
+    // positions, so only those positions are examined.
+    public Waypoint removeBottom() {
+		if (size == 0) {
+	    	return (null);
+		} else {
+	    	int bottom = size / 2;
+	    	for (int i = bottom + 1; i < size; i++)
+				if (before(bottom, i))
+		    		bottom = i;
+	    	Waypoint wp = fringe[bottom];
+	    	removeAt(bottom);
+	    	forget(wp);
+	    	return (wp);
+		}
+    }
+
+    // removeBottom -- Return the Waypoint object that would be the last to
+    // be removed from the frontier among those that the given test accepts.
+    // Also, remove this node from the frontier.  Return null if there is no
+    // such node.  Every position of the heap is examined, once.
+    public Waypoint removeBottom(Predicate<Waypoint> eligible) {
+		int bottom = -1;
+		for (int i = 0; i < size; i++)
+	    	if ((bottom < 0 || before(bottom, i)) && eligible.test(fringe[i]))
+				bottom = i;
+		if (bottom < 0)
+	    	return (null);
+		Waypoint wp = fringe[bottom];
+		removeAt(bottom);
+		forget(wp);
+		return (wp);
+    }
+
     // addSorted -- Add the given Waypoint object to the frontier in the
-    // appropriate position, given its sorting statistics.
+    // appropriate position, given its sorting statistics.  A Waypoint that
+    // is already in the frontier is not added again.
     public void addSorted(Waypoint wp) {
-	fringe.add(wp);
+		if (wp.frontierIndex >= 0)
+	    	return;
+		if (size == fringe.length) {
+	    	fringe = Arrays.copyOf(fringe, size * 2);
+	    	keys = Arrays.copyOf(keys, size * 2);
+	    	order = Arrays.copyOf(order, size * 2);
+		}
+		siftUp(size++, wp, priority(wp), insertions++);
+		remember(wp);
     }
-    
+
     // addSorted -- Add the given list of Waypoint objects to the frontier
     // in the appropriate positions, given their sorting statistics.
     public void addSorted(List<Waypoint> points) {
@@ -141,7 +197,10 @@ public class SortedFrontier {
 
     // remove -- Remove a specified Waypoint object from the frontier.
     public void remove(Waypoint wp) {
-		fringe.remove(wp);
+		if (wp.frontierIndex >= 0 && fringe[wp.frontierIndex] == wp) {
+	    	removeAt(wp.frontierIndex);
+	    	forget(wp);
+		}
     }
 
     // remove -- Remove all of the Waypoint objects in the given list from
@@ -152,23 +211,34 @@ public class SortedFrontier {
 		}
     }
 
+    // decreaseKey -- Replace the given Waypoint object, which is in the
+    // frontier, with the given improvement, which is not.  The improvement
+    // is normally a Waypoint for the same location with a better sorting
+    // statistic, and it takes over the position of the Waypoint that it
+    // replaces, moving toward the top of the frontier as appropriate.
+    public void decreaseKey(Waypoint wp, Waypoint improvement) {
+		int i = wp.frontierIndex;
+		forget(wp);
+		wp.frontierIndex = -1;
+		double key = priority(improvement);
+		long seq = insertions++;
+		if (precedes(improvement, key, seq, wp, keys[i], order[i]))
+	    	siftUp(i, improvement, key, seq);
+		else
+	    	siftDown(i, improvement, key, seq);
+		remember(improvement);
+    }
+
     // contains -- Return true if and only if the frontier contains a
     // Waypoint with the given Location name.
     public boolean contains(String name) {
-		// This linear search is very inefficient, but it cannot be avoided
-		// without maintaining a parallel data structure containing the
-		// fringe members (e.g., a HashSet) indexed by location name.
-		for (Waypoint element : fringe)
-	    	if (name.equals(element.loc.name))
-			return (true);
-		// The location was not found in the fringe ...
-		return (false);
+	return (find(name) != null);
     }
 
     // contains -- Return true if and only if the frontier contains a
     // Waypoint with the given Location object as its state.
     public boolean contains(Location loc) {
-	return (contains(loc.name));
+	return (find(loc) != null);
     }
 
     // contains -- Return true if and only if the frontier contains an
@@ -179,22 +249,26 @@ public class SortedFrontier {
     }
 
     // find -- Return a Waypoint in the frontier with the given location
-    // name, or null if there is no such Waypoint.
+    // name, or null if there is no such Waypoint.  If there are several
+    // such Waypoints, the one nearest to the top of the frontier is
+    // returned.
     public Waypoint find(String name) {
-	// This linear search is very inefficient, but it cannot be avoided
-	// without maintaining a parallel data structure containing the 
-	// fringe members (e.g., a HashSet) indexed by location name.
-	for (Waypoint element : fringe)
-	    if (name.equals(element.loc.name))
-		return (element);
-	// The location was not found in the fringe ...
-	return (null);
+	if (placesByName == null)
+	    namePlaces();
+	Location loc = placesByName.get(name);
+	return ((loc == null) ? null : find(loc));
     }
 
-    // find -- Return a Waypoint in the frontier with the given location
-    // name, or null if there is no such Waypoint.
+    // find -- Return a Waypoint in the frontier with the given location,
+    // or null if there is no such Waypoint.  If there are several such
+    // Waypoints, the one nearest to the top of the frontier is returned.
     public Waypoint find(Location loc) {
-	return (find(loc.name));
+	Waypoint first = null;
+	for (Waypoint element = members(loc); element != null; element = element.nextAtLocation)
+	    if (element.loc.name.equals(loc.name)
+		&& (first == null || before(element.frontierIndex, first.frontierIndex)))
+		first = element;
+	return (first);
     }
 
     // find -- Return a Waypoint in the frontier with the same location
@@ -203,6 +277,148 @@ public class SortedFrontier {
 	return (find(wp.loc));
     }
 
+    // before -- Return true if and only if the Waypoint at heap position
+    // "i" comes out of the frontier before the Waypoint at position "j".
+    boolean before(int i, int j) {
+	return (precedes(fringe[i], keys[i], order[i], fringe[j], keys[j], order[j]));
+    }
 
-}
+    // precedes -- Return true if and only if the first Waypoint, with the
+    // given sorting statistic and insertion number, comes out of the
+    // frontier before the second.  Depths and location names are only
+    // compared when the sorting statistics are exactly equal.
+    boolean precedes(Waypoint wp1, double key1, long seq1, Waypoint wp2, double key2, long seq2) {
+	if (key1 != key2)
+	    return (key1 < key2);
+	if (deeperFirst && wp1.depth != wp2.depth)
+	    return (wp1.depth > wp2.depth);
+	int c = wp1.loc.name.compareTo(wp2.loc.name);
+	if (c != 0)
+	    return (c < 0);
+	return (seq1 < seq2);
+    }
+
+    // removeAt -- Remove the Waypoint at the given heap position, filling
+    // the hole with the last Waypoint in the heap.
+    void removeAt(int i) {
+	fringe[i].frontierIndex = -1;
+	size--;
+	if (i < size) {
+	    Waypoint last = fringe[size];
+	    double key = keys[size];
+	    long seq = order[size];
+	    int parent = (i - 1) / 2;
+	    if (i > 0 && precedes(last, key, seq, fringe[parent], keys[parent], order[parent]))
+		siftUp(i, last, key, seq);
+	    else
+		siftDown(i, last, key, seq);
+	}
+	fringe[size] = null;
+    }
+
+    // siftUp -- Place the given Waypoint at the given hole in the heap,
+    // moving it up toward the root as far as it needs to go.
+    void siftUp(int hole, Waypoint wp, double key, long seq) {
+	while (hole > 0) {
+	    int parent = (hole - 1) / 2;
+	    if (!precedes(wp, key, seq, fringe[parent], keys[parent], order[parent]))
+		break;
+	    move(parent, hole);
+	    hole = parent;
+	}
+	place(hole, wp, key, seq);
+    }
+
+    // siftDown -- Place the given Waypoint at the given hole in the heap,
+    // moving it down toward the leaves as far as it needs to go.
+    void siftDown(int hole, Waypoint wp, double key, long seq) {
+	while (true) {
+	    int child = 2 * hole + 1;
+	    if (child >= size)
+		break;
+	    if (child + 1 < size && before(child + 1, child))
+		child++;
+	    if (!precedes(fringe[child], keys[child], order[child], wp, key, seq))
+		break;
+	    move(child, hole);
+	    hole = child;
+	}
+	place(hole, wp, key, seq);
+    }
 
+    // move -- Move the Waypoint at heap position "from" to position "to".
+    void move(int from, int to) {
+	place(to, fringe[from], keys[from], order[from]);
+    }
+
+    // place -- Store the given Waypoint at the given heap position.
+    void place(int i, Waypoint wp, double key, long seq) {
+	fringe[i] = wp;
+	keys[i] = key;
+	order[i] = seq;
+	wp.frontierIndex = i;
+    }
+
+    // members -- Return the first of the Waypoints indexed under the given
+    // location, or null if there are none.  The rest are linked to it.
+    // Locations from different maps may share an id, so callers compare
+    // location names as well.
+    Waypoint members(Location loc) {
+	if (loc.id >= 0)
+	    return ((loc.id < membersById.length) ? membersById[loc.id] : null);
+	return ((membersByName == null) ? null : membersByName.get(loc.name));
+    }
+
+    // setMembers -- Make the given Waypoint, which may be null, the first of
+    // those indexed under the given location.
+    void setMembers(Location loc, Waypoint first) {
+	if (loc.id >= 0) {
+	    if (loc.id >= membersById.length)
+		membersById = Arrays.copyOf(membersById, Math.max(loc.id + 1, 2 * membersById.length));
+	    membersById[loc.id] = first;
+	} else if (first != null) {
+	    if (membersByName == null)
+		membersByName = new HashMap<String, Waypoint>();
+	    membersByName.put(loc.name, first);
+	} else if (membersByName != null) {
+	    membersByName.remove(loc.name);
+	}
+    }
+
+    // namePlaces -- Record the Location of each Waypoint in the frontier
+    // under its name, and keep the record from now on.
+    void namePlaces() {
+	placesByName = new HashMap<String, Location>();
+	for (int i = 0; i < size; i++)
+	    placesByName.put(fringe[i].loc.name, fringe[i].loc);
+    }
+
+    // remember -- Index the given Waypoint, which has just been added to the
+    // frontier, under its Location.
+    void remember(Waypoint wp) {
+	if (placesByName != null)
+	    placesByName.put(wp.loc.name, wp.loc);
+	Waypoint next = members(wp.loc);
+	wp.previousAtLocation = null;
+	wp.nextAtLocation = next;
+	if (next != null)
+	    next.previousAtLocation = wp;
+	setMembers(wp.loc, wp);
+    }
+
+    // forget -- Remove the given Waypoint, which has just been removed from
+    // the frontier, from the index.
+    void forget(Waypoint wp) {
+	if (wp.previousAtLocation != null)
+	    wp.previousAtLocation.nextAtLocation = wp.nextAtLocation;
+	else
+	    setMembers(wp.loc, wp.nextAtLocation);
+	if (wp.nextAtLocation != null)
+	    wp.nextAtLocation.previousAtLocation = wp.previousAtLocation;
+	wp.previousAtLocation = null;
+	wp.nextAtLocation = null;
+	if (placesByName != null && find(wp.loc) == null)
+	    placesByName.remove(wp.loc.name);
+    }
+
+}
@@ -0,0 +1,270 @@
+//
+// SpatialIndex
+//
+// This class indexes the nodes of a CompactMap by their coordinates, so
+// that the locations nearest to a given point, or within a given distance
+// of it, can be found without examining every location on the map.  Such
+// queries are used to "snap" a point given by its coordinates to the
+// location from which a route should start.
+//
+// The index is a uniform grid laid over the bounding box of the locations,
+// with about two locations per cell on average.  The nodes are sorted by
+// cell, in the "compressed sparse row" style used elsewhere:  the nodes in
+// cell "c" occupy positions "offsets[c]" up to (but not including)
+// "offsets[c+1]" of "nodes", with their coordinates copied alongside, so
+// that scanning a cell touches only a few consecutive array elements.  A
+// nearest-neighbor query scans rings of cells of increasing size around
+// the cell holding the point, keeping the best candidates found so far in
+// a small heap, and stops once no cell in the next ring could hold a
+// closer location.  A radius query scans just the cells overlapping the
+// square around the circle.  Distances are straight-line distances between
+// coordinates, as used by the heuristic functions.
+//
+// The index is built once, and never changed, so any number of threads may
+// query it at once.  The costs of roads have no effect on it, so it is kept
+// across cost updates (see the "spatialIndex" method of the Map class).
+//
+
+
+import java.util.*;
+
+
+public class SpatialIndex {
+    static final int NODES_PER_CELL = 2;
+
+    int nodeCount;
+    double minLon;
+    double minLat;
+    double cellWidth;
+    double cellHeight;
+    int columns;
+    int rows;
+    int[] offsets;
+    int[] nodes;
+    float[] lons;
+    float[] lats;
+
+    // Constructor with compact map specified ...
+    public SpatialIndex(CompactMap graph) {
+	this.nodeCount = graph.nodeCount();
+	double maxLon = Double.NEGATIVE_INFINITY;
+	double maxLat = Double.NEGATIVE_INFINITY;
+	minLon = Double.POSITIVE_INFINITY;
+	minLat = Double.POSITIVE_INFINITY;
+	for (int n = 0; n < nodeCount; n++) {
+	    minLon = Math.min(minLon, graph.longitude(n));
+	    minLat = Math.min(minLat, graph.latitude(n));
+	    maxLon = Math.max(maxLon, graph.longitude(n));
+	    maxLat = Math.max(maxLat, graph.latitude(n));
+	}
+	if (nodeCount == 0) {
+	    minLon = minLat = maxLon = maxLat = 0.0;
+	}
+	// Choose roughly square cells, about NODES_PER_CELL nodes each ...
+	double width = Math.max(maxLon - minLon, 1e-9);
+	double height = Math.max(maxLat - minLat, 1e-9);
+	double cells = Math.max(1.0, (double) nodeCount / NODES_PER_CELL);
+	double side = Math.sqrt(width * height / cells);
+	this.columns = (int) Math.max(1, Math.min(1 << 15, Math.ceil(width / side)));
+	this.rows = (int) Math.max(1, Math.min(1 << 15, Math.ceil(height / side)));
+	while ((long) columns * rows > 4L * cells + 16) {
+	    // A very long, thin map ...
+	    columns = Math.max(1, columns / 2);
+	    rows = Math.max(1, rows / 2);
+	}
+	this.cellWidth = width / columns;
+	this.cellHeight = height / rows;
+	// Sort the nodes by cell ...
+	int[] cellOf = new int[nodeCount];
+	this.offsets = new int[columns * rows + 1];
+	for (int n = 0; n < nodeCount; n++) {
+	    cellOf[n] = column(graph.longitude(n)) + columns * row(graph.latitude(n));
+	    offsets[cellOf[n] + 1]++;
+	}
+	for (int c = 0; c < columns * rows; c++)
+	    offsets[c + 1] += offsets[c];
+	int[] next = Arrays.copyOf(offsets, columns * rows);
+	this.nodes = new int[nodeCount];
+	this.lons = new float[nodeCount];
+	this.lats = new float[nodeCount];
+	for (int n = 0; n < nodeCount; n++) {
+	    int i = next[cellOf[n]]++;
+	    nodes[i] = n;
+	    lons[i] = graph.longitude(n);
+	    lats[i] = graph.latitude(n);
+	}
+    }
+
+    // column -- Return the column of cells holding the given longitude,
+    // clamped to the grid.
+    int column(double lon) {
+	int c = (int) Math.floor((lon - minLon) / cellWidth);
+	return (Math.max(0, Math.min(columns - 1, c)));
+    }
+
+    // row -- Return the row of cells holding the given latitude, clamped
+    // to the grid.
+    int row(double lat) {
+	int r = (int) Math.floor((lat - minLat) / cellHeight);
+	return (Math.max(0, Math.min(rows - 1, r)));
+    }
+
+    // size -- Return the number of nodes indexed.
+    public int size() {
+	return (nodeCount);
+    }
+
+    // nearest -- Return the node nearest to the given point, or -1 if the
+    // map has no locations.  Ties go to the lower node id.
+    public int nearest(double lon, double lat) {
+	int[] best = nearest(lon, lat, 1);
+	return ((best.length == 0) ? -1 : best[0]);
+    }
+
+    // nearest -- Return the (up to) "k" nodes nearest to the given point,
+    // from nearest to farthest, with ties going to the lower node id.
+    public int[] nearest(double lon, double lat, int k) {
+	k = Math.min(k, nodeCount);
+	if (k <= 0)
+	    return (new int[0]);
+	// The k best so far, as a max-heap of squared distances ...
+	int[] heap = new int[k];
+	double[] dist = new double[k];
+	int count = 0;
+	int cx = column(lon);
+	int cy = row(lat);
+	for (int ring = 0; ; ring++) {
+	    // Every cell in this ring is at least "bound" away, being "ring"
+	    // cells away in one direction or the other ...
+	    double bound = Double.POSITIVE_INFINITY;
+	    if (cx - ring >= 0 || cx + ring < columns)
+		bound = (ring - 1) * cellWidth;
+	    if (cy - ring >= 0 || cy + ring < rows)
+		bound = Math.min(bound, (ring - 1) * cellHeight);
+	    if (bound == Double.POSITIVE_INFINITY)
+		// The ring lies entirely off the grid ...
+		break;
+	    if (count == k && bound > 0.0 && bound * bound > dist[0])
+		break;
+	    for (int y = cy - ring; y <= cy + ring; y++) {
+		if (y < 0 || y >= rows)
+		    continue;
+		boolean edge = (y == cy - ring || y == cy + ring);
+		for (int x = cx - ring; x <= cx + ring; x += edge ? 1 : 2 * ring) {
+		    if (x >= 0 && x < columns)
+			count = scan(x + columns * y, lon, lat, heap, dist, count);
+		    if (ring == 0)
+			break;
+		}
+	    }
+	}
+	return (sorted(heap, dist, count));
+    }
+
+    // scan -- Offer every node in the given cell to the heap of the "k"
+    // best nodes found so far, which holds "count" of them, and return the
+    // new count.
+    int scan(int cell, double lon, double lat, int[] heap, double[] dist, int count) {
+	int k = heap.length;
+	for (int i = offsets[cell]; i < offsets[cell + 1]; i++) {
+	    double dlon = lons[i] - lon;
+	    double dlat = lats[i] - lat;
+	    double d = dlon * dlon + dlat * dlat;
+	    int node = nodes[i];
+	    if (count < k) {
+		siftUp(heap, dist, count++, node, d);
+	    } else if (farther(dist[0], heap[0], d, node)) {
+		siftDown(heap, dist, count, 0, node, d);
+	    }
+	}
+	return (count);
+    }
+
+    // within -- Return every node within the given distance of the given
+    // point, from nearest to farthest, with ties going to the lower node id.
+    public int[] within(double lon, double lat, double radius) {
+	if (nodeCount == 0 || radius < 0.0)
+	    return (new int[0]);
+	int x0 = column(lon - radius);
+	int x1 = column(lon + radius);
+	int y0 = row(lat - radius);
+	int y1 = row(lat + radius);
+	double limit = radius * radius;
+	int[] heap = new int[16];
+	double[] dist = new double[16];
+	int count = 0;
+	for (int y = y0; y <= y1; y++) {
+	    for (int x = x0; x <= x1; x++) {
+		int cell = x + columns * y;
+		for (int i = offsets[cell]; i < offsets[cell + 1]; i++) {
+		    double dlon = lons[i] - lon;
+		    double dlat = lats[i] - lat;
+		    double d = dlon * dlon + dlat * dlat;
+		    if (d > limit)
+			continue;
+		    if (count == heap.length) {
+			heap = Arrays.copyOf(heap, 2 * count);
+			dist = Arrays.copyOf(dist, 2 * count);
+		    }
+		    siftUp(heap, dist, count++, nodes[i], d);
+		}
+	    }
+	}
+	return (sorted(heap, dist, count));
+    }
+
+    // sorted -- Empty the given max-heap, of the given size, and return its
+    // nodes from nearest to farthest.
+    static int[] sorted(int[] heap, double[] dist, int count) {
+	int[] result = new int[count];
+	for (int size = count; size > 0; size--) {
+	    result[size - 1] = heap[0];
+	    if (size > 1)
+		siftDown(heap, dist, size - 1, 0, heap[size - 1], dist[size - 1]);
+	}
+	return (result);
+    }
+
+    // farther -- Return true if and only if the first node and squared
+    // distance should come after the second, in order of distance and then
+    // node id.
+    static boolean farther(double d1, int n1, double d2, int n2) {
+	return (d1 > d2 || (d1 == d2 && n1 > n2));
+    }
+
+    // siftUp -- Place the given node and squared distance at the given hole
+    // in the max-heap, moving it up toward the root as far as it needs to go.
+    static void siftUp(int[] heap, double[] dist, int hole, int node, double d) {
+	while (hole > 0) {
+	    int parent = (hole - 1) >>> 1;
+	    if (!farther(d, node, dist[parent], heap[parent]))
+		break;
+	    heap[hole] = heap[parent];
+	    dist[hole] = dist[parent];
+	    hole = parent;
+	}
+	heap[hole] = node;
+	dist[hole] = d;
+    }
+
+    // siftDown -- Place the given node and squared distance at the given
+    // hole in the max-heap, of the given size, moving it down toward the
+    // leaves as far as it needs to go.
+    static void siftDown(int[] heap, double[] dist, int size, int hole, int node, double d) {
+	while (true) {
+	    int child = 2 * hole + 1;
+	    if (child >= size)
+		break;
+	    if (child + 1 < size && farther(dist[child + 1], heap[child + 1], dist[child], heap[child]))
+		child++;
+	    if (!farther(dist[child], heap[child], d, node))
+		break;
+	    heap[hole] = heap[child];
+	    dist[hole] = dist[child];
+	    hole = child;
+	}
+	heap[hole] = node;
+	dist[hole] = d;
+    }
+
+}
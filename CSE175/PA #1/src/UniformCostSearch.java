@@ -10,6 +10,8 @@ public class UniformCostSearch {
     public String destinationLoc = "";
     public int limit = 0;
     public int expansionCount = 0;
+    public SearchStats stats = new SearchStats();   // what the last search did
+    public SearchMetrics metrics = null;    // if set, the stats of every search are added to it
 
     // constructor
     public UniformCostSearch(Map graph, String initialLoc, String destinationLoc, int limit) {
@@ -24,6 +26,16 @@ public class UniformCostSearch {
     // if repeatedChecking is true, the function will use repeated state checking; whereas, the function will not use
     // repeated if repeatedChecking is false
     public Waypoint search(boolean repeatedChecking) {
+        stats.start();
+        try {
+            return searchWaypoints(repeatedChecking);
+        } finally {
+            stats.finish(expansionCount, metrics);
+        }
+    }
+
+    // the search itself, which the function above measures
+    Waypoint searchWaypoints(boolean repeatedChecking) {
         Waypoint node = new Waypoint(graph.findLocation(initialLoc), null);	//create the initial node
         expansionCount = 0;	// initialize the expansionCount
 
@@ -35,6 +47,8 @@ public class UniformCostSearch {
             SortedFrontier sortedFrontier = new SortedFrontier(SortBy.g);
             sortedFrontier.addSorted(node);	// add current node into sortedFrontier
 
+            stats.setupDone();  // the search proper begins here
+
             if (repeatedChecking) {	// repeated state check involves
                 Set<String> explored = new HashSet<>();	// create a hashset, called explored, that store visted node
                 // check sortedFrontier is empty or not and check the search limit
@@ -46,30 +60,40 @@ public class UniformCostSearch {
                     } else {	// do following if current node is not destination
                         Waypoint checkNode;	// create a new node for storing node
                         explored.add(node.loc.name);	// add current node into checklist
-                        node.expand();	// find all child nodes of current node
                         expansionCount++;	// expand operates once so add 1 to expansionCount
 
-                        // for each child node in the list of child node of current node, do following
-                        for (Waypoint option : node.options) {
+                        // for each road out of the current node's location, do following; a child node is only created
+                        // when it is added to sortedFrontier
+                        for (int i = 0; i < node.successorCount(); i++) {
+                            Road road = node.successor(i);
+                            Location next = road.toLocation;
                             // if the child node is not in explored, do following
-                            if (!explored.contains(option.loc.name)) {
+                            if (!explored.contains(next.name)) {
+                                double cost = node.partialPathCost + road.cost;   // partialPathCost of the child node
                                 // if the child node has already added in sortedFrontier before, do following
-                                if (sortedFrontier.contains(option) == true) {
+                                if (sortedFrontier.contains(next) == true) {
                                     // store the old version child node into checkNode for comparing partialPathCost with
                                     // the new version node
-                                    checkNode = sortedFrontier.find(option);
+                                    checkNode = sortedFrontier.find(next);
                                     // if the child node's partialPathCost is less than its old version's
-                                    if (option.partialPathCost < checkNode.partialPathCost) {
-                                        // delete old version child node from sortedFrontier
-                                        sortedFrontier.remove(checkNode);
-                                        // add the child node, which has less partialPathCost, into sortedFrontier
-                                        sortedFrontier.addSorted(option);
+                                    if (cost < checkNode.partialPathCost) {
+                                        // replace old version child node in sortedFrontier with the child node,
+                                        // which has less partialPathCost
+                                        sortedFrontier.decreaseKey(checkNode, node.child(road));
+                                        stats.generated++;
+                                        stats.decreaseKeys++;
+                                    } else {
+                                        stats.pruned++; // the frontier already holds a path that is no worse
                                     }
                                 } else {	// if the child node never add to sortedFrontier before
-                                    sortedFrontier.addSorted(option);	// add the child node to sortedFrontier directly
+                                    stats.generated++;
+                                    sortedFrontier.addSorted(node.child(road));	// add the child node to sortedFrontier directly
                                 }
+                            } else {
+                                stats.pruned++; // explored already
                             }
                         }
+                        stats.frontier(sortedFrontier.size());
                     }
                 }
                 return null;	// fail if sortedFrontier is empty or reach to the limit
@@ -81,14 +105,211 @@ public class UniformCostSearch {
                     if (node.isFinalDestination(destinationLoc)) {	// check the current node is destination or not
                         return node;	// return current node if it is the destination
                     } else {	// do following if current node is not destination
-                        node.expand();	// find all child nodes of current node
                         expansionCount++;	// expand operates once so add 1 to expansionCount
 
-                        sortedFrontier.addSorted(node.options);	// no repeated state checking involved, add the list of child node of current node directly into sortedFrontier
+                        // no repeated state checking involved, add a child node for each road out of the current node's location
+                        // directly into sortedFrontier
+                        for (int i = 0; i < node.successorCount(); i++) {
+                            sortedFrontier.addSorted(node.child(node.successor(i)));
+                        }
+                        stats.generated += node.successorCount();
+                        stats.frontier(sortedFrontier.size());
                     }
                 }
                 return null;	// fail if sortedFrontier is empty or reach to the limit
             }
         }
     }
+
+    // the following function performs the same search as the one above, but over a CompactMap
+    // with repeated state checking, it uses searchNode below, and Waypoint objects are only created for the
+    // nodes on the returned solution path
+    // without repeated state checking, the search tree is kept in a SearchTree of primitive arrays, and the
+    // frontier is keyed by search tree slot
+    public Waypoint search(CompactMap compact, boolean repeatedChecking) {
+        stats.start();
+        try {
+            return searchCompact(compact, repeatedChecking);
+        } finally {
+            stats.finish(expansionCount, metrics);
+        }
+    }
+
+    // the search itself, which the function above measures
+    Waypoint searchCompact(CompactMap compact, boolean repeatedChecking) {
+        if (repeatedChecking) {
+            int node = searchNode(compact);
+            return (node < 0) ? null : SearchContext.current().toWaypoint(compact, node);
+        }
+        int start = compact.nodeOf(initialLoc);     // node id of the start point
+        int goal = compact.nodeOf(destinationLoc);  // node id of the end point
+        expansionCount = 0; // initialize the expansionCount
+
+        SearchTree tree = new SearchTree();
+        int current = tree.addRoot(start, 0.0);    // create the initial node
+
+        if (start == goal) {    // check if the start point is the destination
+            return tree.toWaypoint(compact, current);
+        }
+        // the frontier is sorted by the same statistic as a SortedFrontier(SortBy.g)
+        HeapFrontier frontier = new HeapFrontier();
+        frontier.add(current, tree.priority(current, SortBy.g));
+
+        stats.setupDone();  // the search proper begins here
+
+        // check frontier is empty or not and check the search limit
+        while (!frontier.isEmpty() && tree.depth[current] < limit) {
+            current = frontier.removeTop();     // the first slot of the frontier
+            int node = tree.state[current];
+
+            if (node == goal) {     // check the current node is destination or not
+                return tree.toWaypoint(compact, current);
+            }
+            expansionCount++;   // expand operates once so add 1 to expansionCount
+
+            // no repeated state checking involved, add a child node for every road leading out of the current node
+            for (int e = compact.firstRoad(node); e < compact.endRoad(node); e++) {
+                int child = compact.target(e);
+                int childSlot = tree.addChild(current, e, child, compact.cost(e), 0.0);
+                frontier.add(childSlot, tree.priority(childSlot, SortBy.g));
+            }
+            stats.generated += compact.endRoad(node) - compact.firstRoad(node);
+            stats.frontier(frontier.size());
+        }
+        return null;    // fail if frontier is empty or reach to the limit
+    }
+
+    // the following function performs the same search as the one above with repeated state checking, but over
+    // a CompactMap, recording the search tree in the calling thread's SearchContext
+    // it returns the node id of the destination, or -1 on failure; the path found can then be read from the
+    // context, which is returned by SearchContext.current until the thread starts another search
+    // once the context has grown to the size of the map, this function allocates nothing
+    public int searchNode(CompactMap compact) {
+        stats.start();
+        try {
+            return searchContext(compact);
+        } finally {
+            stats.finish(expansionCount, metrics);
+        }
+    }
+
+    // the search itself, which the function above measures
+    int searchContext(CompactMap compact) {
+        int start = compact.nodeOf(initialLoc);     // node id of the start point
+        int goal = compact.nodeOf(destinationLoc);  // node id of the end point
+        expansionCount = 0; // initialize the expansionCount
+
+        SearchContext context = SearchContext.local(compact);
+        context.reachRoot(start, 0.0);    // create the initial node
+        if (start == goal) {    // check if the start point is the destination
+            return start;
+        }
+        HeapFrontier frontier = context.heap;   // the frontier is sorted like a SortedFrontier(SortBy.g)
+        frontier.add(start, context.priority(start, SortBy.g));
+        int node = start;
+        stats.setupDone();  // the search proper begins here
+
+        // check frontier is empty or not and check the search limit
+        while (!frontier.isEmpty() && context.depth[node] < limit) {
+            node = frontier.removeTop();    // the first node of the frontier
+
+            if (node == goal) {     // check the current node is destination or not
+                return node;
+            }
+            context.markExplored(node);     // add current node into checklist
+            expansionCount++;   // expand operates once so add 1 to expansionCount
+
+            // visit every road leading out of the current node
+            for (int e = compact.firstRoad(node); e < compact.endRoad(node); e++) {
+                int child = compact.target(e);
+                // skip the child node if it has been explored
+                if (context.isExplored(child)) {
+                    stats.pruned++;
+                    continue;
+                }
+                boolean inFrontier = frontier.contains(child);
+                // skip the child node if the frontier already holds a path to it that is no worse
+                if (inFrontier && context.pathCost(node) + compact.cost(e) >= context.pathCost(child)) {
+                    stats.pruned++;
+                    continue;
+                }
+                context.reachChild(node, e, child, compact.cost(e), 0.0);
+                stats.generated++;
+                if (inFrontier) {
+                    frontier.decreaseKey(child, context.priority(child, SortBy.g));    // the child node has improved
+                    stats.decreaseKeys++;
+                } else {
+                    frontier.add(child, context.priority(child, SortBy.g));
+                }
+            }
+            stats.frontier(frontier.size());
+        }
+        return -1;  // fail if frontier is empty or reach to the limit
+    }
+
+    // the following function runs the same search as searchNode from the initialLoc, but ignores the
+    // destinationLoc and keeps going until the frontier is empty, or until the cheapest node on the frontier
+    // costs more than the given budget
+    // it returns the shortest path tree of every node settled along the way, as parent/road/cost arrays
+    // indexed by node id; pass Double.POSITIVE_INFINITY as the budget to cover every reachable node
+    public ShortestPathTree searchAll(CompactMap compact, double budget) {
+        int start = compact.nodeOf(initialLoc);     // node id of the start point
+        ShortestPathTree tree = new ShortestPathTree(start, compact.nodeCount());
+        expansionCount = settleAll(compact, start, budget, limit, tree);
+        return tree;
+    }
+
+    // the following function is the search behind searchAll: a uniform-cost search from the given start node
+    // that hands every node that it settles, in order of increasing path cost, to the given visitor, along with
+    // its parent node, the road taken from the parent and its path cost
+    // it stops once every node left on the frontier costs more than the budget, and does not expand nodes at
+    // the depth limit; it returns the number of node expansions
+    // it uses the calling thread's SearchContext, so it allocates nothing that grows with the size of the map
+    static int settleAll(CompactMap compact, int start, double budget, int limit, SettleVisitor visitor) {
+        int expansions = 0;
+        SearchContext context = SearchContext.local(compact);
+        context.reachRoot(start, 0.0);    // create the initial node
+        HeapFrontier frontier = context.heap;   // the frontier is sorted like a SortedFrontier(SortBy.g)
+        frontier.add(start, context.priority(start, SortBy.g));
+
+        // stop once every node left on the frontier is over the budget
+        while (!frontier.isEmpty() && frontier.topPriority() <= budget) {
+            int node = frontier.removeTop();    // the first node of the frontier
+            context.markExplored(node);     // add current node into checklist
+            visitor.settle(node, context.parent[node], context.road[node], context.pathCost(node));
+            // the search limit bounds the depth of the tree, as it does for searchNode
+            if (context.depth[node] >= limit) {
+                continue;
+            }
+            expansions++;   // expand operates once so add 1 to the expansion count
+
+            // visit every road leading out of the current node
+            for (int e = compact.firstRoad(node); e < compact.endRoad(node); e++) {
+                int child = compact.target(e);
+                double g = context.pathCost(node) + compact.cost(e);
+                // skip the child node if it has been explored, or if it is over the budget, since it would
+                // never be settled
+                if (context.isExplored(child) || g > budget) {
+                    continue;
+                }
+                boolean inFrontier = frontier.contains(child);
+                // skip the child node if the frontier already holds a path to it that is no worse
+                if (inFrontier && g >= context.pathCost(child)) {
+                    continue;
+                }
+                context.reachChild(node, e, child, compact.cost(e), 0.0);
+                if (inFrontier) {
+                    frontier.decreaseKey(child, context.priority(child, SortBy.g));    // the child node has improved
+                } else {
+                    frontier.add(child, context.priority(child, SortBy.g));
+                }
+            }
+        }
+        return expansions;
+    }
+}
+
+// the nodes settled by UniformCostSearch.settleAll are handed, one at a time, to an object of this kind
+interface SettleVisitor {
+    void settle(int node, int parentNode, int viaRoad, double g);
 }